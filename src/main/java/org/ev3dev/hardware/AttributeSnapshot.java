@@ -0,0 +1,191 @@
+/*******************************************************************************
+ * Any modification, copies of sections of this file must be attached with this
+ * license and shown clearly in the developer's project. The code can be used
+ * as long as you state clearly you do not own it. Any violation might result in
+ *  a take-down.
+ *
+ * MIT License
+ *
+ * Copyright (c) 2016, 2017 Anthony Law
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *******************************************************************************/
+package org.ev3dev.hardware;
+
+import java.io.IOException;
+
+import org.ev3dev.io.AttributeHandle;
+
+/**
+ * A reusable snapshot of several attributes of a single <code>Device</code>. All attributes are read back-to-back
+ *  on the cached handles of the device and time-stamped with <code>System.nanoTime()</code>, so the values can be
+ *  correlated with each other (e.g. position, speed, duty cycle for odometry).<br>
+ * <br>
+ * Numeric attributes are stored as primitives. Attributes that are not decimal integers (e.g. <code>state</code>)
+ *  are detected on the first read and kept as <code>String</code>.
+ * <pre>
+ * AttributeSnapshot snapshot = motor.readSnapshot(Motor.SYSFS_PROPERTY_POSITION, Motor.SYSFS_PROPERTY_SPEED);
+ * while (true){
+ *     motor.readSnapshot(snapshot);
+ *     int position = snapshot.getInt(0);
+ *     int speed = snapshot.getInt(1);
+ *     long time = snapshot.getTimestamp();
+ * }
+ * </pre>
+ * @author Anthony
+ *
+ */
+public final class AttributeSnapshot {
+	
+	private final Device device;
+	
+	private final String[] properties;
+	
+	private final long[] values;
+	
+	private final String[] strings;
+	
+	private final boolean[] textual;
+	
+	private long timestamp = 0;
+	
+	private long duration = 0;
+	
+	AttributeSnapshot(Device device, String[] properties){
+		this.device = device;
+		this.properties = properties.clone();
+		this.values = new long[properties.length];
+		this.strings = new String[properties.length];
+		this.textual = new boolean[properties.length];
+	}
+	
+	/**
+	 * Returns the device of this snapshot
+	 * @return The device
+	 */
+	public Device getDevice(){
+		return device;
+	}
+	
+	/**
+	 * Returns the number of attributes in this snapshot
+	 * @return The number of attributes
+	 */
+	public int size(){
+		return properties.length;
+	}
+	
+	/**
+	 * Returns the property name at the specified index
+	 * @param index The index of the property
+	 * @return The property name
+	 */
+	public String getProperty(int index){
+		return properties[index];
+	}
+	
+	/**
+	 * Returns the index of the property specified
+	 * @param property The property name
+	 * @return The index of the property, or -1 if it is not in this snapshot
+	 */
+	public int indexOf(String property){
+		for (int i = 0; i < properties.length; i++){
+			if (properties[i].equals(property)){
+				return i;
+			}
+		}
+		return -1;
+	}
+	
+	/**
+	 * Returns whether the attribute at the specified index is numeric
+	 * @param index The index of the property
+	 * @return Whether the attribute is a decimal integer
+	 */
+	public synchronized boolean isNumeric(int index){
+		return !textual[index];
+	}
+	
+	/**
+	 * Returns the value of a numeric attribute
+	 * @param index The index of the property
+	 * @return The value of the attribute
+	 * @throws NumberFormatException If the attribute is not numeric
+	 */
+	public synchronized long getLong(int index){
+		if (textual[index]){
+			throw new NumberFormatException("Attribute is not numeric: " + properties[index]);
+		}
+		return values[index];
+	}
+	
+	/**
+	 * Returns the value of a numeric attribute
+	 * @param index The index of the property
+	 * @return The value of the attribute
+	 * @throws NumberFormatException If the attribute is not numeric
+	 */
+	public int getInt(int index){
+		return (int) getLong(index);
+	}
+	
+	/**
+	 * Returns the value of an attribute as a <code>String</code>
+	 * @param index The index of the property
+	 * @return The value of the attribute
+	 */
+	public synchronized String getString(int index){
+		return textual[index] ? strings[index] : Long.toString(values[index]);
+	}
+	
+	/**
+	 * Returns the <code>System.nanoTime()</code> when this snapshot started reading.
+	 * @return The timestamp in nanoseconds, or 0 if the snapshot has not been read yet
+	 */
+	public synchronized long getTimestamp(){
+		return timestamp;
+	}
+	
+	/**
+	 * Returns the time taken to read all the attributes of this snapshot, which is the window the values are coherent within.
+	 * @return The duration in nanoseconds
+	 */
+	public synchronized long getReadDuration(){
+		return duration;
+	}
+	
+	synchronized void read() throws IOException{
+		long start = System.nanoTime();
+		for (int i = 0; i < properties.length; i++){
+			AttributeHandle handle = device.getAttributeHandle(properties[i]);
+			if (!textual[i]){
+				try {
+					values[i] = handle.readLong();
+					continue;
+				} catch (NumberFormatException e){
+					textual[i] = true;
+				}
+			}
+			strings[i] = handle.readString();
+		}
+		timestamp = start;
+		duration = System.nanoTime() - start;
+	}
+}
@@ -34,10 +34,6 @@ package org.ev3dev.hardware;
 //~autogen
 //-----------------------------------------------------------------------------
 
-import java.io.DataInputStream;
-import java.io.FileInputStream;
-import java.io.IOException;
-
 import org.ev3dev.exception.EV3LibraryException;
 import org.ev3dev.exception.InvalidButtonException;
 import org.slf4j.Logger;
@@ -92,6 +88,11 @@ public class Button {
      */
 	public static final int BUTTON_BACKSPACE = 14;
 	
+	/**
+	 * How long <code>isPressed()</code> waits for the event stream to be opened, in milliseconds
+	 */
+	public static final long STREAM_TIMEOUT = 500;
+	
 	private int button;
 	
 	/**
@@ -113,37 +114,24 @@ public class Button {
 	}
 	
 	/**
-	 * Returns whether the button is pressed.
+	 * Returns whether the button is pressed. The state is kept by the <code>InputEvents</code> thread, which is
+	 *  started by the first call. Use <code>Buttons.snapshot()</code> to test several buttons at once.<br>
+	 * <br>
+	 * The event stream only reports changes, so a button already held when the stream is opened (e.g. held at
+	 *  boot) reads as released until it is released and pressed again. Call <code>InputEvents.start()</code> early
+	 *  in the program to keep this window small.
 	 * @return Boolean that the button is pressed.
+	 * @throws EV3LibraryException If the event stream cannot be opened in <code>STREAM_TIMEOUT</code>
 	 */
 	public boolean isPressed(){
 	    logger.trace("Method Button.isPressed() starts");
-		try {
-		    logger.debug("Reading from event path \"" + SYSTEM_EVENT_PATH + "\"");
-			DataInputStream in = new DataInputStream(new FileInputStream(SYSTEM_EVENT_PATH));
-			byte[] val = new byte[16];
-			in.readFully(val);
-			in.close();
-			logger.debug("Read end");
-			
-			boolean result = test_bit(button, val);
-			logger.debug("Test bit result: " + result);
-			
-	        logger.trace("Method Button.isPressed() ends");
-			return result;
-		} catch (IOException e){
-		    logger.error("IOException occurred when reading \"" + SYSTEM_EVENT_PATH + "\"" + e);
-            throw new EV3LibraryException("IOException occurred", e);
-		}
-	}
-	
-	private static boolean test_bit(int bit, byte[] bytes){
-	    logger.trace("Method Button.test_bit(int bit, byte[] bytes) starts");
-	    
-	    boolean result = ((bytes[bit / 8] & (1 << (bit % 8))) != 1);
-	    logger.debug("expression \"bytes[bit/8]&(1<<bit%8)))!=1\" results " + result);
-	    
-	    logger.trace("Method Button.test_bit(int bit, byte[] bytes) ends");
+	    InputEvents.start();
+	    if (!InputEvents.awaitStreaming(STREAM_TIMEOUT)){
+	        logger.error("The input event stream \"" + InputEvents.getEventPath() + "\" is not opened");
+	        throw new EV3LibraryException("The input event stream \"" + InputEvents.getEventPath() + "\" is not opened");
+	    }
+	    boolean result = InputEvents.isKeyPressed(button);
+	    logger.trace("Method Button.isPressed() ends");
 	    return result;
 	}
 	
@@ -0,0 +1,134 @@
+/*******************************************************************************
+ * Any modification, copies of sections of this file must be attached with this
+ * license and shown clearly in the developer's project. The code can be used
+ * as long as you state clearly you do not own it. Any violation might result in
+ *  a take-down.
+ *
+ * MIT License
+ *
+ * Copyright (c) 2016, 2017 Anthony Law
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *******************************************************************************/
+package org.ev3dev.hardware;
+
+import org.ev3dev.exception.EV3LibraryException;
+import org.ev3dev.exception.InvalidButtonException;
+
+/**
+ * The state of all six EV3 buttons in one <code>long</code> mask. The mask is built from the key state kept by
+ *  <code>InputEvents</code>, so a snapshot never opens the event device, and UI loops testing several buttons
+ *  per frame share a single snapshot.
+ * <pre>
+ * long mask = Buttons.snapshot();
+ * if (Buttons.isPressed(mask, Button.BUTTON_UP)){
+ *     ...
+ * } else if (Buttons.isPressed(mask, Button.BUTTON_DOWN)){
+ *     ...
+ * }
+ * </pre>
+ * @author Anthony
+ *
+ */
+public final class Buttons {
+	
+	/**
+	 * The mask bit of the up button
+	 */
+	public static final long MASK_UP = 1L << 0;
+	
+	/**
+	 * The mask bit of the down button
+	 */
+	public static final long MASK_DOWN = 1L << 1;
+	
+	/**
+	 * The mask bit of the left button
+	 */
+	public static final long MASK_LEFT = 1L << 2;
+	
+	/**
+	 * The mask bit of the right button
+	 */
+	public static final long MASK_RIGHT = 1L << 3;
+	
+	/**
+	 * The mask bit of the enter button
+	 */
+	public static final long MASK_ENTER = 1L << 4;
+	
+	/**
+	 * The mask bit of the backspace button
+	 */
+	public static final long MASK_BACKSPACE = 1L << 5;
+	
+	private static final int[] BUTTONS = {
+			Button.BUTTON_UP, Button.BUTTON_DOWN, Button.BUTTON_LEFT,
+			Button.BUTTON_RIGHT, Button.BUTTON_ENTER, Button.BUTTON_BACKSPACE
+	};
+	
+	private Buttons(){}
+	
+	/**
+	 * Returns the state of all buttons, from the key state kept in memory by <code>InputEvents</code>. A button held
+	 *  since before the event stream was opened reads as released. The input event thread is started by the first call, which waits up to <code>Button.STREAM_TIMEOUT</code>
+	 *  for the event stream to be opened.
+	 * @return The mask of the pressed buttons, made of <code>MASK_*</code> bits
+	 * @throws EV3LibraryException If the event stream is not opened, so the state of the buttons is unknown
+	 */
+	public static long snapshot(){
+		InputEvents.start();
+		if (!InputEvents.awaitStreaming(Button.STREAM_TIMEOUT)){
+			throw new EV3LibraryException("The input event stream \"" + InputEvents.getEventPath() + "\" is not opened");
+		}
+		long mask = 0;
+		for (int i = 0; i < BUTTONS.length; i++){
+			if (InputEvents.isKeyPressed(BUTTONS[i])){
+				mask |= 1L << i;
+			}
+		}
+		return mask;
+	}
+	
+	/**
+	 * Returns whether a button is pressed in a snapshot mask
+	 * @param mask The mask returned by <code>snapshot()</code>
+	 * @param button The button, e.g. <code>Button.BUTTON_UP</code>
+	 * @return Whether the button is pressed
+	 * @throws InvalidButtonException If the specified button isn't a valid button.
+	 */
+	public static boolean isPressed(long mask, int button) throws InvalidButtonException{
+		return (mask & getMask(button)) != 0;
+	}
+	
+	/**
+	 * Returns the mask bit of a button
+	 * @param button The button, e.g. <code>Button.BUTTON_UP</code>
+	 * @return The mask bit
+	 * @throws InvalidButtonException If the specified button isn't a valid button.
+	 */
+	public static long getMask(int button) throws InvalidButtonException{
+		for (int i = 0; i < BUTTONS.length; i++){
+			if (BUTTONS[i] == button){
+				return 1L << i;
+			}
+		}
+		throw new InvalidButtonException("The button that you specified does not exist. Better use the integer fields like Button.BUTTON_UP");
+	}
+}
@@ -35,10 +35,19 @@ package org.ev3dev.hardware;
 //-----------------------------------------------------------------------------
 
 import java.io.IOException;
+import java.util.HashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 
 import org.ev3dev.exception.EV3LibraryException;
 
 import org.ev3dev.hardware.ports.LegoPort;
+import org.ev3dev.io.AttributeHandle;
+import org.ev3dev.io.DeviceWatcher;
 import org.ev3dev.io.Sysfs;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -59,17 +68,24 @@ public abstract class Device {
     
     private static final Logger logger = LoggerFactory.getLogger(Device.class);
 	
-	private String className;
+	private static ExecutorService ioExecutor = null;
 	
-	private String classNamePrefix = null;
+	//Read by the DeviceEvents thread
+	private volatile String className;
 	
-	private String address;
+	private volatile String classNamePrefix = null;
 	
-	private String classFullName = null;
+	private final String address;
 	
-	private LegoPort port;
+	private volatile String classFullName = null;
 	
-	private boolean connected = false;
+	private final LegoPort port;
+	
+	private volatile boolean connected = false;
+	
+	private volatile boolean registered = false;
+	
+	private final HashMap<String, AttributeHandle> attributeHandles = new HashMap<String, AttributeHandle>();
 	
 	/***
 	 * Generic way to create a device
@@ -79,6 +95,7 @@ public abstract class Device {
 	    logger.trace("Device Constructor starts - generic");
 	    logger.debug("className="+ className);
 		this.port = null;
+		this.address = null;
 		this.className = className;
 		logger.trace("Device Constructor ends - generic");
 	}
@@ -101,17 +118,20 @@ public abstract class Device {
         logger.debug("port.getAddress()=" + address);
         logger.debug("c");
 		
-		connected = checkIsConnected();
+		//Subclass fields are not initialized yet, so invalidateCachedState() must not be called from here
+		connected = checkIsConnected(false);
 		if (!connected){
 			logger.info(className + "-" + this.hashCode() + ": No port connected. Searching until port \"" + address + "\" connected...");
 			
-			while (!connected){
-				connected = checkIsConnected();
+			try {
+				awaitConnected(Long.MAX_VALUE, TimeUnit.NANOSECONDS, false);
+			} catch (InterruptedException e){
+				Thread.currentThread().interrupt();
+				throw new EV3LibraryException("Interrupted while searching port \"" + address + "\"", e);
 			}
 
 			logger.info(className + "-" + this.hashCode() + ": Connected to " + address);
 		}
-
         logger.trace("Device Constructor ends");
 	}
 	
@@ -125,6 +145,7 @@ public abstract class Device {
 	 */
 	public void setClassName(String className){
 		this.className = className;
+		clearAttributeHandles(true);
 	}
 	
 	/**
@@ -133,6 +154,7 @@ public abstract class Device {
 	 */
 	public void setClassFullname(String classFullName){
 		this.classFullName = classFullName;
+		clearAttributeHandles(true);
 	}
 	
 	/**
@@ -148,9 +170,45 @@ public abstract class Device {
 	 * @return Whether the device is ready.
 	 */
 	public boolean isConnected(){
+		ensureRegistered();
 		return connected;
 	}
 	
+	/**
+	 * Waits until this device is found in its Sysfs class, or the timeout elapses. The wait does not spin: it is
+	 *  woken by the shared <code>DeviceWatcher</code>, and re-checks with a bounded exponential back-off.
+	 * @param timeout The maximum time to wait
+	 * @param unit The time unit of the timeout
+	 * @return Whether the device is connected
+	 * @throws InterruptedException If the current thread is interrupted while waiting
+	 */
+	public boolean awaitConnected(long timeout, TimeUnit unit) throws InterruptedException{
+		return awaitConnected(timeout, unit, true);
+	}
+	
+	private boolean awaitConnected(long timeout, TimeUnit unit, boolean invalidate) throws InterruptedException{
+		if (address == null){
+			return connected;
+		}
+		DeviceWatcher.watch(className);
+		long start = System.nanoTime();
+		long timeoutNanos = unit.toNanos(timeout);
+		long backoff = 0;
+		while (true){
+			long generation = DeviceWatcher.getGeneration();
+			connected = checkIsConnected(invalidate);
+			if (connected){
+				return true;
+			}
+			long remaining = timeoutNanos - (System.nanoTime() - start);
+			if (remaining <= 0){
+				return false;
+			}
+			backoff = DeviceWatcher.nextBackoff(backoff);
+			DeviceWatcher.awaitChange(generation, Math.min(remaining, TimeUnit.MILLISECONDS.toNanos(backoff)), TimeUnit.NANOSECONDS);
+		}
+	}
+	
 	/**
 	 * Returns the LegoPort connected with this Device
 	 * @return LegoPort object
@@ -175,6 +233,83 @@ public abstract class Device {
 		return classNamePrefix;
 	}
 	
+	/***
+	 * Returns the resolved handle of the property specified. The handle is created once per property and
+	 * reused by every later read/write, until this device is re-located in the Sysfs class.
+	 * @param property The property name
+	 * @return The attribute handle of the property
+	 */
+	public final AttributeHandle getAttributeHandle(String property){
+		ensureRegistered();
+		synchronized (attributeHandles){
+			AttributeHandle handle = attributeHandles.get(property);
+			if (handle == null){
+				handle = Sysfs.getAttributeHandle(className, classFullName, property);
+				attributeHandles.put(property, handle);
+			}
+			return handle;
+		}
+	}
+	
+	/**
+	 * Tracks this device for the hot-plug events on its first use, instead of in the constructor, so that
+	 *  <code>DeviceEvents</code> never sees a device being constructed.
+	 */
+	private void ensureRegistered(){
+		if (registered || port == null){
+			return;
+		}
+		synchronized (this){
+			if (!registered){
+				registered = true;
+				DeviceEvents.register(this);
+			}
+		}
+	}
+	
+	/**
+	 * Called by <code>DeviceEvents</code> when the port of this device reports that the device was unplugged.
+	 */
+	final void portDisconnected(){
+		connected = false;
+		invalidateHandles();
+	}
+	
+	/**
+	 * Called by <code>DeviceEvents</code> when a device was plugged in to the port of this device, or the port changed.
+	 *  The device is re-located in its Sysfs class.
+	 * @return Whether the device is found
+	 */
+	final boolean portReconnected(){
+		invalidateHandles();
+		connected = checkIsConnected(true);
+		return connected;
+	}
+	
+	private void invalidateHandles(){
+		String fullName = classFullName;
+		clearAttributeHandles(true);
+		if (fullName != null){
+			Sysfs.invalidateHandles(className, fullName);
+		}
+	}
+	
+	private void clearAttributeHandles(boolean invalidate){
+		synchronized (attributeHandles){
+			attributeHandles.clear();
+		}
+		if (invalidate){
+			invalidateCachedState();
+		}
+	}
+	
+	/**
+	 * Called when this device is re-located in its Sysfs class, or its port was hot-plugged. Subclasses caching
+	 *  any state read from Sysfs (e.g. the sensor mode) should drop it here.
+	 */
+	protected void invalidateCachedState(){
+	}
+	
 	/***
 	 * Reads the property specified.
 	 * @param property The property name
@@ -182,7 +317,7 @@ public abstract class Device {
 	 */
 	public final String getAttribute(String property) throws EV3LibraryException{
 		try {
-			String str = Sysfs.getAttribute(className, classFullName, property);
+			String str = getAttributeHandle(property).readString();
 			connected = true;
 			return str;
 		} catch (IOException e){
@@ -191,6 +326,24 @@ public abstract class Device {
 		}
 	}
 	
+	/***
+	 * Reads the property specified as a decimal integer, without creating any <code>String</code>.
+	 * @param property The property name
+	 * @return The value of the property
+	 * @throws EV3LibraryException If I/O goes wrong
+	 * @throws NumberFormatException If the property isn't a decimal integer
+	 */
+	public final int getIntAttribute(String property) throws EV3LibraryException{
+		try {
+			int value = getAttributeHandle(property).readInt();
+			connected = true;
+			return value;
+		} catch (IOException e){
+			connected = false;
+			throw new EV3LibraryException("Get device attribute failed: " + property, e);
+		}
+	}
+	
 	/***
 	 * Writes the property specified.
 	 * @param property The property name
@@ -198,7 +351,7 @@ public abstract class Device {
 	 */
 	public final void setAttribute(String property, String new_value) throws EV3LibraryException{
 		try {
-			Sysfs.setAttribute(className, classFullName, property, new_value);
+			getAttributeHandle(property).writeString(new_value);
 			connected = true;
 		} catch (IOException e){
 			connected = false;
@@ -206,13 +359,93 @@ public abstract class Device {
 		}
 	}
 	
-	private boolean checkIsConnected(){
+	/***
+	 * Writes a decimal integer to the property specified, without creating any <code>String</code>.
+	 * @param property The property name
+	 * @param new_value The new value of the property
+	 * @throws EV3LibraryException If I/O goes wrong
+	 */
+	public final void setIntAttribute(String property, int new_value) throws EV3LibraryException{
 		try {
-			classFullName = Sysfs.searchClassFullName(className, classNamePrefix, address);
+			getAttributeHandle(property).writeInt(new_value);
+			connected = true;
+		} catch (IOException e){
+			connected = false;
+			throw new EV3LibraryException("Set device attribute failed: " + property, e);
+		}
+	}
+	
+	/***
+	 * Reads the properties specified back-to-back into a new snapshot.
+	 * @param properties The property names
+	 * @return A snapshot of the properties, which can be refreshed by <code>readSnapshot(AttributeSnapshot)</code>
+	 * @throws EV3LibraryException If I/O goes wrong
+	 */
+	public final AttributeSnapshot readSnapshot(String... properties) throws EV3LibraryException{
+		AttributeSnapshot snapshot = new AttributeSnapshot(this, properties);
+		readSnapshot(snapshot);
+		return snapshot;
+	}
+	
+	/***
+	 * Refreshes the snapshot specified, without allocating a new one.
+	 * @param snapshot A snapshot created by <code>readSnapshot(String...)</code> of this device
+	 * @return The same snapshot
+	 * @throws EV3LibraryException If I/O goes wrong
+	 */
+	public final AttributeSnapshot readSnapshot(AttributeSnapshot snapshot) throws EV3LibraryException{
+		if (snapshot.getDevice() != this){
+			throw new IllegalArgumentException("The snapshot does not belong to this device");
+		}
+		try {
+			snapshot.read();
+			connected = true;
+			return snapshot;
+		} catch (IOException e){
+			connected = false;
+			throw new EV3LibraryException("Read device snapshot failed", e);
+		}
+	}
+	
+	/***
+	 * Refreshes the snapshot specified on the dedicated I/O thread shared by all devices.
+	 * @param snapshot A snapshot created by <code>readSnapshot(String...)</code> of this device
+	 * @return A Future of the same snapshot, which throws an <code>EV3LibraryException</code> on <code>get()</code> if I/O goes wrong
+	 */
+	public final Future<AttributeSnapshot> readSnapshotAsync(final AttributeSnapshot snapshot){
+		return getIOExecutor().submit(new Callable<AttributeSnapshot>(){
+			@Override
+			public AttributeSnapshot call() throws Exception {
+				return readSnapshot(snapshot);
+			}
+		});
+	}
+	
+	private static synchronized ExecutorService getIOExecutor(){
+		if (ioExecutor == null){
+			ioExecutor = Executors.newSingleThreadExecutor(new ThreadFactory(){
+				@Override
+				public Thread newThread(Runnable r) {
+					Thread thread = new Thread(r, "ev3dev-device-io");
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		}
+		return ioExecutor;
+	}
+	
+	private boolean checkIsConnected(boolean invalidate){
+		String found;
+		try {
+			found = Sysfs.searchClassFullName(className, classNamePrefix, address);
 		} catch (Exception ignore){
-			classFullName = null;
-			return false;
+			found = null;
+		}
+		if (found == null ? classFullName != null : !found.equals(classFullName)){
+			clearAttributeHandles(invalidate);
 		}
+		classFullName = found;
 		return classFullName != null;
 	}
 }
\ No newline at end of file
@@ -0,0 +1,145 @@
+/*******************************************************************************
+ * Any modification, copies of sections of this file must be attached with this
+ * license and shown clearly in the developer's project. The code can be used
+ * as long as you state clearly you do not own it. Any violation might result in
+ *  a take-down.
+ *
+ * MIT License
+ *
+ * Copyright (c) 2016, 2017 Anthony Law
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *******************************************************************************/
+package org.ev3dev.hardware;
+
+/**
+ * A hot-plug event of a <code>LegoPort</code>, or of a <code>Device</code> (e.g. <code>Motor</code>, <code>Sensor</code>) connected to it.
+ * @author Anthony
+ *
+ */
+public final class DeviceEvent {
+	
+	/**
+	 * The type of a device event
+	 * @author Anthony
+	 *
+	 */
+	public static enum Type {
+		/**
+		 * A device was plugged in to the port
+		 */
+		CONNECTED,
+		
+		/**
+		 * The device was unplugged from the port
+		 */
+		DISCONNECTED,
+		
+		/**
+		 * The port changed its mode, or the device connected to it changed
+		 */
+		MODE_CHANGED
+	}
+	
+	private final Type type;
+	
+	private final Object source;
+	
+	private final String portName;
+	
+	private final String address;
+	
+	private final String oldStatus;
+	
+	private final String newStatus;
+	
+	private final long timestamp;
+	
+	DeviceEvent(Type type, Object source, String portName, String address, String oldStatus, String newStatus, long timestamp){
+		this.type = type;
+		this.source = source;
+		this.portName = portName;
+		this.address = address;
+		this.oldStatus = oldStatus;
+		this.newStatus = newStatus;
+		this.timestamp = timestamp;
+	}
+	
+	/**
+	 * Returns the type of this event
+	 * @return The event type
+	 */
+	public Type getType(){
+		return type;
+	}
+	
+	/**
+	 * Returns the <code>LegoPort</code> or <code>Device</code> instance this event is about. Returns null if the
+	 *  port has no instance created by the application.
+	 * @return A LegoPort, a Device or null
+	 */
+	public Object getSource(){
+		return source;
+	}
+	
+	/**
+	 * Returns the Sysfs name of the port (e.g. port0)
+	 * @return The port name
+	 */
+	public String getPortName(){
+		return portName;
+	}
+	
+	/**
+	 * Returns the address of the port (e.g. in1, outA)
+	 * @return The port address, or null if unknown
+	 */
+	public String getAddress(){
+		return address;
+	}
+	
+	/**
+	 * Returns the port status before this event (e.g. no-device)
+	 * @return The old port status
+	 */
+	public String getOldStatus(){
+		return oldStatus;
+	}
+	
+	/**
+	 * Returns the port status after this event (e.g. tacho-motor)
+	 * @return The new port status
+	 */
+	public String getNewStatus(){
+		return newStatus;
+	}
+	
+	/**
+	 * Returns the <code>System.nanoTime()</code> when the port change was observed
+	 * @return The timestamp in nanoseconds
+	 */
+	public long getTimestamp(){
+		return timestamp;
+	}
+	
+	@Override
+	public String toString(){
+		return type + " " + portName + " (" + address + "): " + oldStatus + " -> " + newStatus;
+	}
+}
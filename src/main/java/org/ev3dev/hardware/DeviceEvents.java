@@ -0,0 +1,344 @@
+/*******************************************************************************
+ * Any modification, copies of sections of this file must be attached with this
+ * license and shown clearly in the developer's project. The code can be used
+ * as long as you state clearly you do not own it. Any violation might result in
+ *  a take-down.
+ *
+ * MIT License
+ *
+ * Copyright (c) 2016, 2017 Anthony Law
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *******************************************************************************/
+package org.ev3dev.hardware;
+
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.ev3dev.hardware.ports.LegoPort;
+import org.ev3dev.io.AttributeHandle;
+import org.ev3dev.io.DeviceIndex;
+import org.ev3dev.io.DeviceWatcher;
+import org.ev3dev.io.Sysfs;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A hot-plug event stream of the ports and devices. A single background thread watches the <b>status</b> of every
+ *  <code>/sys/class/lego-port/*</code> node, and emits connect, disconnect and mode-change events for the
+ *  <code>LegoPort</code> and <code>Device</code> (e.g. <code>Motor</code>, <code>Sensor</code>) instances on the changed port.
+ *  The <code>isConnected()</code> state and the cached attribute handles of the devices are updated before the
+ *  event is emitted.<br>
+ * <br>
+ * The thread is started by the first <code>subscribe()</code> or <code>start()</code> call. Instances are tracked
+ *  weakly, so they can still be garbage collected.
+ * <pre>
+ * DeviceEvents.subscribe(new DeviceEventListener(){
+ *     public void onDeviceEvent(DeviceEvent event){
+ *         System.out.println(event);
+ *     }
+ * });
+ * </pre>
+ * @author Anthony
+ *
+ */
+public final class DeviceEvents {
+	
+	private static final Logger logger = LoggerFactory.getLogger(DeviceEvents.class);
+	
+	/**
+	 * The default period of reading the port status, in milliseconds
+	 */
+	public static final long DEFAULT_POLL_PERIOD = 20;
+	
+	/**
+	 * How long a device is re-located after its port was connected, before the event is emitted anyway, in milliseconds
+	 */
+	public static final long RELOCATE_TIMEOUT = 2000;
+	
+	private static final String PROPERTY_STATUS = "status";
+	
+	private static final String STATUS_NO_DEVICE = "no-device";
+	
+	private static final String STATUS_ERROR = "error";
+	
+	private static final CopyOnWriteArrayList<DeviceEventListener> listeners = new CopyOnWriteArrayList<DeviceEventListener>();
+	
+	private static final List<WeakReference<Object>> tracked = new ArrayList<WeakReference<Object>>();
+	
+	private static final HashMap<String, String> statuses = new HashMap<String, String>();
+	
+	private static final HashMap<String, AttributeHandle> statusHandles = new HashMap<String, AttributeHandle>();
+	
+	private static final List<Pending> pending = new ArrayList<Pending>();
+	
+	private static String watchedSysfsPath = null;
+	
+	private static long pollPeriod = DEFAULT_POLL_PERIOD;
+	
+	private static Thread thread = null;
+	
+	private DeviceEvents(){}
+	
+	private static class Pending {
+		
+		private final WeakReference<Device> device;
+		
+		private final DeviceEvent event;
+		
+		private final long deadline;
+		
+		private Pending(Device device, DeviceEvent event, long deadline){
+			this.device = new WeakReference<Device>(device);
+			this.event = event;
+			this.deadline = deadline;
+		}
+	}
+	
+	/**
+	 * Subscribes a listener to the device events, and starts the event thread if it is not started yet.
+	 * @param listener The listener
+	 */
+	public static void subscribe(DeviceEventListener listener){
+		listeners.addIfAbsent(listener);
+		start();
+	}
+	
+	/**
+	 * Unsubscribes a listener from the device events
+	 * @param listener The listener
+	 */
+	public static void unsubscribe(DeviceEventListener listener){
+		listeners.remove(listener);
+	}
+	
+	/**
+	 * Starts the event thread without subscribing, so that <code>isConnected()</code> of the devices follows the
+	 *  hot-plug state. Does nothing if it is already started.
+	 */
+	public static synchronized void start(){
+		if (thread != null){
+			return;
+		}
+		thread = new Thread(new Runnable(){
+			@Override
+			public void run() {
+				pollLoop();
+			}
+		}, "ev3dev-device-events");
+		thread.setDaemon(true);
+		thread.start();
+	}
+	
+	/**
+	 * Sets the period of reading the port status
+	 * @param millis The period in milliseconds
+	 */
+	public static synchronized void setPollPeriod(long millis){
+		if (millis < 1){
+			throw new IllegalArgumentException("The poll period must be at least 1 ms: " + millis);
+		}
+		pollPeriod = millis;
+	}
+	
+	/**
+	 * Returns the period of reading the port status
+	 * @return The period in milliseconds
+	 */
+	public static synchronized long getPollPeriod(){
+		return pollPeriod;
+	}
+	
+	/**
+	 * Tracks a port for the events. This is called by the <code>LegoPort</code> constructor.
+	 * @param port The port
+	 */
+	public static void register(LegoPort port){
+		track(port);
+	}
+	
+	/**
+	 * Tracks a device for the events. This is called on the first use of the device, after it is constructed.
+	 * @param device The device
+	 */
+	static void register(Device device){
+		track(device);
+	}
+	
+	private static void track(Object obj){
+		synchronized (tracked){
+			Iterator<WeakReference<Object>> it = tracked.iterator();
+			while (it.hasNext()){
+				if (it.next().get() == null){
+					it.remove();
+				}
+			}
+			tracked.add(new WeakReference<Object>(obj));
+		}
+	}
+	
+	private static void pollLoop(){
+		while (true){
+			try {
+				pollOnce();
+			} catch (RuntimeException e){
+				logger.warn("Device event poll failed", e);
+			}
+			try {
+				Thread.sleep(getPollPeriod());
+			} catch (InterruptedException e){
+				return;
+			}
+		}
+	}
+	
+	private static void pollOnce(){
+		String sysfsPath = Sysfs.getSysfsPath();
+		if (!sysfsPath.equals(watchedSysfsPath)){
+			statuses.clear();
+			statusHandles.clear();
+			watchedSysfsPath = sysfsPath;
+		}
+		
+		String[] nodes = DeviceIndex.getNodes(LegoPort.CLASS_NAME);
+		HashSet<String> present = new HashSet<String>();
+		long now = System.nanoTime();
+		for (String node : nodes){
+			present.add(node);
+			AttributeHandle handle = statusHandles.get(node);
+			if (handle == null){
+				handle = Sysfs.getAttributeHandle(LegoPort.CLASS_NAME, node, PROPERTY_STATUS);
+				statusHandles.put(node, handle);
+			}
+			String status;
+			try {
+				status = handle.readString();
+			} catch (IOException e){
+				statusHandles.remove(node);
+				continue;
+			}
+			if (status.length() == 0){
+				continue;
+			}
+			String old = statuses.put(node, status);
+			if (old != null && !old.equals(status)){
+				portChanged(node, classify(old, status), old, status, now);
+			}
+		}
+		statuses.keySet().retainAll(present);
+		statusHandles.keySet().retainAll(present);
+		
+		retryPending(now);
+	}
+	
+	private static DeviceEvent.Type classify(String oldStatus, String newStatus){
+		boolean wasEmpty = isEmpty(oldStatus);
+		boolean isEmpty = isEmpty(newStatus);
+		if (isEmpty && !wasEmpty){
+			return DeviceEvent.Type.DISCONNECTED;
+		} else if (wasEmpty && !isEmpty){
+			return DeviceEvent.Type.CONNECTED;
+		}
+		return DeviceEvent.Type.MODE_CHANGED;
+	}
+	
+	private static boolean isEmpty(String status){
+		return STATUS_NO_DEVICE.equals(status) || STATUS_ERROR.equals(status);
+	}
+	
+	private static void portChanged(String node, DeviceEvent.Type type, String oldStatus, String newStatus, long now){
+		String address = DeviceIndex.getAddress(LegoPort.CLASS_NAME, node);
+		if (type != DeviceEvent.Type.DISCONNECTED){
+			DeviceWatcher.notifyChange();
+		}
+		
+		boolean any = false;
+		for (Object obj : getTracked()){
+			if (obj instanceof LegoPort){
+				if (node.equals(((LegoPort) obj).getNodeName())){
+					any = true;
+					dispatch(new DeviceEvent(type, obj, node, address, oldStatus, newStatus, now));
+				}
+			} else if (obj instanceof Device){
+				Device device = (Device) obj;
+				if (device.getPort() == null || !node.equals(device.getPort().getNodeName())){
+					continue;
+				}
+				any = true;
+				DeviceEvent event = new DeviceEvent(type, device, node, address, oldStatus, newStatus, now);
+				if (type == DeviceEvent.Type.DISCONNECTED){
+					device.portDisconnected();
+					dispatch(event);
+				} else if (device.portReconnected()){
+					dispatch(event);
+				} else {
+					//The driver may create the device node a bit later than the port status changes
+					pending.add(new Pending(device, event, now + RELOCATE_TIMEOUT * 1000000L));
+				}
+			}
+		}
+		if (!any){
+			dispatch(new DeviceEvent(type, null, node, address, oldStatus, newStatus, now));
+		}
+	}
+	
+	private static void retryPending(long now){
+		Iterator<Pending> it = pending.iterator();
+		while (it.hasNext()){
+			Pending p = it.next();
+			Device device = p.device.get();
+			if (device == null){
+				it.remove();
+			} else if (device.portReconnected() || now - p.deadline > 0){
+				it.remove();
+				dispatch(p.event);
+			}
+		}
+	}
+	
+	private static List<Object> getTracked(){
+		List<Object> list = new ArrayList<Object>();
+		synchronized (tracked){
+			for (WeakReference<Object> ref : tracked){
+				Object obj = ref.get();
+				if (obj != null){
+					list.add(obj);
+				}
+			}
+		}
+		return list;
+	}
+	
+	private static void dispatch(DeviceEvent event){
+		logger.debug("Device event: " + event);
+		for (DeviceEventListener listener : listeners){
+			try {
+				listener.onDeviceEvent(event);
+			} catch (RuntimeException e){
+				logger.warn("Device event listener failed", e);
+			}
+		}
+	}
+}
@@ -0,0 +1,349 @@
+/*******************************************************************************
+ * Any modification, copies of sections of this file must be attached with this
+ * license and shown clearly in the developer's project. The code can be used
+ * as long as you state clearly you do not own it. Any violation might result in
+ *  a take-down.
+ *
+ * MIT License
+ *
+ * Copyright (c) 2016, 2017 Anthony Law
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *******************************************************************************/
+package org.ev3dev.hardware;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * An event stream of the EV3 buttons. A single background thread reads the evdev stream
+ *  (<code>struct input_event</code> records) of <code>Button.SYSTEM_EVENT_PATH</code>, keeps the pressed state of
+ *  every key, and dispatches press and release callbacks with the kernel timestamps. As the kernel queues
+ *  the records, no edges are lost however short the press is.<br>
+ * <br>
+ * The thread is started by the first <code>subscribe()</code> or <code>start()</code> call. The stream only reports
+ *  changes, so a key already held when the stream is opened reads as released until it is released and pressed
+ *  again.<br>
+ * <br>
+ * The size of the <code>struct timeval</code> of the records follows the ABI of the process, 16 bytes for a 64-bit
+ *  JVM and 8 bytes otherwise. It can be set with the <code>ev3dev.input.timevalSize</code> system property. The
+ *  records read are checked against it, and the other size is used if they do not match.
+ * <pre>
+ * InputEvents.subscribe(new ButtonListener(){
+ *     public void buttonPressed(int button, long timestamp){
+ *         System.out.println("Pressed: " + button);
+ *     }
+ *     public void buttonReleased(int button, long timestamp){
+ *     }
+ * });
+ * </pre>
+ * @author Anthony
+ *
+ */
+public final class InputEvents {
+	
+	private static final Logger logger = LoggerFactory.getLogger(InputEvents.class);
+	
+	/**
+	 * The <code>EV_KEY</code> event type
+	 */
+	public static final int EV_KEY = 0x01;
+	
+	/**
+	 * The highest key code tracked
+	 */
+	public static final int KEY_MAX = 0x2ff;
+	
+	/**
+	 * How long the thread waits before re-opening the event stream after an I/O error, in milliseconds
+	 */
+	public static final long REOPEN_DELAY = 1000;
+	
+	private static final int KEY_RELEASED = 0;
+	
+	/**
+	 * The system property setting the size of the <code>struct timeval</code> of the records, 8 or 16
+	 */
+	public static final String TIMEVAL_SIZE_PROPERTY = "ev3dev.input.timevalSize";
+	
+	/**
+	 * The highest event type
+	 */
+	private static final int EV_MAX = 0x1f;
+	
+	private static final int KEY_PRESSED = 1;
+	
+	//struct input_event is a struct timeval, followed by __u16 type, __u16 code and __s32 value
+	private static volatile int timevalSize = defaultTimevalSize();
+	
+	private static final int EVENTS_PER_READ = 64;
+	
+	private static final CopyOnWriteArrayList<ButtonListener> listeners = new CopyOnWriteArrayList<ButtonListener>();
+	
+	private static final AtomicLongArray keys = new AtomicLongArray(KEY_MAX / 64 + 1);
+	
+	private static volatile long lastEventTime = 0;
+	
+	private static volatile boolean streaming = false;
+	
+	private static final Object streamingLock = new Object();
+	
+	private static String eventPath = Button.SYSTEM_EVENT_PATH;
+	
+	private static Thread thread = null;
+	
+	private InputEvents(){}
+	
+	/**
+	 * Subscribes a listener to the button events, and starts the event thread if it is not started yet.
+	 * @param listener The listener
+	 */
+	public static void subscribe(ButtonListener listener){
+		listeners.addIfAbsent(listener);
+		start();
+	}
+	
+	/**
+	 * Unsubscribes a listener from the button events
+	 * @param listener The listener
+	 */
+	public static void unsubscribe(ButtonListener listener){
+		listeners.remove(listener);
+	}
+	
+	/**
+	 * Starts the event thread without subscribing, so that the key state is kept. Does nothing if it is already started.
+	 */
+	public static synchronized void start(){
+		if (thread != null){
+			return;
+		}
+		thread = new Thread(new Runnable(){
+			@Override
+			public void run() {
+				readLoop();
+			}
+		}, "ev3dev-input-events");
+		thread.setDaemon(true);
+		thread.setPriority(Thread.MAX_PRIORITY);
+		thread.start();
+	}
+	
+	/**
+	 * Sets the evdev stream read by the event thread. This must be called before the thread is started.
+	 * @param path The path of the event device
+	 */
+	public static synchronized void setEventPath(String path){
+		if (thread != null){
+			throw new IllegalStateException("The input event thread is already started");
+		}
+		eventPath = path;
+	}
+	
+	/**
+	 * Returns the evdev stream read by the event thread
+	 * @return The path of the event device
+	 */
+	public static synchronized String getEventPath(){
+		return eventPath;
+	}
+	
+	/**
+	 * Returns whether the event thread has the event stream opened, so that <code>isKeyPressed()</code> is up to date
+	 * @return Whether the stream is opened
+	 */
+	public static boolean isStreaming(){
+		return streaming;
+	}
+	
+	/**
+	 * Waits until the event thread has the event stream opened
+	 * @param timeout The maximum time to wait, in milliseconds
+	 * @return Whether the stream is opened
+	 */
+	public static boolean awaitStreaming(long timeout){
+		long deadline = System.nanoTime() + timeout * 1000000L;
+		synchronized (streamingLock){
+			while (!streaming){
+				long left = (deadline - System.nanoTime()) / 1000000L;
+				if (left <= 0){
+					return false;
+				}
+				try {
+					streamingLock.wait(left);
+				} catch (InterruptedException e){
+					Thread.currentThread().interrupt();
+					return streaming;
+				}
+			}
+			return true;
+		}
+	}
+	
+	/**
+	 * Returns the pressed state of a key, as kept from the event stream. This never touches the device. A key held
+	 *  since before the stream was opened reads as released.
+	 * @param code The key code, e.g. <code>Button.BUTTON_ENTER</code>
+	 * @return Whether the key is pressed
+	 */
+	public static boolean isKeyPressed(int code){
+		if (code < 0 || code > KEY_MAX){
+			return false;
+		}
+		return (keys.get(code >> 6) & (1L << (code & 63))) != 0;
+	}
+	
+	/**
+	 * Returns the kernel timestamp of the last event read
+	 * @return The timestamp in microseconds, or 0 if none is read yet
+	 */
+	public static long getLastEventTime(){
+		return lastEventTime;
+	}
+	
+	/**
+	 * Returns the size of the <code>struct timeval</code> of the records being read
+	 * @return 8 or 16 bytes
+	 */
+	public static int getTimevalSize(){
+		return timevalSize;
+	}
+	
+	private static int defaultTimevalSize(){
+		String size = System.getProperty(TIMEVAL_SIZE_PROPERTY);
+		if ("8".equals(size) || "16".equals(size)){
+			return Integer.parseInt(size);
+		} else if (size != null){
+			logger.warn("Ignoring invalid " + TIMEVAL_SIZE_PROPERTY + ": " + size);
+		}
+		return "64".equals(System.getProperty("sun.arch.data.model")) ? 16 : 8;
+	}
+	
+	private static void readLoop(){
+		ByteBuffer buf = ByteBuffer.allocateDirect((16 + 8) * EVENTS_PER_READ).order(ByteOrder.nativeOrder());
+		while (true){
+			FileChannel channel = null;
+			try {
+				channel = FileChannel.open(Paths.get(getEventPath()), StandardOpenOption.READ);
+				synchronized (streamingLock){
+					streaming = true;
+					streamingLock.notifyAll();
+				}
+				while (true){
+					int tvSize = timevalSize;
+					int eventSize = tvSize + 8;
+					//evdev returns whole records only, as many as fit
+					buf.clear();
+					buf.limit(eventSize * EVENTS_PER_READ);
+					int n = channel.read(buf);
+					if (n < 0){
+						throw new IOException("The input event stream has ended");
+					}
+					buf.flip();
+					if (!matchesLayout(buf, tvSize)){
+						timevalSize = tvSize == 16 ? 8 : 16;
+						throw new IOException("The " + n + " bytes read do not match " + eventSize + "-byte records. Using " +
+								(timevalSize + 8) + "-byte records");
+					}
+					while (buf.remaining() >= eventSize){
+						handleEvent(buf, tvSize);
+					}
+				}
+			} catch (IOException e){
+				logger.warn("Reading the input event stream \"" + getEventPath() + "\" failed", e);
+			} finally {
+				streaming = false;
+				if (channel != null){
+					try {
+						channel.close();
+					} catch (IOException ignore){}
+				}
+			}
+			//The key state may be missing edges from now on
+			for (int i = 0; i < keys.length(); i++){
+				keys.set(i, 0);
+			}
+			try {
+				Thread.sleep(REOPEN_DELAY);
+			} catch (InterruptedException e){
+				return;
+			}
+		}
+	}
+	
+	private static boolean matchesLayout(ByteBuffer buf, int tvSize){
+		int eventSize = tvSize + 8;
+		if (buf.remaining() % eventSize != 0){
+			return false;
+		}
+		for (int i = buf.position() + tvSize; i < buf.limit(); i += eventSize){
+			if ((buf.getShort(i) & 0xffff) > EV_MAX){
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	private static void handleEvent(ByteBuffer buf, int tvSize){
+		long sec;
+		long usec;
+		if (tvSize == 16){
+			sec = buf.getLong();
+			usec = buf.getLong();
+		} else {
+			sec = buf.getInt() & 0xffffffffL;
+			usec = buf.getInt() & 0xffffffffL;
+		}
+		int type = buf.getShort() & 0xffff;
+		int code = buf.getShort() & 0xffff;
+		int value = buf.getInt();
+		long timestamp = sec * 1000000L + usec;
+		lastEventTime = timestamp;
+		
+		//Auto-repeats (value 2) do not change the state
+		if (type != EV_KEY || code > KEY_MAX || (value != KEY_PRESSED && value != KEY_RELEASED)){
+			return;
+		}
+		int word = code >> 6;
+		long bit = 1L << (code & 63);
+		long old = keys.get(word);
+		keys.set(word, value == KEY_PRESSED ? old | bit : old & ~bit);
+		
+		for (ButtonListener listener : listeners){
+			try {
+				if (value == KEY_PRESSED){
+					listener.buttonPressed(code, timestamp);
+				} else {
+					listener.buttonReleased(code, timestamp);
+				}
+			} catch (RuntimeException e){
+				logger.warn("Button listener failed", e);
+			}
+		}
+	}
+}
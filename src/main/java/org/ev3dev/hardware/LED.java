@@ -141,7 +141,7 @@ public class LED extends Device{
 		if (!file.exists()){
 			throw new InvalidLEDException("The specified LED does not exist");
 		}
-		this.setClassName(ledName);
+		this.setClassFullname(ledName);
 	}
 	
 	/**
@@ -150,8 +150,7 @@ public class LED extends Device{
 	 * @throws EV3LibraryException If I/O goes wrong
 	 */
 	public int getMaxBrightness() throws EV3LibraryException{
-		String str = this.getAttribute(SYSFS_PROPERTY_MAX_BRIGHTNESS);
-		return Integer.parseInt(str);
+		return this.getIntAttribute(SYSFS_PROPERTY_MAX_BRIGHTNESS);
 	}
 	
 	/**
@@ -160,8 +159,7 @@ public class LED extends Device{
 	 * @throws EV3LibraryException If I/O goes wrong
 	 */
 	public int getBrightness() throws EV3LibraryException{
-		String str = this.getAttribute(SYSFS_PROPERTY_BRIGHTNESS);
-		return Integer.parseInt(str);
+		return this.getIntAttribute(SYSFS_PROPERTY_BRIGHTNESS);
 	}
 	
 	/**
@@ -170,7 +168,7 @@ public class LED extends Device{
 	 * @throws EV3LibraryException If I/O goes wrong
 	 */
 	public void setBrightness(int brightness) throws EV3LibraryException{
-		this.setAttribute(SYSFS_PROPERTY_BRIGHTNESS, Integer.toString(brightness));
+		this.setIntAttribute(SYSFS_PROPERTY_BRIGHTNESS, brightness);
 	}
 	
 	/**
@@ -238,8 +236,7 @@ public class LED extends Device{
 	 * @throws EV3LibraryException If I/O goes wrong
 	 */
 	public int getDelay_On() throws EV3LibraryException{
-		String str = this.getAttribute(SYSFS_PROPERTY_DELAY_ON);
-		return Integer.parseInt(str);
+		return this.getIntAttribute(SYSFS_PROPERTY_DELAY_ON);
 	}
 	
 	/**
@@ -249,8 +246,7 @@ public class LED extends Device{
 	 * @throws EV3LibraryException If I/O goes wrong
 	 */
 	public int getDelay_Off() throws EV3LibraryException{
-		String str = this.getAttribute(SYSFS_PROPERTY_DELAY_OFF);
-		return Integer.parseInt(str);
+		return this.getIntAttribute(SYSFS_PROPERTY_DELAY_OFF);
 	}
 	
 	/**
@@ -260,7 +256,7 @@ public class LED extends Device{
 	 * @throws EV3LibraryException If I/O goes wrong
 	 */
 	public void setDelay_On(int delay_on) throws EV3LibraryException{
-		this.setAttribute(SYSFS_PROPERTY_DELAY_ON, Integer.toString(delay_on));
+		this.setIntAttribute(SYSFS_PROPERTY_DELAY_ON, delay_on);
 	}
 	
 	/**
@@ -270,7 +266,7 @@ public class LED extends Device{
 	 * @throws EV3LibraryException If I/O goes wrong
 	 */
 	public void setDelay_Off(int delay_off) throws EV3LibraryException{
-		this.setAttribute(SYSFS_PROPERTY_DELAY_OFF, Integer.toString(delay_off));
+		this.setIntAttribute(SYSFS_PROPERTY_DELAY_OFF, delay_off);
 	}
 
 	@Override
@@ -90,13 +90,11 @@ public class PowerSupply{
 	 * @throws EV3LibraryException If I/O goes wrong
 	 */
 	public static int getMeasuredCurrent() throws EV3LibraryException{
-		String str;
 		try {
-			str = Sysfs.getAttribute(POWER_SUPPLY_CLASS_NAME, SYSFS_MEASURED_CURRENT);
+			return Sysfs.readInt(POWER_SUPPLY_CLASS_NAME, SYSFS_MEASURED_CURRENT);
 		} catch (IOException e) {
 			throw new EV3LibraryException("Get measured current attribute failed", e);
 		}
-		return Integer.parseInt(str);
 	}
 	
 	/***
@@ -105,13 +103,11 @@ public class PowerSupply{
 	 * @throws EV3LibraryException If I/O goes wrong
 	 */
 	public static int getMeasuredVoltage() throws EV3LibraryException{
-		String str;
 		try {
-			str = Sysfs.getAttribute(POWER_SUPPLY_CLASS_NAME, SYSFS_MEASURED_VOLTAGE);
+			return Sysfs.readInt(POWER_SUPPLY_CLASS_NAME, SYSFS_MEASURED_VOLTAGE);
 		} catch (IOException e) {
 			throw new EV3LibraryException("Get measured voltage attribute failed", e);
 		}
-		return Integer.parseInt(str);
 	}
 	
 	/***
@@ -120,13 +116,11 @@ public class PowerSupply{
 	 * @throws EV3LibraryException If I/O goes wrong
 	 */
 	public static int getMaxVoltage() throws EV3LibraryException{
-		String str;
 		try {
-			str = Sysfs.getAttribute(POWER_SUPPLY_CLASS_NAME, SYSFS_MAX_VOLTAGE);
+			return Sysfs.readInt(POWER_SUPPLY_CLASS_NAME, SYSFS_MAX_VOLTAGE);
 		} catch (IOException e) {
 			throw new EV3LibraryException("Get max voltage attribute failed", e);
 		}
-		return Integer.parseInt(str);
 	}
 	
 	/***
@@ -135,13 +129,11 @@ public class PowerSupply{
 	 * @throws EV3LibraryException If I/O goes wrong
 	 */
 	public static int getMinVoltage() throws EV3LibraryException{
-		String str;
 		try {
-			str = Sysfs.getAttribute(POWER_SUPPLY_CLASS_NAME, SYSFS_MIN_VOLTAGE);
+			return Sysfs.readInt(POWER_SUPPLY_CLASS_NAME, SYSFS_MIN_VOLTAGE);
 		} catch (IOException e) {
 			throw new EV3LibraryException("Get min voltage attribute failed", e);
 		}
-		return Integer.parseInt(str);
 	}
 	
 	/***
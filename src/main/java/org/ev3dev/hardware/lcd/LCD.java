@@ -28,11 +28,11 @@
  *******************************************************************************/
 package org.ev3dev.hardware.lcd;
 
-import java.io.DataOutputStream;
 import java.io.File;
-import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
 
 import org.ev3dev.exception.EV3LibraryException;
 
@@ -50,6 +50,13 @@ public class LCD {
 	
 	public static final int SCREEN_HEIGHT = 128;
 
+	/**
+	 * The number of framebuffer bytes of a row
+	 */
+	public static final int LINE_LEN = 24;
+	
+	private FileChannel channel = null;
+
 	public LCD() {
 		
 	}
@@ -60,17 +67,66 @@ public class LCD {
 	 * @throws EV3LibraryException
 	 */
 	public void draw(byte[] data) throws EV3LibraryException{
-		File file = new File(FB_PATH);
-		if (!file.exists()){
-			throw new EV3LibraryException("The framebuffer device does not exist! Are you using a EV3?");
+		draw(data, 0, SCREEN_HEIGHT);
+	}
+	
+	/**
+	 * Draws the rows specified of a byte array into the EV3 framebuffer. Only these rows are written, at their
+	 *  position in the framebuffer, which is held open between draws.
+	 * @param data Byte array of the whole screen (128 (height) * 24 (line length) = 3072 bytes)
+	 * @param fromRow The first row to be drawn
+	 * @param toRow The row after the last row to be drawn
+	 * @throws EV3LibraryException If I/O goes wrong
+	 */
+	public void draw(byte[] data, int fromRow, int toRow) throws EV3LibraryException{
+		checkRows(data.length, fromRow, toRow);
+		if (fromRow == toRow){
+			return;
+		}
+		synchronized (this){
+			try {
+				FileChannel ch = getChannel();
+				ByteBuffer buf = ByteBuffer.wrap(data, fromRow * LINE_LEN, (toRow - fromRow) * LINE_LEN);
+				long pos = fromRow * LINE_LEN;
+				while (buf.hasRemaining()){
+					pos += ch.write(buf, pos);
+				}
+			} catch (IOException e) {
+				close();
+				throw new EV3LibraryException("Unable to draw the LCD", e);
+			}
+		}
+	}
+	
+	static void checkRows(int length, int fromRow, int toRow){
+		if (fromRow < 0 || toRow > SCREEN_HEIGHT || fromRow > toRow){
+			throw new IllegalArgumentException("Invalid row range: " + fromRow + " to " + toRow);
+		}
+		if (length < toRow * LINE_LEN){
+			throw new IllegalArgumentException("The data is too short for row " + toRow + ": " + length + " bytes");
+		}
+	}
+	
+	private FileChannel getChannel() throws IOException{
+		if (channel == null || !channel.isOpen()){
+			File file = new File(FB_PATH);
+			if (!file.exists()){
+				throw new EV3LibraryException("The framebuffer device does not exist! Are you using a EV3?");
+			}
+			channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE);
 		}
-		try {
-			DataOutputStream out = new DataOutputStream(new FileOutputStream(file));
-			out.write(data);
-			out.flush();
-			out.close();
-		} catch (IOException e) {
-			throw new EV3LibraryException("Unable to draw the LCD", e);
+		return channel;
+	}
+	
+	/**
+	 * Closes the framebuffer held open. The next draw opens it again.
+	 */
+	public synchronized void close(){
+		if (channel != null){
+			try {
+				channel.close();
+			} catch (IOException ignore){}
+			channel = null;
 		}
 	}
 
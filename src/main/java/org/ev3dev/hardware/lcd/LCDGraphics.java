@@ -28,6 +28,7 @@
  *******************************************************************************/
 package org.ev3dev.hardware.lcd;
 
+import java.awt.BasicStroke;
 import java.awt.Color;
 import java.awt.Composite;
 import java.awt.Font;
@@ -45,6 +46,7 @@ import java.awt.Stroke;
 import java.awt.font.FontRenderContext;
 import java.awt.font.GlyphVector;
 import java.awt.geom.AffineTransform;
+import java.awt.geom.Rectangle2D;
 import java.awt.image.BufferedImage;
 import java.awt.image.BufferedImageOp;
 import java.awt.image.ColorModel;
@@ -52,10 +54,12 @@ import java.awt.image.DataBuffer;
 import java.awt.image.DataBufferByte;
 import java.awt.image.ImageObserver;
 import java.awt.image.IndexColorModel;
+import java.awt.image.MultiPixelPackedSampleModel;
 import java.awt.image.Raster;
 import java.awt.image.RenderedImage;
 import java.awt.image.WritableRaster;
 import java.awt.image.renderable.RenderableImage;
+import java.nio.ByteBuffer;
 import java.text.AttributedCharacterIterator;
 import java.util.Arrays;
 import java.util.Map;
@@ -67,14 +71,32 @@ import java.util.Map;
  */
 public class LCDGraphics extends Graphics2D {
 	
-	public static final int LINE_LEN = 24;
+	public static final int LINE_LEN = LCD.LINE_LEN;
 	
 	public static final int ROWS = 128;
 	
 	public static final int BUF_SIZE = LINE_LEN * ROWS;
 	
+	//The framebuffer bit order is the reverse of the packed raster's
+	private static final byte[] REVERSE = new byte[256];
+	
+	static {
+		for (int i = 0; i < 256; i++){
+			REVERSE[i] = (byte) (Integer.reverse(i) >>> 24);
+		}
+	}
+	
+	private final byte[] buf = new byte[BUF_SIZE];
+	
+	private final ByteBuffer bufWrapper = ByteBuffer.wrap(buf);
+	
 	private LCD lcd;
 	
+	//The rows changed since the last flush: from dirtyTop to dirtyBottom (exclusive)
+	private int dirtyTop = 0;
+	
+	private int dirtyBottom = LCD.SCREEN_HEIGHT;
+	
 	private BufferedImage image;
 	
 	private Graphics2D g2d;
@@ -118,120 +140,328 @@ public class LCDGraphics extends Graphics2D {
 	}
 	
 	/**
-	 * Returns the rendering BufferedImage instance
+	 * Returns the rendering BufferedImage instance. As drawing onto it directly is not tracked, the whole screen
+	 *  is flushed next time.
 	 * @return BufferedImage
 	 */
 	public BufferedImage getImage(){
+		markAllDirty();
 		return image;
 	}
 	
 	/**
-	 * Applies the Graphics context onto the ev3dev's LCD
+	 * Applies the Graphics context onto the ev3dev's LCD. Only the rows changed since the last flush are converted
+	 *  and written. With a <code>MappedLCD</code>, the rows are converted straight into its mapped buffer.
 	 */
 	public void flush(){
-		byte[] buf = new byte[BUF_SIZE];
+		if (dirtyTop >= dirtyBottom){
+			return;
+		}
+		if (lcd instanceof MappedLCD){
+			MappedLCD mapped = (MappedLCD) lcd;
+			toFramebuffer(image, mapped.getBackBuffer(), dirtyTop, dirtyBottom);
+			mapped.swap(dirtyTop, dirtyBottom);
+		} else {
+			toFramebuffer(image, bufWrapper, dirtyTop, dirtyBottom);
+			lcd.draw(buf, dirtyTop, dirtyBottom);
+		}
+		dirtyTop = LCD.SCREEN_HEIGHT;
+		dirtyBottom = 0;
+	}
+	
+	/**
+	 * Marks rows to be written by the next flush, e.g. after drawing onto <code>getImage()</code> directly
+	 * @param y The first row, in screen coordinates
+	 * @param height The number of rows
+	 */
+	public void markDirty(int y, int height){
+		markRows(y, y + height);
+	}
+	
+	/**
+	 * Marks the whole screen to be written by the next flush
+	 */
+	public void markAllDirty(){
+		dirtyTop = 0;
+		dirtyBottom = LCD.SCREEN_HEIGHT;
+	}
+	
+	/**
+	 * Returns whether any row has changed since the last flush
+	 * @return Whether it is dirty
+	 */
+	public boolean isDirty(){
+		return dirtyTop < dirtyBottom;
+	}
+	
+	private void markRows(int top, int bottom){
+		if (top < 0){
+			top = 0;
+		}
+		if (bottom > LCD.SCREEN_HEIGHT){
+			bottom = LCD.SCREEN_HEIGHT;
+		}
+		if (top >= bottom){
+			return;
+		}
+		if (top < dirtyTop){
+			dirtyTop = top;
+		}
+		if (bottom > dirtyBottom){
+			dirtyBottom = bottom;
+		}
+	}
+	
+	//Marks the rows covered by a rectangle in user space, padded by the stroke if it is stroked
+	private void dirtyRect(double x, double y, double w, double h, boolean stroked){
+		if (w < 0){
+			x += w;
+			w = -w;
+		}
+		if (h < 0){
+			y += h;
+			h = -h;
+		}
+		if (stroked){
+			double pad = getStrokePad();
+			if (pad < 0){
+				markAllDirty();
+				return;
+			}
+			x -= pad;
+			y -= pad;
+			w += pad * 2;
+			h += pad * 2;
+		}
+		AffineTransform tx = g2d.getTransform();
+		double top;
+		double bottom;
+		if ((tx.getType() & ~AffineTransform.TYPE_TRANSLATION) == 0){
+			top = y + tx.getTranslateY();
+			bottom = top + h;
+		} else {
+			Rectangle2D r = tx.createTransformedShape(new Rectangle2D.Double(x, y, w, h)).getBounds2D();
+			top = r.getMinY();
+			bottom = r.getMaxY();
+		}
+		//One more row on each side for the antialiasing and rounding
+		markRows((int) Math.floor(top) - 1, (int) Math.ceil(bottom) + 2);
+	}
+	
+	private void dirtyRect(Rectangle2D r, boolean stroked){
+		dirtyRect(r.getX(), r.getY(), r.getWidth(), r.getHeight(), stroked);
+	}
+	
+	private void dirtyPoints(int[] xPoints, int[] yPoints, int nPoints, boolean stroked){
+		if (nPoints <= 0){
+			return;
+		}
+		int minX = xPoints[0];
+		int maxX = xPoints[0];
+		int minY = yPoints[0];
+		int maxY = yPoints[0];
+		for (int i = 1; i < nPoints; i++){
+			minX = Math.min(minX, xPoints[i]);
+			maxX = Math.max(maxX, xPoints[i]);
+			minY = Math.min(minY, yPoints[i]);
+			maxY = Math.max(maxY, yPoints[i]);
+		}
+		dirtyRect(minX, minY, maxX - minX, maxY - minY, stroked);
+	}
+	
+	private void dirtyString(String str, double x, double y){
+		FontMetrics fm = g2d.getFontMetrics();
+		dirtyRect(x, y - fm.getMaxAscent(), fm.stringWidth(str), fm.getMaxAscent() + fm.getMaxDescent(), false);
+	}
+	
+	//How far the stroke reaches out of a shape, or -1 if unknown
+	private double getStrokePad(){
+		Stroke stroke = g2d.getStroke();
+		if (!(stroke instanceof BasicStroke)){
+			return -1;
+		}
+		BasicStroke bs = (BasicStroke) stroke;
+		double half = Math.max(bs.getLineWidth(), 1) / 2;
+		if (bs.getLineJoin() == BasicStroke.JOIN_MITER){
+			return half * Math.max(bs.getMiterLimit(), 1);
+		}
+		return half;
+	}
+	
+	/**
+	 * Converts an image to the framebuffer layout (<code>LINE_LEN</code> bytes per row, least significant bit first,
+	 *  1 is black). A 1-bit packed image, like the one of <code>getImage()</code>, is converted directly from its
+	 *  raster bytes with a bit-reversal table. Other images fall back to reading every pixel.
+	 * @param src The image, at least <code>LCD.SCREEN_WIDTH</code> x <code>LCD.SCREEN_HEIGHT</code>
+	 * @param dest The destination, at least <code>BUF_SIZE</code> long
+	 * @return The destination
+	 */
+	public static byte[] toFramebuffer(BufferedImage src, byte[] dest){
+		if (dest.length < BUF_SIZE){
+			throw new IllegalArgumentException("The destination must be at least " + BUF_SIZE + " bytes long");
+		}
+		toFramebuffer(src, ByteBuffer.wrap(dest), 0, ROWS);
+		return dest;
+	}
+	
+	/**
+	 * Converts rows of an image to the framebuffer layout, into a buffer (e.g. a mapped framebuffer). Row
+	 *  <code>i</code> is stored at index <code>i * LINE_LEN</code> of the buffer, whose position is not changed.
+	 * @param src The image, at least <code>LCD.SCREEN_WIDTH</code> x <code>LCD.SCREEN_HEIGHT</code>
+	 * @param dest The destination, at least <code>BUF_SIZE</code> long
+	 * @param fromRow The first row to be converted
+	 * @param toRow The row after the last row to be converted
+	 */
+	public static void toFramebuffer(BufferedImage src, ByteBuffer dest, int fromRow, int toRow){
+		LCD.checkRows(dest.limit(), fromRow, toRow);
+		if (!convertPacked(src, dest, fromRow, toRow)){
+			convertPixels(src, dest, fromRow, toRow);
+		}
+	}
+	
+	private static boolean convertPacked(BufferedImage src, ByteBuffer dest, int fromRow, int toRow){
+		if (!(src.getColorModel() instanceof IndexColorModel) ||
+				!(src.getSampleModel() instanceof MultiPixelPackedSampleModel) ||
+				!(src.getRaster().getDataBuffer() instanceof DataBufferByte)){
+			return false;
+		}
+		IndexColorModel icm = (IndexColorModel) src.getColorModel();
+		MultiPixelPackedSampleModel sm = (MultiPixelPackedSampleModel) src.getSampleModel();
+		WritableRaster raster = src.getRaster();
+		if (icm.getMapSize() != 2 || sm.getPixelBitStride() != 1 || raster.getParent() != null ||
+				raster.getWidth() < LCD.SCREEN_WIDTH || raster.getHeight() < LCD.SCREEN_HEIGHT){
+			return false;
+		}
+		//Whether the raster bit 1 means white, so the bits are inverted
+		int invert = isDark(icm.getRGB(1)) ? 0 : 0xff;
 		
-		byte[] pixel = ((DataBufferByte) image.getRaster().getDataBuffer()).getData();
-		//System.out.println("pixel[] len: " + pixel.length);
-		//System.out.println("content: " + Arrays.toString(pixel));
+		byte[] pixel = ((DataBufferByte) raster.getDataBuffer()).getData();
+		int stride = sm.getScanlineStride();
+		int offset = sm.getOffset(0, 0) + raster.getDataBuffer().getOffset();
+		if ((sm.getDataBitOffset() & 7) != 0){
+			return false;
+		}
 		
-		int bitPos;
-		for (int i = 0; i < LCD.SCREEN_HEIGHT; i++){
-			//System.out.println("rendering row " + i + "...");
-			//long t = System.currentTimeMillis();
-			bitPos = 0;
-			for (int j = 0; j < LCD.SCREEN_WIDTH; j++){
-				//int val = image.getRGB(j, i);
-				//int cmb = val & 0xff + (val & 0xff00) >> 8 + (val & 0xff0000) >> 16;
-				
-				if (bitPos > 7){
-					//System.out.println("Overload");
-					bitPos = 0;
-				}
-				
-				
-				//TODO: Rewrite not to use getRGB()! It results in low performance
-				Color color = new Color(image.getRGB(j, i));
-				
-				int y = (int) (0.2126 * color.getRed() + 0.7152 * color.getBlue() + 0.0722 * color.getGreen()); //Combine all colours together 255+255+255 = 765
-				//System.out.println("(" + j + ", " + i + "): " + cmb);
-				
-				
-				//byte pixelBit = pixel[i * LINE_LEN + j / 8];
-				
-				//System.out.println(Integer.toHexString(pixelBit));
-				
-				//System.out.println("Pixel: " + (i * LINE_LEN + j / 8) + " bit " + bitPos + ": " + y + " fill? " + (y < 128));
-				if (y < 128){
-					//System.out.println("pixel black: " + (i * LINE_LEN + j / 8 + "@bit" + bitPos) + "y: " + y + " r:" + color.getRed() + "g:" + color.getGreen() + "b:" + color.getBlue());
-					//System.out.println("Black: " + (pixelBit & 0xff));
-					buf[i * LINE_LEN + j / 8] |= (1 << bitPos);
-				} else {
-					//System.out.println("White");
-					buf[i * LINE_LEN + j / 8] &= ~(1 << bitPos);
+		int fullBytes = LCD.SCREEN_WIDTH / 8;
+		int lastMask = (1 << (LCD.SCREEN_WIDTH % 8)) - 1;
+		for (int i = fromRow; i < toRow; i++){
+			int in = offset + i * stride;
+			int out = i * LINE_LEN;
+			for (int j = 0; j < fullBytes; j++){
+				dest.put(out + j, REVERSE[(pixel[in + j] ^ invert) & 0xff]);
+			}
+			int j = fullBytes;
+			if (lastMask != 0){
+				dest.put(out + j, (byte) (REVERSE[(pixel[in + j] ^ invert) & 0xff] & lastMask));
+				j++;
+			}
+			for (; j < LINE_LEN; j++){
+				dest.put(out + j, (byte) 0);
+			}
+		}
+		return true;
+	}
+	
+	private static void convertPixels(BufferedImage src, ByteBuffer dest, int fromRow, int toRow){
+		for (int i = fromRow; i < toRow; i++){
+			int out = i * LINE_LEN;
+			for (int j = 0; j < LINE_LEN; j++){
+				int b = 0;
+				for (int k = 0; k < 8 && j * 8 + k < LCD.SCREEN_WIDTH; k++){
+					if (isDark(src.getRGB(j * 8 + k, i))){
+						b |= 1 << k;
+					}
 				}
-				
-				bitPos++;
+				dest.put(out + j, (byte) b);
 			}
-			//System.out.println("row (" + (i) + ") getRGB used: " + (System.currentTimeMillis() - t) + " ms");
 		}
-		
-		
-		lcd.draw(buf);
 	}
-
+	
+	private void dirtyImage(Image img, int x, int y, ImageObserver observer){
+		int w = img.getWidth(observer);
+		int h = img.getHeight(observer);
+		if (w < 0 || h < 0){
+			markAllDirty();
+		} else {
+			dirtyRect(x, y, w, h, false);
+		}
+	}
+	
+	private static boolean isDark(int rgb){
+		int r = (rgb >> 16) & 0xff;
+		int g = (rgb >> 8) & 0xff;
+		int b = rgb & 0xff;
+		return (2126 * r + 7152 * g + 722 * b) / 10000 < 128;
+	}
+	
 	@Override
 	public void draw(Shape s) {
+		if (getStrokePad() < 0){
+			dirtyRect(g2d.getStroke().createStrokedShape(s).getBounds2D(), false);
+		} else {
+			dirtyRect(s.getBounds2D(), true);
+		}
 		g2d.draw(s);
 	}
 
 	@Override
 	public boolean drawImage(Image img, AffineTransform xform, ImageObserver obs) {
+		markAllDirty();
 		return g2d.drawImage(img, xform, obs);
 	}
 
 	@Override
 	public void drawImage(BufferedImage img, BufferedImageOp op, int x, int y) {
+		markAllDirty();
 		g2d.drawImage(img, op, x, y);
 	}
 
 	@Override
 	public void drawRenderedImage(RenderedImage img, AffineTransform xform) {
+		markAllDirty();
 		g2d.drawRenderedImage(img, xform);
 	}
 
 	@Override
 	public void drawRenderableImage(RenderableImage img, AffineTransform xform) {
+		markAllDirty();
 		g2d.drawRenderableImage(img, xform);
 	}
 
 	@Override
 	public void drawString(String str, int x, int y) {
+		dirtyString(str, x, y);
 		g2d.drawString(str, x, y);
 	}
 
 	@Override
 	public void drawString(String str, float x, float y) {
+		dirtyString(str, x, y);
 		g2d.drawString(str, x, y);
 	}
 
 	@Override
 	public void drawString(AttributedCharacterIterator iterator, int x, int y) {
+		markAllDirty();
 		g2d.drawString(iterator, x, y);
 	}
 
 	@Override
 	public void drawString(AttributedCharacterIterator iterator, float x, float y) {
+		markAllDirty();
 		g2d.drawString(iterator, x, y);
 	}
 
 	@Override
 	public void drawGlyphVector(GlyphVector g, float x, float y) {
+		Rectangle2D r = g.getVisualBounds();
+		dirtyRect(r.getX() + x, r.getY() + y, r.getWidth(), r.getHeight(), false);
 		g2d.drawGlyphVector(g, x, y);
 	}
 
 	@Override
 	public void fill(Shape s) {
+		dirtyRect(s.getBounds2D(), false);
 		g2d.fill(s);
 	}
 
@@ -367,6 +597,8 @@ public class LCDGraphics extends Graphics2D {
 
 	@Override
 	public Graphics create() {
+		//The created context is not tracked
+		markAllDirty();
 		return g2d.create();
 	}
 
@@ -432,98 +664,117 @@ public class LCDGraphics extends Graphics2D {
 
 	@Override
 	public void copyArea(int x, int y, int width, int height, int dx, int dy) {
+		dirtyRect(x + dx, y + dy, width, height, false);
 		g2d.copyArea(x, y, width, height, dx, dy);
 	}
 
 	@Override
 	public void drawLine(int x1, int y1, int x2, int y2) {
+		dirtyRect(x1, y1, x2 - x1, y2 - y1, true);
 		g2d.drawLine(x1, y1, x2, y2);
 	}
 
 	@Override
 	public void fillRect(int x, int y, int width, int height) {
+		dirtyRect(x, y, width, height, false);
 		g2d.fillRect(x, y, width, height);
 	}
 
 	@Override
 	public void clearRect(int x, int y, int width, int height) {
+		dirtyRect(x, y, width, height, false);
 		g2d.clearRect(x, y, width, height);
 	}
 
 	@Override
 	public void drawRoundRect(int x, int y, int width, int height, int arcWidth, int arcHeight) {
+		dirtyRect(x, y, width, height, true);
 		g2d.drawRoundRect(x, y, width, height, arcWidth, arcHeight);
 	}
 
 	@Override
 	public void fillRoundRect(int x, int y, int width, int height, int arcWidth, int arcHeight) {
+		dirtyRect(x, y, width, height, false);
 		g2d.fillRoundRect(x, y, width, height, arcWidth, arcHeight);
 	}
 
 	@Override
 	public void drawOval(int x, int y, int width, int height) {
+		dirtyRect(x, y, width, height, true);
 		g2d.drawOval(x, y, width, height);
 	}
 
 	@Override
 	public void fillOval(int x, int y, int width, int height) {
+		dirtyRect(x, y, width, height, false);
 		g2d.fillOval(x, y, width, height);
 	}
 
 	@Override
 	public void drawArc(int x, int y, int width, int height, int startAngle, int arcAngle) {
+		dirtyRect(x, y, width, height, true);
 		g2d.drawArc(x, y, width, height, startAngle, arcAngle);
 	}
 
 	@Override
 	public void fillArc(int x, int y, int width, int height, int startAngle, int arcAngle) {
+		dirtyRect(x, y, width, height, false);
 		g2d.fillArc(x, y, width, height, startAngle, arcAngle);
 	}
 
 	@Override
 	public void drawPolyline(int[] xPoints, int[] yPoints, int nPoints) {
+		dirtyPoints(xPoints, yPoints, nPoints, true);
 		g2d.drawPolyline(xPoints, yPoints, nPoints);
 	}
 
 	@Override
 	public void drawPolygon(int[] xPoints, int[] yPoints, int nPoints) {
+		dirtyPoints(xPoints, yPoints, nPoints, true);
 		g2d.drawPolygon(xPoints, yPoints, nPoints);
 	}
 
 	@Override
 	public void fillPolygon(int[] xPoints, int[] yPoints, int nPoints) {
+		dirtyPoints(xPoints, yPoints, nPoints, false);
 		g2d.fillPolygon(xPoints, yPoints, nPoints);
 	}
 
 	@Override
 	public boolean drawImage(Image img, int x, int y, ImageObserver observer) {
+		dirtyImage(img, x, y, observer);
 		return g2d.drawImage(img, x, y, observer);
 	}
 
 	@Override
 	public boolean drawImage(Image img, int x, int y, int width, int height, ImageObserver observer) {
+		dirtyRect(x, y, width, height, false);
 		return g2d.drawImage(img, x, y, width, height, observer);
 	}
 
 	@Override
 	public boolean drawImage(Image img, int x, int y, Color bgcolor, ImageObserver observer) {
+		dirtyImage(img, x, y, observer);
 		return g2d.drawImage(img, x, y, bgcolor, observer);
 	}
 
 	@Override
 	public boolean drawImage(Image img, int x, int y, int width, int height, Color bgcolor, ImageObserver observer) {
+		dirtyRect(x, y, width, height, false);
 		return g2d.drawImage(img, x, y, width, height, observer);
 	}
 
 	@Override
 	public boolean drawImage(Image img, int dx1, int dy1, int dx2, int dy2, int sx1, int sy1, int sx2, int sy2,
 			ImageObserver observer) {
+		dirtyRect(dx1, dy1, dx2 - dx1, dy2 - dy1, false);
 		return g2d.drawImage(img, dx1, dy1, dx2, dy2, sx1, sy1, sx2, sy2, observer);
 	}
 
 	@Override
 	public boolean drawImage(Image img, int dx1, int dy1, int dx2, int dy2, int sx1, int sy1, int sx2, int sy2,
 			Color bgcolor, ImageObserver observer) {
+		dirtyRect(dx1, dy1, dx2 - dx1, dy2 - dy1, false);
 		return g2d.drawImage(img, dx1, dy1, dx2, dy2, sx1, sy1, sx2, sy2, observer);
 	}
 
@@ -0,0 +1,186 @@
+/*******************************************************************************
+ * Any modification, copies of sections of this file must be attached with this
+ * license and shown clearly in the developer's project. The code can be used
+ * as long as you state clearly you do not own it. Any violation might result in
+ *  a take-down.
+ *
+ * MIT License
+ *
+ * Copyright (c) 2016, 2017 Anthony Law
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *******************************************************************************/
+package org.ev3dev.hardware.lcd;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+import org.ev3dev.exception.EV3LibraryException;
+
+/**
+ * An LCD drawing into the memory-mapped framebuffer. <code>LCDGraphics</code> converts its rows straight into
+ *  the mapped buffer on flush, so a frame costs neither a copy through a stream nor a write system call.<br>
+ * <br>
+ * With double buffering, the rows are converted into a back buffer first, and copied to the framebuffer in one
+ *  pass on <code>swap()</code>, so a half-converted frame is never shown. Any regular file of at least 3072 bytes
+ *  can stand in for the framebuffer, e.g. for testing.
+ * @author Anthony
+ *
+ */
+public class MappedLCD extends LCD {
+	
+	private final String path;
+	
+	private final boolean doubleBuffered;
+	
+	private MappedByteBuffer front;
+	
+	private ByteBuffer back;
+	
+	/**
+	 * Maps the default ev3dev framebuffer, without double buffering
+	 * @throws EV3LibraryException If I/O goes wrong
+	 */
+	public MappedLCD() throws EV3LibraryException{
+		this(FB_PATH, false);
+	}
+	
+	/**
+	 * Maps the default ev3dev framebuffer
+	 * @param doubleBuffered Whether the rows are converted into a back buffer before being copied to the framebuffer
+	 * @throws EV3LibraryException If I/O goes wrong
+	 */
+	public MappedLCD(boolean doubleBuffered) throws EV3LibraryException{
+		this(FB_PATH, doubleBuffered);
+	}
+	
+	/**
+	 * Maps the framebuffer (or regular file) specified
+	 * @param path The path of the framebuffer
+	 * @param doubleBuffered Whether the rows are converted into a back buffer before being copied to the framebuffer
+	 * @throws EV3LibraryException If I/O goes wrong
+	 */
+	public MappedLCD(String path, boolean doubleBuffered) throws EV3LibraryException{
+		this.path = path;
+		this.doubleBuffered = doubleBuffered;
+		File file = new File(path);
+		if (!file.exists()){
+			throw new EV3LibraryException("The framebuffer device does not exist! Are you using a EV3?");
+		}
+		FileChannel channel = null;
+		try {
+			channel = FileChannel.open(file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE);
+			//The mapping stays valid after the channel is closed
+			front = channel.map(FileChannel.MapMode.READ_WRITE, 0, LCDGraphics.BUF_SIZE);
+		} catch (IOException e){
+			throw new EV3LibraryException("Unable to map the framebuffer \"" + path + "\"", e);
+		} finally {
+			if (channel != null){
+				try {
+					channel.close();
+				} catch (IOException ignore){}
+			}
+		}
+		back = doubleBuffered ? ByteBuffer.allocateDirect(LCDGraphics.BUF_SIZE) : front;
+	}
+	
+	/**
+	 * Returns the path of the mapped framebuffer
+	 * @return The path
+	 */
+	public String getPath(){
+		return path;
+	}
+	
+	/**
+	 * Returns whether the rows are converted into a back buffer before being copied to the framebuffer
+	 * @return Whether it is double buffered
+	 */
+	public boolean isDoubleBuffered(){
+		return doubleBuffered;
+	}
+	
+	/**
+	 * Returns the buffer that frames are drawn into: the back buffer if double buffered, or the mapped
+	 *  framebuffer itself. Call <code>swap()</code> after drawing rows into it.
+	 * @return The buffer, <code>LCDGraphics.BUF_SIZE</code> long
+	 * @throws EV3LibraryException If this LCD is closed
+	 */
+	public synchronized ByteBuffer getBackBuffer() throws EV3LibraryException{
+		if (back == null){
+			throw new EV3LibraryException("The mapped framebuffer \"" + path + "\" is closed");
+		}
+		return back;
+	}
+	
+	/**
+	 * Shows the rows drawn into the back buffer, by copying them to the framebuffer. Does nothing
+	 *  if it is not double buffered, as the rows are drawn into the framebuffer already.
+	 * @param fromRow The first row to be shown
+	 * @param toRow The row after the last row to be shown
+	 * @throws EV3LibraryException If this LCD is closed
+	 */
+	public synchronized void swap(int fromRow, int toRow) throws EV3LibraryException{
+		checkRows(LCDGraphics.BUF_SIZE, fromRow, toRow);
+		ByteBuffer b = getBackBuffer();
+		if (b == front){
+			return;
+		}
+		ByteBuffer src = b.duplicate();
+		src.limit(toRow * LINE_LEN).position(fromRow * LINE_LEN);
+		ByteBuffer dst = front.duplicate();
+		dst.position(fromRow * LINE_LEN);
+		dst.put(src);
+	}
+	
+	/**
+	 * This function overrides the original draw() function to copy the rows into the mapped buffer
+	 */
+	@Override
+	public synchronized void draw(byte[] data, int fromRow, int toRow) throws EV3LibraryException{
+		checkRows(data.length, fromRow, toRow);
+		ByteBuffer dst = getBackBuffer().duplicate();
+		dst.position(fromRow * LINE_LEN);
+		dst.put(data, fromRow * LINE_LEN, (toRow - fromRow) * LINE_LEN);
+		swap(fromRow, toRow);
+	}
+	
+	/**
+	 * Writes the mapped framebuffer through to the file. This is only needed when a regular file stands in for
+	 *  the framebuffer.
+	 * @throws EV3LibraryException If this LCD is closed
+	 */
+	public synchronized void force() throws EV3LibraryException{
+		getBackBuffer();
+		front.force();
+	}
+	
+	/**
+	 * Releases the mapped buffers. Drawing afterwards throws an <code>EV3LibraryException</code>.
+	 */
+	@Override
+	public synchronized void close(){
+		front = null;
+		back = null;
+	}
+}
@@ -74,5 +74,13 @@ public class FakeVirtualLCD extends VirtualLCD {
 	public void draw(byte[] data){
 		return;
 	}
+	
+	/**
+	 * Calling this method will have no effect.
+	 */
+	@Override
+	public void draw(byte[] data, int fromRow, int toRow){
+		return;
+	}
 
 }
@@ -82,6 +82,14 @@ public class VirtualLCD extends LCD{
 	 */
 	@Override
 	public void draw(byte[] data){
+		draw(data, 0, SCREEN_HEIGHT);
+	}
+	
+	/**
+	 * This function overrides the original draw() function to draw the rows specified directly into a BufferedImage
+	 */
+	@Override
+	public void draw(byte[] data, int fromRow, int toRow){
 		if (data == null){
 			System.out.println("Null data");
 			return;
@@ -89,7 +97,7 @@ public class VirtualLCD extends LCD{
 		Graphics g = image.getGraphics();
 		
 		int bitPos;
-		for (int i = 0; i < 128; i++){
+		for (int i = fromRow; i < toRow; i++){
 			bitPos = 0;
 			for (int j = 0; j < 178; j++){
 				if (bitPos > 7){
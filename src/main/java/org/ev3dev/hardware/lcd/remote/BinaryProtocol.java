@@ -0,0 +1,281 @@
+/*******************************************************************************
+ * Any modification, copies of sections of this file must be attached with this
+ * license and shown clearly in the developer's project. The code can be used
+ * as long as you state clearly you do not own it. Any violation might result in
+ *  a take-down.
+ *
+ * MIT License
+ *
+ * Copyright (c) 2016, 2017 Anthony Law
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *******************************************************************************/
+package org.ev3dev.hardware.lcd.remote;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.geom.AffineTransform;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+
+/**
+ * The binary framed protocol of the remote LCD graphics. The client sends <code>HELLO</code> as a text line after
+ *  connecting, and switches to frames if the server replies <code>HELLO_OK</code>. Otherwise, it keeps using
+ *  the text protocol.<br>
+ * <br>
+ * A frame is a 4-byte big-endian length, followed by that many bytes: a 1-byte opcode, a 4-byte request id and
+ *  the payload, written with <code>DataOutput</code>. Every request is answered by an <code>OP_REPLY</code>
+ *  frame of the same id, whose payload starts with a status byte. The common <code>Graphics2D</code> primitives have
+ *  their own opcodes; any other method is sent as <code>OP_INVOKE</code> with its Java-serialized arguments.
+ * @author Anthony
+ *
+ */
+public final class BinaryProtocol {
+    
+    /**
+     * The protocol version
+     */
+    public static final int VERSION = 1;
+    
+    /**
+     * The text line requesting the binary protocol
+     */
+    public static final String HELLO = "BINARY " + VERSION;
+    
+    /**
+     * The text line accepting the binary protocol
+     */
+    public static final String HELLO_OK = "BINARY OK " + VERSION;
+    
+    /**
+     * How long the client waits for <code>HELLO_OK</code> before falling back to the text protocol, in milliseconds
+     */
+    public static final int NEGOTIATION_TIMEOUT = 1000;
+    
+    /**
+     * The maximum length of a frame
+     */
+    public static final int MAX_FRAME_LENGTH = 1 << 20;
+    
+    /**
+     * A reply: status byte, then the result if the status is <code>STATUS_OK</code>, or the error message
+     */
+    public static final int OP_REPLY = 0;
+    
+    /**
+     * Any method: class name, method name, argument count, then the type name and serialized value of each argument.
+     *  Replied with the length and serialized value of the returned object.
+     */
+    public static final int OP_INVOKE = 1;
+    
+    /**
+     * Converts the image to the framebuffer layout. Replied with <code>LCDGraphics.BUF_SIZE</code> bytes.
+     */
+    public static final int OP_GET_PROCESSED = 2;
+    
+    /**
+     * Returns the image. Replied with the width, the height and the bytes of its packed raster.
+     */
+    public static final int OP_GET_IMAGE = 3;
+    
+    /**
+     * Several requests executed in order, with a single reply: the number of requests, then the 4-byte length,
+     *  the 1-byte opcode and the payload of each. The results of the requests are discarded, and the reply
+     *  has the error of the first failed request.
+     */
+    public static final int OP_BATCH = 4;
+    
+    /**
+     * <code>drawLine</code>: x1, y1, x2, y2 as ints
+     */
+    public static final int OP_DRAW_LINE = 16;
+    
+    /**
+     * <code>fillRect</code>: x, y, width, height as ints
+     */
+    public static final int OP_FILL_RECT = 17;
+    
+    /**
+     * <code>clearRect</code>: x, y, width, height as ints
+     */
+    public static final int OP_CLEAR_RECT = 18;
+    
+    /**
+     * <code>drawString</code>: the string as UTF, x, y as floats
+     */
+    public static final int OP_DRAW_STRING = 19;
+    
+    /**
+     * <code>setColor</code>: the ARGB value as an int
+     */
+    public static final int OP_SET_COLOR = 20;
+    
+    /**
+     * <code>setFont</code>: the name as UTF, the style as an int, the size as a float. Only for a font that is not
+     *  transformed and has no layout attributes
+     */
+    public static final int OP_SET_FONT = 21;
+    
+    /**
+     * <code>transform</code>: the 6 values of the matrix as doubles
+     */
+    public static final int OP_TRANSFORM = 22;
+    
+    /**
+     * <code>setTransform</code>: the 6 values of the matrix as doubles
+     */
+    public static final int OP_SET_TRANSFORM = 23;
+    
+    /**
+     * <code>translate</code>: tx, ty as doubles
+     */
+    public static final int OP_TRANSLATE = 24;
+    
+    /**
+     * The request succeeded
+     */
+    public static final int STATUS_OK = 0;
+    
+    /**
+     * The request failed, followed by the error message as UTF
+     */
+    public static final int STATUS_ERROR = 1;
+    
+    private BinaryProtocol(){}
+    
+    /**
+     * Writes a frame. The stream is not flushed.
+     * @param out The stream
+     * @param op The opcode
+     * @param id The request id
+     * @param payload The payload
+     * @throws IOException If I/O goes wrong
+     */
+    public static void writeFrame(DataOutputStream out, int op, int id, ByteArrayOutputStream payload) throws IOException{
+        out.writeInt(5 + payload.size());
+        out.writeByte(op);
+        out.writeInt(id);
+        payload.writeTo(out);
+    }
+    
+    /**
+     * Reads a frame, without its length
+     * @param in The stream
+     * @return The frame: opcode, request id and payload, or <code>null</code> if the stream has ended between frames
+     * @throws IOException If I/O goes wrong, or the frame is malformed
+     */
+    public static byte[] readFrame(DataInputStream in) throws IOException{
+        int length;
+        try {
+            length = in.readInt();
+        } catch (EOFException e){
+            return null;
+        }
+        if (length < 5 || length > MAX_FRAME_LENGTH){
+            throw new IOException("Invalid frame length: " + length);
+        }
+        byte[] frame = new byte[length];
+        in.readFully(frame);
+        return frame;
+    }
+    
+    /**
+     * Encodes a call of a <code>Graphics2D</code> primitive with its own opcode
+     * @param methodName The method name
+     * @param args The arguments
+     * @param out The payload
+     * @return The opcode, or -1 if the call has no opcode of its own, and nothing is written
+     * @throws IOException If I/O goes wrong
+     */
+    public static int encode(String methodName, Object[] args, DataOutput out) throws IOException{
+        for (Object arg : args){
+            if (arg == null){
+                return -1;
+            }
+        }
+        if (args.length == 4 && allIntegers(args)){
+            int op;
+            if (methodName.equals("drawLine")){
+                op = OP_DRAW_LINE;
+            } else if (methodName.equals("fillRect")){
+                op = OP_FILL_RECT;
+            } else if (methodName.equals("clearRect")){
+                op = OP_CLEAR_RECT;
+            } else {
+                return -1;
+            }
+            for (Object arg : args){
+                out.writeInt((Integer) arg);
+            }
+            return op;
+        } else if (methodName.equals("drawString") && args.length == 3 && args[0] instanceof String &&
+                isCoordinate(args[1]) && isCoordinate(args[2])){
+            out.writeUTF((String) args[0]);
+            out.writeFloat(((Number) args[1]).floatValue());
+            out.writeFloat(((Number) args[2]).floatValue());
+            return OP_DRAW_STRING;
+        } else if (methodName.equals("setColor") && args.length == 1 && args[0] instanceof Color){
+            out.writeInt(((Color) args[0]).getRGB());
+            return OP_SET_COLOR;
+        } else if (methodName.equals("setFont") && args.length == 1 && args[0] instanceof Font &&
+                isPlain((Font) args[0])){
+            Font font = (Font) args[0];
+            out.writeUTF(font.getName());
+            out.writeInt(font.getStyle());
+            out.writeFloat(font.getSize2D());
+            return OP_SET_FONT;
+        } else if ((methodName.equals("transform") || methodName.equals("setTransform")) &&
+                args.length == 1 && args[0] instanceof AffineTransform){
+            double[] matrix = new double[6];
+            ((AffineTransform) args[0]).getMatrix(matrix);
+            for (double d : matrix){
+                out.writeDouble(d);
+            }
+            return methodName.equals("transform") ? OP_TRANSFORM : OP_SET_TRANSFORM;
+        } else if (methodName.equals("translate") && args.length == 2 &&
+                args[0] instanceof Number && args[1] instanceof Number){
+            out.writeDouble(((Number) args[0]).doubleValue());
+            out.writeDouble(((Number) args[1]).doubleValue());
+            return OP_TRANSLATE;
+        }
+        return -1;
+    }
+    
+    //A transformed font, or one with layout attributes (e.g. tracking, kerning), is not just a name, style and size
+    private static boolean isPlain(Font font){
+        return !font.isTransformed() && !font.hasLayoutAttributes();
+    }
+    
+    private static boolean allIntegers(Object[] args){
+        for (Object arg : args){
+            if (!(arg instanceof Integer)){
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    private static boolean isCoordinate(Object arg){
+        return arg instanceof Integer || arg instanceof Float;
+    }
+}
@@ -0,0 +1,569 @@
+/*******************************************************************************
+ * Any modification, copies of sections of this file must be attached with this
+ * license and shown clearly in the developer's project. The code can be used
+ * as long as you state clearly you do not own it. Any violation might result in
+ *  a take-down.
+ *
+ * MIT License
+ *
+ * Copyright (c) 2016, 2017 Anthony Law
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *******************************************************************************/
+package org.ev3dev.hardware.lcd.remote;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.IndexColorModel;
+import java.awt.image.Raster;
+import java.awt.image.WritableRaster;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInput;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.imageio.ImageIO;
+
+import org.apache.commons.codec.binary.Base64;
+import org.ev3dev.hardware.lcd.LCD;
+import org.ev3dev.hardware.lcd.LCDGraphics;
+
+/**
+ * Executes the binary protocol requests of a connection onto its own image
+ * @author Anthony
+ *
+ */
+public class GraphicsCommandProcessor {
+    
+    private static final ConcurrentHashMap<InvokerKey, MethodHandle> INVOKERS = new ConcurrentHashMap<InvokerKey, MethodHandle>();
+    
+    private final byte[] bwdata = new byte[LCDGraphics.BUF_SIZE];
+    
+    private final byte[] processed = new byte[LCDGraphics.BUF_SIZE];
+    
+    private final BufferedImage image;
+    
+    private Graphics2D g2d;
+    
+    /**
+     * Creates a processor with a blank image
+     */
+    public GraphicsCommandProcessor(){
+        byte[] bwarr = {(byte) 0xff, (byte) 0x00};
+        IndexColorModel bwcm = new IndexColorModel(1, bwarr.length, bwarr, bwarr, bwarr);
+        
+        DataBuffer db = new DataBufferByte(bwdata, bwdata.length);
+        WritableRaster wr = Raster.createPackedRaster(db, LCD.SCREEN_WIDTH, LCD.SCREEN_HEIGHT, 1, null);
+        
+        image = new BufferedImage(bwcm, wr, false, null);
+        reset();
+    }
+    
+    /**
+     * Clears the image, and resets the graphics state (color, font, transform, clip), so the processor can be
+     *  reused by another connection without allocating a new image
+     */
+    public void reset(){
+        if (g2d != null){
+            g2d.dispose();
+        }
+        g2d = (Graphics2D) image.getGraphics();
+        
+        g2d.setPaint(Color.WHITE);
+        g2d.setBackground(Color.WHITE);
+        g2d.fillRect(0, 0, image.getWidth(), image.getHeight());
+    }
+    
+    /**
+     * Returns the image drawn
+     * @return BufferedImage
+     */
+    public BufferedImage getImage(){
+        return image;
+    }
+    
+    /**
+     * Returns the graphics drawing onto the image
+     * @return Graphics2D
+     */
+    public Graphics2D getGraphics(){
+        return g2d;
+    }
+    
+    /**
+     * Executes a request frame, and writes the payload of its reply: <code>STATUS_OK</code> and the result, or
+     *  <code>STATUS_ERROR</code> and the error message
+     * @param frame The buffer holding the frame, without its length
+     * @param offset The offset of the frame
+     * @param length The length of the frame
+     * @param replyBytes The reply payload. It is reset first
+     * @return The request id
+     * @throws IOException If the frame is too short
+     */
+    public int executeFrame(byte[] frame, int offset, int length, ByteArrayOutputStream replyBytes) throws IOException{
+        DataInputStream request = new DataInputStream(new ByteArrayInputStream(frame, offset, length));
+        int op = request.readUnsignedByte();
+        int id = request.readInt();
+        
+        DataOutputStream reply = new DataOutputStream(replyBytes);
+        replyBytes.reset();
+        reply.writeByte(BinaryProtocol.STATUS_OK);
+        try {
+            execute(op, request, reply);
+        } catch (Exception e){
+            System.out.println("WARNING: Unable to execute opcode " + op + " at ID \"" + id + "\": " + e);
+            replyBytes.reset();
+            reply.writeByte(BinaryProtocol.STATUS_ERROR);
+            reply.writeUTF(String.valueOf(e));
+        }
+        return id;
+    }
+    
+    /**
+     * Executes a request
+     * @param op The opcode, e.g. <code>BinaryProtocol.OP_DRAW_LINE</code>
+     * @param in The payload of the request
+     * @param reply The result, written after the status byte of the reply
+     * @throws IOException If the payload is malformed
+     * @throws IllegalArgumentException If the opcode is unknown
+     * @throws ReflectiveOperationException If an invoked method cannot be found or called
+     */
+    public void execute(int op, DataInput in, DataOutput reply) throws IOException, ReflectiveOperationException{
+        switch (op){
+        case BinaryProtocol.OP_DRAW_LINE:
+            g2d.drawLine(in.readInt(), in.readInt(), in.readInt(), in.readInt());
+            break;
+        case BinaryProtocol.OP_FILL_RECT:
+            g2d.fillRect(in.readInt(), in.readInt(), in.readInt(), in.readInt());
+            break;
+        case BinaryProtocol.OP_CLEAR_RECT:
+            g2d.clearRect(in.readInt(), in.readInt(), in.readInt(), in.readInt());
+            break;
+        case BinaryProtocol.OP_DRAW_STRING:
+            g2d.drawString(in.readUTF(), in.readFloat(), in.readFloat());
+            break;
+        case BinaryProtocol.OP_SET_COLOR:
+            g2d.setColor(new Color(in.readInt(), true));
+            break;
+        case BinaryProtocol.OP_SET_FONT:
+            String name = in.readUTF();
+            int style = in.readInt();
+            g2d.setFont(new Font(name, style, 1).deriveFont(in.readFloat()));
+            break;
+        case BinaryProtocol.OP_TRANSFORM:
+            g2d.transform(readTransform(in));
+            break;
+        case BinaryProtocol.OP_SET_TRANSFORM:
+            g2d.setTransform(readTransform(in));
+            break;
+        case BinaryProtocol.OP_TRANSLATE:
+            g2d.translate(in.readDouble(), in.readDouble());
+            break;
+        case BinaryProtocol.OP_GET_PROCESSED:
+            LCDGraphics.toFramebuffer(image, processed);
+            reply.write(processed);
+            break;
+        case BinaryProtocol.OP_GET_IMAGE:
+            reply.writeInt(image.getWidth());
+            reply.writeInt(image.getHeight());
+            reply.writeInt(bwdata.length);
+            reply.write(bwdata);
+            break;
+        case BinaryProtocol.OP_INVOKE:
+            executeInvoke(in, reply);
+            break;
+        case BinaryProtocol.OP_BATCH:
+            executeBatch(in);
+            break;
+        default:
+            throw new IllegalArgumentException("Unknown opcode: " + op);
+        }
+    }
+    
+    /**
+     * Executes a command line of the text protocol: <code>INVOKE</code>, <code>GETIMAGE</code>,
+     *  <code>GETPROCESSED</code> or <code>PROCESS</code>
+     * @param line The command line
+     * @param peer The address of the connection, for logging
+     * @return The reply line, or <code>null</code> if there is no reply
+     * @throws IOException If the arguments or the image cannot be decoded
+     */
+    public String executeLine(String line, String peer) throws IOException{
+        if (line.startsWith("INVOKE")){
+            System.out.println("Connection of " + peer + " recevied invoke command");
+            
+            String[] splitData = line.split(" ");
+            if (splitData.length < 6){
+                System.out.println("Missing parameters " + splitData.length + " / 6");
+                return null;
+            }
+            String id = splitData[1];
+            String g2dClassStr = splitData[2];
+            String methodName = splitData[3];
+            String[] paraTypesStr = splitData[4].split(",");
+            String[] argsStr = splitData[5].split(",");
+            
+            System.out.println("Connection of " + peer + " at ID \"" + id + "\" is invoking G2D method \"" + methodName + "\" with " + argsStr.length + " arguments");
+            
+            String[] paraTypes = splitData[4].equals("none") ? new String[0] : paraTypesStr;
+            
+            Object args[] = null;
+            if (splitData[5].equals("none")){
+                args = new Object[0];
+            } else {
+                args = new Object[argsStr.length];
+                for (int i = 0; i < args.length; i++){
+                    ObjectInput objIn = new ObjectInputStream(new ByteArrayInputStream(Base64.decodeBase64(argsStr[i])));
+                    try {
+                        args[i] = objIn.readObject();
+                    } catch (ClassNotFoundException e) {
+                        System.out.println("WARNING: Class not found: " + e);
+                    } finally {
+                        objIn.close();
+                    }
+                }
+            }
+            
+            Object objReturn = null;
+            try {
+                objReturn = invoke(g2dClassStr, methodName, paraTypes, args);
+            } catch (ClassNotFoundException e) {
+                System.out.println("WARNING: Class not found: " + e);
+                return null;
+            } catch (ReflectiveOperationException e) {
+                System.out.println("WARNING: Unable to invoke method: " + e);
+                e.printStackTrace();
+                return null;
+            } catch (RuntimeException e) {
+                System.out.println("WARNING: Unable to invoke method: " + e);
+                e.printStackTrace();
+            }
+            
+            System.out.println("Connection of " + peer + " at ID \"" + id + "\" successfully invoked G2D method \"" + methodName + "\" with " + argsStr.length + " arguments");
+            return "DONE " + id + " " + Base64.encodeBase64String(serialize(objReturn));
+        } else if (line.startsWith("GETIMAGE")){
+            System.out.println("Connection of " + peer + " recevied GETIMAGE command");
+            
+            String[] splitData = line.split(" ");
+            if (splitData.length < 2){
+                System.out.println("Missing parameters " + splitData.length + " / 2");
+                return null;
+            }
+            return "DONE " + splitData[1] + " " + Base64.encodeBase64String(serialize(image));
+        } else if (line.startsWith("GETPROCESSED")){
+            System.out.println("Connection of " + peer + " recevied GETPROCESSED command");
+            
+            String[] splitData = line.split(" ");
+            if (splitData.length < 2){
+                System.out.println("Missing parameters " + splitData.length + " / 2");
+                return null;
+            }
+            LCDGraphics.toFramebuffer(image, processed);
+            return "DONE " + splitData[1] + " " + Base64.encodeBase64String(processed);
+        } else if (line.startsWith("PROCESS")){
+            System.out.println("Connection of " + peer + " recevied process command");
+            
+            String[] splitData = line.split(" ");
+            if (splitData.length < 3){
+                System.out.println("Error processing... missing parameters: " + splitData.length);
+                return null;
+            }
+            String id = splitData[1];
+            
+            BufferedImage inImage = ImageIO.read(new ByteArrayInputStream(Base64.decodeBase64(splitData[2])));
+            if (inImage == null){
+                System.out.println("Error processing... the image cannot be decoded for ID: " + id);
+                return null;
+            }
+            byte[] buf = LCDGraphics.toFramebuffer(inImage, new byte[LCDGraphics.BUF_SIZE]);
+            
+            System.out.println("Processing Done for ID: " + id);
+            return "DONE " + id + " " + Base64.encodeBase64String(buf);
+        }
+        return null;
+    }
+    
+    private static byte[] serialize(Object obj) throws IOException{
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ObjectOutputStream objOut = new ObjectOutputStream(out);
+        objOut.writeObject(obj);
+        objOut.close();
+        return out.toByteArray();
+    }
+    
+    private void executeBatch(DataInput in) throws IOException{
+        int count = in.readInt();
+        DataOutputStream discard = new DataOutputStream(new ByteArrayOutputStream());
+        String firstError = null;
+        for (int i = 0; i < count; i++){
+            //An invalid length leaves the rest of the batch unreadable, so it fails the whole batch
+            byte[] entry = new byte[readLength(in)];
+            in.readFully(entry);
+            DataInputStream request = new DataInputStream(new ByteArrayInputStream(entry));
+            int op = request.readUnsignedByte();
+            try {
+                if (op == BinaryProtocol.OP_BATCH){
+                    throw new IllegalArgumentException("Nested batch");
+                }
+                execute(op, request, discard);
+            } catch (Exception e){
+                if (firstError == null){
+                    firstError = "Batch entry " + i + " (opcode " + op + ") failed: " + e;
+                }
+            }
+        }
+        if (firstError != null){
+            throw new IOException(firstError);
+        }
+    }
+    
+    /**
+     * Reads a length prefix. It is checked against the bytes left in the frame before anything is allocated.
+     */
+    private static int readLength(DataInput in) throws IOException{
+        int length = in.readInt();
+        int left = in instanceof InputStream ? ((InputStream) in).available() : BinaryProtocol.MAX_FRAME_LENGTH;
+        if (length < 0 || length > left){
+            throw new IOException("Invalid length: " + length + ", " + left + " bytes left in the frame");
+        }
+        return length;
+    }
+    
+    private static AffineTransform readTransform(DataInput in) throws IOException{
+        double[] matrix = new double[6];
+        for (int i = 0; i < matrix.length; i++){
+            matrix[i] = in.readDouble();
+        }
+        return new AffineTransform(matrix);
+    }
+    
+    private void executeInvoke(DataInput in, DataOutput reply) throws IOException, ReflectiveOperationException{
+        String className = in.readUTF();
+        String methodName = in.readUTF();
+        int argc = in.readUnsignedShort();
+        String[] types = new String[argc];
+        Object[] args = new Object[argc];
+        for (int i = 0; i < argc; i++){
+            types[i] = in.readUTF();
+            byte[] value = new byte[readLength(in)];
+            in.readFully(value);
+            ObjectInputStream objIn = new ObjectInputStream(new ByteArrayInputStream(value));
+            args[i] = objIn.readObject();
+            objIn.close();
+        }
+        
+        Object result = invoke(className, methodName, types, args);
+        
+        if (result == null){
+            reply.writeInt(0);
+        } else {
+            byte[] bytes = serialize(result);
+            reply.writeInt(bytes.length);
+            reply.write(bytes);
+        }
+    }
+    
+    /**
+     * Invokes a method of the graphics
+     * @param className The class declaring the method
+     * @param methodName The method name
+     * @param types The parameter types
+     * @param args The arguments
+     * @return The returned object
+     * @throws ReflectiveOperationException If the method cannot be found or called
+     */
+    public Object invoke(String className, String methodName, Class<?>[] types, Object[] args) throws ReflectiveOperationException{
+        String[] typeNames = new String[types.length];
+        for (int i = 0; i < types.length; i++){
+            typeNames[i] = types[i].getName();
+        }
+        return invoke(className, methodName, typeNames, args);
+    }
+    
+    /**
+     * Invokes a method of the graphics. The method is resolved once per name and parameter types (and declaring class,
+     *  if it is not a <code>Graphics2D</code> method), and its <code>MethodHandle</code> is cached for all the
+     *  processors, so a repeated call is a lookup and an <code>invokeExact</code>. Only instance methods of the
+     *  graphics can be invoked.
+     * @param className The class declaring the method
+     * @param methodName The method name
+     * @param typeNames The parameter type names
+     * @param args The arguments
+     * @return The returned object
+     * @throws ReflectiveOperationException If the method cannot be found or called
+     */
+    public Object invoke(String className, String methodName, String[] typeNames, Object[] args) throws ReflectiveOperationException{
+        //The class name sent by the client is not part of the key of a Graphics2D method, so it cannot grow the cache
+        MethodHandle invoker = INVOKERS.get(new InvokerKey(Graphics2D.class.getName(), methodName, typeNames));
+        if (invoker == null){
+            invoker = INVOKERS.get(new InvokerKey(className, methodName, typeNames));
+        }
+        if (invoker == null){
+            Method method = resolve(g2d.getClass(), className, methodName, typeNames);
+            Class<?> declaring = method.getDeclaringClass();
+            InvokerKey key = new InvokerKey(declaring.isAssignableFrom(Graphics2D.class) ? Graphics2D.class.getName() :
+                    declaring.getName(), methodName, typeNames);
+            invoker = unreflect(method);
+            INVOKERS.putIfAbsent(key, invoker);
+        }
+        
+        try {
+            return (Object) invoker.invokeExact((Object) g2d, args);
+        } catch (RuntimeException e){
+            throw e;
+        } catch (Error e){
+            throw e;
+        } catch (Throwable e){
+            throw new InvocationTargetException(e);
+        }
+    }
+    
+    /**
+     * Resolves an instance method of the graphics class specified
+     */
+    private static Method resolve(Class<?> graphicsClass, String className, String methodName, String[] typeNames) throws ReflectiveOperationException{
+        Class<?>[] types = new Class<?>[typeNames.length];
+        for (int i = 0; i < types.length; i++){
+            types[i] = Class.forName(typeNames[i]);
+        }
+        
+        Method method;
+        try {
+            //The public API first, as the implementation class may not be accessible
+            method = Graphics2D.class.getMethod(methodName, types);
+        } catch (NoSuchMethodException e){
+            method = findDeclared(graphicsClass, className, methodName, types);
+            if (method == null){
+                //The text protocol sends the classes of the arguments, e.g. java.lang.Integer for an int
+                method = findCompatible(methodName, types);
+            }
+            if (method == null){
+                throw new NoSuchMethodException(className + "." + methodName + Arrays.toString(types));
+            }
+        }
+        
+        if (Modifier.isStatic(method.getModifiers()) || !method.getDeclaringClass().isAssignableFrom(graphicsClass)){
+            throw new NoSuchMethodException("Not an instance method of the graphics: " + method);
+        }
+        return method;
+    }
+    
+    /**
+     * Finds a method declared by the class or a superclass of the graphics with the name specified. The class is
+     *  searched among the superclasses, so that no other class is loaded.
+     */
+    private static Method findDeclared(Class<?> graphicsClass, String className, String methodName, Class<?>[] types){
+        for (Class<?> c = graphicsClass; c != null; c = c.getSuperclass()){
+            if (c.getName().equals(className)){
+                try {
+                    return c.getDeclaredMethod(methodName, types);
+                } catch (NoSuchMethodException e){
+                    return null;
+                }
+            }
+        }
+        return null;
+    }
+    
+    /**
+     * Converts an instance method into a handle of type <code>(Object, Object[])Object</code>
+     */
+    private static MethodHandle unreflect(Method method) throws IllegalAccessException{
+        int count = method.getParameterTypes().length;
+        return MethodHandles.publicLookup().unreflect(method).asType(MethodType.genericMethodType(count + 1))
+                .asSpreader(Object[].class, count);
+    }
+    
+    /**
+     * Finds a public <code>Graphics2D</code> method accepting arguments of the types specified, unboxed if needed
+     */
+    private static Method findCompatible(String methodName, Class<?>[] types){
+        for (Method method : Graphics2D.class.getMethods()){
+            if (!method.getName().equals(methodName)){
+                continue;
+            }
+            Class<?>[] params = method.getParameterTypes();
+            if (params.length != types.length){
+                continue;
+            }
+            boolean compatible = true;
+            for (int i = 0; i < params.length && compatible; i++){
+                compatible = params[i].isPrimitive() ? MethodType.methodType(params[i]).wrap().returnType() == types[i] :
+                        params[i].isAssignableFrom(types[i]);
+            }
+            if (compatible){
+                return method;
+            }
+        }
+        return null;
+    }
+    
+    private static final class InvokerKey {
+        
+        private final String className;
+        
+        private final String methodName;
+        
+        private final String[] typeNames;
+        
+        private final int hash;
+        
+        private InvokerKey(String className, String methodName, String[] typeNames){
+            this.className = className;
+            this.methodName = methodName;
+            this.typeNames = typeNames;
+            this.hash = 31 * (31 * className.hashCode() + methodName.hashCode()) + Arrays.hashCode(typeNames);
+        }
+        
+        @Override
+        public int hashCode(){
+            return hash;
+        }
+        
+        @Override
+        public boolean equals(Object obj){
+            if (!(obj instanceof InvokerKey)){
+                return false;
+            }
+            InvokerKey other = (InvokerKey) obj;
+            return hash == other.hash && className.equals(other.className) && methodName.equals(other.methodName) &&
+                    Arrays.equals(typeNames, other.typeNames);
+        }
+    }
+}
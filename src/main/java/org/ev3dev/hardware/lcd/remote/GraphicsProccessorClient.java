@@ -29,21 +29,40 @@
 package org.ev3dev.hardware.lcd.remote;
 
 import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.awt.image.IndexColorModel;
+import java.awt.image.Raster;
+import java.awt.image.WritableRaster;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.BufferedReader;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
 import java.io.ObjectInput;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutput;
 import java.io.ObjectOutputStream;
+import java.io.OutputStream;
 import java.io.PrintWriter;
 import java.net.Socket;
+import java.net.SocketTimeoutException;
 import java.security.SecureRandom;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import javax.imageio.ImageIO;
 
 import org.apache.commons.codec.binary.Base64;
+import org.ev3dev.hardware.lcd.LCDGraphics;
 
 public class GraphicsProccessorClient extends Thread{
 
@@ -53,8 +72,47 @@ public class GraphicsProccessorClient extends Thread{
     
     private final int port;
     
+    /**
+     * How long a reply of the binary protocol is awaited, in milliseconds
+     */
+    public static final long REPLY_TIMEOUT = 5000;
+    
+    /**
+     * The size of the queued operations that ships a batch without waiting for <code>flushBatch()</code>
+     */
+    public static final int MAX_BATCH_SIZE = 64 * 1024;
+    
     private Socket socket = null;
     
+    private boolean binaryPreferred = true;
+    
+    private boolean binary = false;
+    
+    private boolean batching = false;
+    
+    private DataInputStream binIn = null;
+    
+    private DataOutputStream binOut = null;
+    
+    private Thread replyReader = null;
+    
+    /**
+     * The requests waiting for a reply on the current socket. Each socket has its own map.
+     */
+    private volatile ConcurrentHashMap<Integer, ReplyFuture> pending = new ConcurrentHashMap<Integer, ReplyFuture>();
+    
+    private final ByteArrayOutputStream payloadBytes = new ByteArrayOutputStream();
+    
+    private final DataOutputStream payload = new DataOutputStream(payloadBytes);
+    
+    private final ByteArrayOutputStream batchBytes = new ByteArrayOutputStream();
+    
+    private final DataOutputStream batch = new DataOutputStream(batchBytes);
+    
+    private int batchCount = 0;
+    
+    private int nextId = 0;
+    
     public GraphicsProccessorClient(String hostname){
         this(hostname, DEFAULT_PORT);
     }
@@ -72,14 +130,442 @@ public class GraphicsProccessorClient extends Thread{
         return port;
     }
     
-    public void newSocket() throws IOException{
+    /**
+     * Connects a new socket, and negotiates the binary protocol if it is preferred. The text protocol is used
+     *  if the server does not accept it in <code>BinaryProtocol.NEGOTIATION_TIMEOUT</code>.
+     * @throws IOException If I/O goes wrong
+     */
+    public synchronized void newSocket() throws IOException{
         if (socket != null){
             socket.close();
         }
+        failAll(pending, new IOException("The socket is renewed"));
+        pending = new ConcurrentHashMap<Integer, ReplyFuture>();
         socket = new Socket(hostname, port);
+        //Pipelined requests are small writes, which must not wait for the previous ones to be acknowledged
+        socket.setTcpNoDelay(true);
+        binary = false;
+        binIn = null;
+        binOut = null;
+        batchBytes.reset();
+        batchCount = 0;
+        if (binaryPreferred && negotiateBinary()){
+            binary = true;
+            binIn = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            binOut = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            final Socket s = socket;
+            final DataInputStream in = binIn;
+            final ConcurrentHashMap<Integer, ReplyFuture> p = pending;
+            replyReader = new Thread(new Runnable(){
+                @Override
+                public void run() {
+                    readReplies(s, in, p);
+                }
+            }, "ev3dev-remote-lcd-replies");
+            replyReader.setDaemon(true);
+            replyReader.start();
+        }
+    }
+    
+    private boolean negotiateBinary() throws IOException{
+        OutputStream out = socket.getOutputStream();
+        out.write((BinaryProtocol.HELLO + "\n").getBytes("US-ASCII"));
+        out.flush();
+        
+        int timeout = socket.getSoTimeout();
+        socket.setSoTimeout(BinaryProtocol.NEGOTIATION_TIMEOUT);
+        try {
+            //Read byte by byte, so nothing after the line is consumed
+            InputStream in = socket.getInputStream();
+            StringBuilder sb = new StringBuilder();
+            int c;
+            while ((c = in.read()) != -1 && c != '\n'){
+                if (c != '\r'){
+                    sb.append((char) c);
+                }
+            }
+            if (sb.toString().equals(GraphicsProccessorServer.BUSY)){
+                socket.close();
+                throw new IOException("The server is busy");
+            }
+            return sb.toString().equals(BinaryProtocol.HELLO_OK);
+        } catch (SocketTimeoutException e){
+            //An old server ignores the line
+            return false;
+        } finally {
+            if (!socket.isClosed()){
+                socket.setSoTimeout(timeout);
+            }
+        }
+    }
+    
+    /**
+     * Returns whether the binary protocol is used by the current socket
+     * @return Whether it is binary
+     */
+    public boolean isBinary(){
+        return binary;
+    }
+    
+    /**
+     * Sets whether the binary protocol is negotiated by <code>newSocket()</code>
+     * @param preferred Whether it is preferred
+     */
+    public void setBinaryPreferred(boolean preferred){
+        this.binaryPreferred = preferred;
+    }
+    
+    /**
+     * Returns whether the binary protocol is negotiated by <code>newSocket()</code>
+     * @return Whether it is preferred
+     */
+    public boolean isBinaryPreferred(){
+        return binaryPreferred;
+    }
+    
+    /**
+     * Sets whether <code>queueG2dMethod()</code> queues the calls locally, until they are shipped as one frame by
+     *  <code>flushBatch()</code>. This only applies to the binary protocol.
+     * @param batching Whether the calls are batched
+     */
+    public synchronized void setBatching(boolean batching){
+        this.batching = batching;
+    }
+    
+    /**
+     * Returns whether <code>queueG2dMethod()</code> queues the calls locally
+     * @return Whether the calls are batched
+     */
+    public synchronized boolean isBatching(){
+        return batching;
+    }
+    
+    private static void readReplies(Socket s, DataInputStream in, ConcurrentHashMap<Integer, ReplyFuture> pending){
+        IOException error = null;
+        try {
+            byte[] frame;
+            while ((frame = BinaryProtocol.readFrame(in)) != null){
+                DataInputStream reply = new DataInputStream(new ByteArrayInputStream(frame));
+                int op = reply.readUnsignedByte();
+                int id = reply.readInt();
+                if (op != BinaryProtocol.OP_REPLY){
+                    throw new IOException("Unexpected reply: opcode " + op + " ID " + id);
+                }
+                ReplyFuture future = pending.remove(id);
+                if (future == null){
+                    //The request has timed out
+                    System.out.println("WARNING: Late reply at ID \"" + id + "\" ignored");
+                    continue;
+                }
+                if (reply.readUnsignedByte() == BinaryProtocol.STATUS_OK){
+                    future.complete(reply);
+                } else {
+                    String message = reply.readUTF();
+                    if (future.unawaited){
+                        System.out.println("WARNING: Request at ID \"" + id + "\" failed: " + message);
+                    }
+                    future.fail(new IOException("Remote error: " + message));
+                }
+            }
+            error = new IOException("Connection closed by the server");
+        } catch (IOException e){
+            error = e;
+        }
+        try {
+            s.close();
+        } catch (IOException ignore){}
+        failAll(pending, error);
+    }
+    
+    private static void failAll(ConcurrentHashMap<Integer, ReplyFuture> pending, IOException error){
+        for (Integer id : pending.keySet()){
+            ReplyFuture future = pending.remove(id);
+            if (future != null){
+                future.fail(error);
+            }
+        }
+    }
+    
+    //Sends the payload as a request, after any queued batch so the order is kept
+    private ReplyFuture send(int op, boolean decodeObject, boolean unawaited) throws IOException{
+        shipBatch();
+        return sendFrame(op, payloadBytes, decodeObject, unawaited);
+    }
+    
+    private ReplyFuture sendFrame(int op, ByteArrayOutputStream bytes, boolean decodeObject, boolean unawaited) throws IOException{
+        if (socket.isClosed()){
+            throw new IOException("Socket is closed. Please renew it using newSocket()");
+        }
+        int id = nextId++;
+        ReplyFuture future = new ReplyFuture(decodeObject, unawaited);
+        future.owner = pending;
+        future.id = id;
+        future.owner.put(id, future);
+        try {
+            BinaryProtocol.writeFrame(binOut, op, id, bytes);
+            binOut.flush();
+        } catch (IOException e){
+            future.owner.remove(id);
+            throw e;
+        }
+        return future;
+    }
+    
+    private ReplyFuture shipBatch() throws IOException{
+        if (batchCount == 0){
+            return null;
+        }
+        ByteArrayOutputStream frame = new ByteArrayOutputStream(4 + batchBytes.size());
+        new DataOutputStream(frame).writeInt(batchCount);
+        batchBytes.writeTo(frame);
+        batchBytes.reset();
+        batchCount = 0;
+        return sendFrame(BinaryProtocol.OP_BATCH, frame, false, true);
+    }
+    
+    private static Object await(Future<Object> future) throws IOException{
+        try {
+            return future.get(REPLY_TIMEOUT, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e){
+            throw new IOException("Invoker does not respond in " + REPLY_TIMEOUT + " ms");
+        } catch (InterruptedException e){
+            throw new InterruptedIOException("Interrupted while waiting for the reply");
+        } catch (ExecutionException e){
+            if (e.getCause() instanceof IOException){
+                throw (IOException) e.getCause();
+            }
+            throw new IOException(e.getCause());
+        }
+    }
+    
+    //Writes the call into the payload, with its own opcode if it has one
+    private int encodeCall(Class<?> g2dClass, String methodName, Object... args) throws IOException{
+        payloadBytes.reset();
+        int op = BinaryProtocol.encode(methodName, args, payload);
+        if (op != -1){
+            return op;
+        }
+        payload.writeUTF(g2dClass.getName());
+        payload.writeUTF(methodName);
+        payload.writeShort(args.length);
+        for (Object arg : args){
+            payload.writeUTF(arg.getClass().getName());
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            ObjectOutputStream objOut = new ObjectOutputStream(out);
+            objOut.writeObject(arg);
+            objOut.close();
+            payload.writeInt(out.size());
+            out.writeTo(payload);
+        }
+        return BinaryProtocol.OP_INVOKE;
+    }
+    
+    /**
+     * Invokes a Graphics2D method without waiting for its return value. With the binary protocol, the call
+     *  is pipelined after the queued batch, and the future is resolved by the reply of its request id.
+     * @param g2dClass The Graphics2D class
+     * @param methodName The method name
+     * @param args The arguments
+     * @return The future of the returned object
+     * @throws IOException If I/O goes wrong
+     */
+    public Future<Object> invokeG2dMethodAsync(Class<?> g2dClass, String methodName, Object... args) throws IOException{
+        if (!binary){
+            ReplyFuture future = new ReplyFuture(false, false);
+            future.set(invokeG2dMethod(g2dClass, methodName, args));
+            return future;
+        }
+        synchronized (this){
+            int op = encodeCall(g2dClass, methodName, args);
+            return send(op, op == BinaryProtocol.OP_INVOKE, false);
+        }
+    }
+    
+    /**
+     * Calls a Graphics2D method whose return value is not needed. With the binary protocol, the call is queued
+     *  locally until <code>flushBatch()</code> in batching mode, or else pipelined without waiting for its reply.
+     *  A failure is then only logged. With the text protocol, it is invoked right away.
+     * @param g2dClass The Graphics2D class
+     * @param methodName The method name
+     * @param args The arguments
+     * @throws IOException If I/O goes wrong
+     */
+    public void queueG2dMethod(Class<?> g2dClass, String methodName, Object... args) throws IOException{
+        synchronized (this){
+            if (binary && !batching){
+                send(encodeCall(g2dClass, methodName, args), false, true);
+                return;
+            } else if (binary){
+                int op = encodeCall(g2dClass, methodName, args);
+                batch.writeInt(1 + payloadBytes.size());
+                batch.writeByte(op);
+                payloadBytes.writeTo(batch);
+                batchCount++;
+                if (batchBytes.size() >= MAX_BATCH_SIZE){
+                    shipBatch();
+                }
+                return;
+            }
+        }
+        invokeG2dMethod(g2dClass, methodName, args);
+    }
+    
+    /**
+     * Ships the queued calls as one frame
+     * @return The future of the batch, resolved when the server has executed it
+     * @throws IOException If I/O goes wrong
+     */
+    public Future<Object> flushBatch() throws IOException{
+        ReplyFuture future = null;
+        synchronized (this){
+            if (binary){
+                future = shipBatch();
+            }
+        }
+        if (future == null){
+            future = new ReplyFuture(false, true);
+            future.set(null);
+        }
+        return future;
+    }
+    
+    private BufferedImage getImageBinary() throws IOException{
+        ReplyFuture future;
+        synchronized (this){
+            payloadBytes.reset();
+            future = send(BinaryProtocol.OP_GET_IMAGE, false, false);
+        }
+        DataInputStream in = (DataInputStream) await(future);
+        int width = in.readInt();
+        int height = in.readInt();
+        byte[] data = new byte[in.readInt()];
+        in.readFully(data);
+        
+        byte[] bwarr = {(byte) 0xff, (byte) 0x00};
+        IndexColorModel bwcm = new IndexColorModel(1, bwarr.length, bwarr, bwarr, bwarr);
+        WritableRaster wr = Raster.createPackedRaster(new DataBufferByte(data, data.length), width, height, 1, null);
+        return new BufferedImage(bwcm, wr, false, null);
+    }
+    
+    private byte[] getProcessedBinary() throws IOException{
+        ReplyFuture future;
+        synchronized (this){
+            payloadBytes.reset();
+            future = send(BinaryProtocol.OP_GET_PROCESSED, false, false);
+        }
+        DataInputStream in = (DataInputStream) await(future);
+        byte[] data = new byte[LCDGraphics.BUF_SIZE];
+        in.readFully(data);
+        return data;
+    }
+    
+    //The reply of a request id: the decoded object for OP_INVOKE, or the reply stream after the status byte
+    private static final class ReplyFuture implements Future<Object> {
+        
+        private final CountDownLatch done = new CountDownLatch(1);
+        
+        private final boolean decodeObject;
+        
+        /**
+         * Whether the failure is logged, as the caller may not wait for the reply, e.g. a batch or a void call
+         */
+        private final boolean unawaited;
+        
+        private volatile Object value = null;
+        
+        private volatile Throwable error = null;
+        
+        /**
+         * The pending map of the socket, from which the request is removed if it times out
+         */
+        private ConcurrentHashMap<Integer, ReplyFuture> owner = null;
+        
+        private int id;
+        
+        private ReplyFuture(boolean decodeObject, boolean unawaited){
+            this.decodeObject = decodeObject;
+            this.unawaited = unawaited;
+        }
+        
+        private void complete(DataInputStream in){
+            if (!decodeObject){
+                set(in);
+                return;
+            }
+            try {
+                byte[] bytes = new byte[in.readInt()];
+                if (bytes.length == 0){
+                    set(null);
+                    return;
+                }
+                in.readFully(bytes);
+                ObjectInput objIn = new ObjectInputStream(new ByteArrayInputStream(bytes));
+                try {
+                    set(objIn.readObject());
+                } finally {
+                    objIn.close();
+                }
+            } catch (ClassNotFoundException e){
+                fail(new IOException("Returned object's cannot be found", e));
+            } catch (IOException e){
+                fail(e);
+            }
+        }
+        
+        private void set(Object value){
+            this.value = value;
+            done.countDown();
+        }
+        
+        private void fail(Throwable error){
+            this.error = error;
+            done.countDown();
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            return false;
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return false;
+        }
+
+        @Override
+        public boolean isDone() {
+            return done.getCount() == 0;
+        }
+
+        @Override
+        public Object get() throws InterruptedException, ExecutionException {
+            done.await();
+            return getValue();
+        }
+
+        @Override
+        public Object get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+            if (!done.await(timeout, unit)){
+                if (owner != null){
+                    owner.remove(id, this);
+                }
+                throw new TimeoutException();
+            }
+            return getValue();
+        }
+        
+        private Object getValue() throws ExecutionException{
+            if (error != null){
+                throw new ExecutionException(error);
+            }
+            return value;
+        }
     }
     
     public BufferedImage getImage() throws IOException{
+        if (binary){
+            return getImageBinary();
+        }
         
         SecureRandom rand = new SecureRandom();
         int num = rand.nextInt();
@@ -118,6 +604,8 @@ public class GraphicsProccessorClient extends Thread{
             throw new IOException ("Socket not initialized");
         } else if (socket.isClosed()){
             throw new IOException("Socket is closed. Please renew it using newSocket()");
+        } else if (binary){
+            return await(invokeG2dMethodAsync(g2dClass, methodName, args));
         }
         
         String paraTypeStr = "";
@@ -140,6 +628,9 @@ public class GraphicsProccessorClient extends Thread{
             objOut.writeObject(args[i]);
             objOut.flush();
             valStr += Base64.encodeBase64String(out.toByteArray());
+            if (i != args.length - 1){
+                valStr += ",";
+            }
             out.close();
         }
         
@@ -156,13 +647,29 @@ public class GraphicsProccessorClient extends Thread{
         BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream()));
         String line;
         long startTime = System.currentTimeMillis();
-        while ((line = reader.readLine()) != null){
-            if (line.startsWith("DONE " + num + " ")){
-                break;
-            } else if (System.currentTimeMillis() - startTime >= 5000){
-                socket.close();
-                throw new IOException("Invoker does not respond in 5000 ms");
+        int timeout = socket.getSoTimeout();
+        //The server sends no reply if the method cannot be invoked
+        socket.setSoTimeout((int) REPLY_TIMEOUT);
+        try {
+            while ((line = reader.readLine()) != null){
+                if (line.startsWith("DONE " + num + " ")){
+                    break;
+                } else if (System.currentTimeMillis() - startTime >= REPLY_TIMEOUT){
+                    socket.close();
+                    throw new IOException("Invoker does not respond in " + REPLY_TIMEOUT + " ms");
+                }
             }
+        } catch (SocketTimeoutException e){
+            socket.close();
+            throw new IOException("Invoker does not respond in " + REPLY_TIMEOUT + " ms", e);
+        } finally {
+            if (!socket.isClosed()){
+                socket.setSoTimeout(timeout);
+            }
+        }
+        if (line == null){
+            socket.close();
+            throw new IOException("The connection is closed by the server");
         }
         
         String[] splitData = line.split(" ");
@@ -185,6 +692,8 @@ public class GraphicsProccessorClient extends Thread{
             throw new IOException ("Socket not initialized");
         } else if (socket.isClosed()){
             throw new IOException("Socket is closed. Please renew it using newSocket()");
+        } else if (binary){
+            return getProcessedBinary();
         }
         
         SecureRandom rand = new SecureRandom();
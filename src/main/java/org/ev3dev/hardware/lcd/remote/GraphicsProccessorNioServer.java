@@ -0,0 +1,489 @@
+/*******************************************************************************
+ * Any modification, copies of sections of this file must be attached with this
+ * license and shown clearly in the developer's project. The code can be used
+ * as long as you state clearly you do not own it. Any violation might result in
+ *  a take-down.
+ *
+ * MIT License
+ *
+ * Copyright (c) 2016, 2017 Anthony Law
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *******************************************************************************/
+package org.ev3dev.hardware.lcd.remote;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+
+/***
+ * A remote graphics server multiplexing all its connections on one thread with a <code>Selector</code>. It serves
+ *  the same text commands (<code>INVOKE</code>, <code>GETIMAGE</code>, <code>GETPROCESSED</code> and
+ *  <code>PROCESS</code>) and binary protocol as <code>GraphicsProccessorServer</code>, but a connection costs its
+ *  buffers and image instead of a thread and its stack. Lines and frames are decoded incrementally from a direct
+ *  buffer, as the bytes arrive.<br>
+ * <br>
+ * The commands of all connections are executed one after another, so a slow command delays the others.
+ * @author Anthony
+ *
+ */
+public class GraphicsProccessorNioServer extends Thread{
+    
+    public static final int DEFAULT_MAX_CONNECTIONS = 50;
+    
+    /**
+     * The initial size of the input and output buffers of a connection
+     */
+    public static final int INITIAL_BUFFER_SIZE = 8192;
+    
+    /**
+     * The maximum size of the input buffer of a connection. A longer line or frame closes the connection
+     */
+    public static final int MAX_BUFFER_SIZE = 2 * BinaryProtocol.MAX_FRAME_LENGTH;
+    
+    /**
+     * The amount of replies not yet sent above which a connection is no longer read, until the client reads them
+     */
+    public static final int MAX_PENDING_OUTPUT = BinaryProtocol.MAX_FRAME_LENGTH;
+    
+    /**
+     * How long a connection may send nothing before it is closed, in milliseconds, same as the blocking server
+     */
+    public static final long IDLE_TIMEOUT = 60000;
+    
+    private static final Charset CHARSET = Charset.forName("UTF-8");
+    
+    private static final byte[] BUSY_LINE = (GraphicsProccessorServer.BUSY + "\n").getBytes(CHARSET);
+    
+    private final int port;
+    
+    private final int maxConnections;
+    
+    private final ArrayDeque<GraphicsCommandProcessor> processors = new ArrayDeque<GraphicsCommandProcessor>();
+    
+    private final ByteArrayOutputStream replyBytes = new ByteArrayOutputStream();
+    
+    private volatile boolean running = false;
+    
+    private volatile int active = 0;
+    
+    private volatile long rejected = 0;
+    
+    private Selector selector = null;
+    
+    private ServerSocketChannel srvChannel = null;
+    
+    public GraphicsProccessorNioServer(){
+        this(GraphicsProccessorServer.DEFAULT_PORT);
+    }
+    
+    public GraphicsProccessorNioServer(int port){
+        this(port, DEFAULT_MAX_CONNECTIONS);
+    }
+    
+    public GraphicsProccessorNioServer(int port, int maxConnections){
+        super("ev3dev-remote-lcd-selector");
+        if (maxConnections < 1){
+            throw new IllegalArgumentException("The server needs to accept at least 1 connection: " + maxConnections);
+        }
+        this.port = port;
+        this.maxConnections = maxConnections;
+    }
+    
+    @Override
+    public void run(){
+        if (!running){
+            running = true;
+            
+            try {
+                selector = Selector.open();
+                srvChannel = ServerSocketChannel.open();
+                srvChannel.socket().bind(new InetSocketAddress(port));
+                srvChannel.configureBlocking(false);
+                srvChannel.register(selector, SelectionKey.OP_ACCEPT);
+                System.out.println("Server started with " + maxConnections + " connections. Waiting for new connection...");
+                
+                while (running){
+                    selector.select(closeIdle());
+                    Iterator<SelectionKey> it = selector.selectedKeys().iterator();
+                    while (it.hasNext()){
+                        SelectionKey key = it.next();
+                        it.remove();
+                        if (!key.isValid()){
+                            continue;
+                        }
+                        if (key.isAcceptable()){
+                            try {
+                                accept();
+                            } catch (IOException e){
+                                System.out.println("Unable to accept a connection: " + e);
+                            }
+                            continue;
+                        }
+                        Connection conn = (Connection) key.attachment();
+                        try {
+                            if (key.isWritable()){
+                                conn.write();
+                            }
+                            if (key.isValid() && key.isReadable()){
+                                conn.read();
+                            }
+                        } catch (IOException e){
+                            System.out.println("Connection of " + conn.peer + " failed: " + e);
+                            conn.close();
+                        } catch (RuntimeException e){
+                            //A bad request only closes its own connection
+                            System.out.println("Connection of " + conn.peer + " failed: " + e);
+                            e.printStackTrace();
+                            conn.close();
+                        }
+                    }
+                }
+            } catch (ClosedSelectorException ignore){
+            } catch (IOException e) {
+                if (running){
+                    e.printStackTrace();
+                }
+            } finally {
+                running = false;
+                shutdown();
+            }
+        }
+    }
+    
+    private void accept() throws IOException{
+        SocketChannel channel = srvChannel.accept();
+        if (channel == null){
+            return;
+        }
+        String peer = channel.socket().getInetAddress().getHostAddress();
+        System.out.println("Connection incoming: " + peer);
+        
+        if (active >= maxConnections){
+            rejected++;
+            System.out.println("Connection of " + peer + " refused: all " + maxConnections + " connections are in use");
+            try {
+                channel.configureBlocking(false);
+                channel.write(ByteBuffer.wrap(BUSY_LINE));
+            } catch (IOException ignore){
+            } finally {
+                channel.close();
+            }
+            return;
+        }
+        
+        GraphicsCommandProcessor processor = processors.poll();
+        if (processor == null){
+            processor = new GraphicsCommandProcessor();
+        }
+        channel.configureBlocking(false);
+        channel.socket().setTcpNoDelay(true);
+        Connection conn = new Connection(channel, processor, peer);
+        conn.key = channel.register(selector, SelectionKey.OP_READ, conn);
+        active++;
+    }
+    
+    /**
+     * Closes the connections idle for <code>IDLE_TIMEOUT</code>
+     * @return The time until the next connection may time out, in milliseconds, or 0 if there is no connection
+     */
+    private long closeIdle(){
+        long now = System.currentTimeMillis();
+        long next = 0;
+        for (SelectionKey key : selector.keys()){
+            if (!(key.attachment() instanceof Connection)){
+                continue;
+            }
+            Connection conn = (Connection) key.attachment();
+            if (conn.closed){
+                continue;
+            }
+            long left = conn.lastActivity + IDLE_TIMEOUT - now;
+            if (left <= 0){
+                System.out.println("Connection of " + conn.peer + " timed out after " + IDLE_TIMEOUT + " ms of inactivity");
+                conn.close();
+            } else if (next == 0 || left < next){
+                next = left;
+            }
+        }
+        return next;
+    }
+    
+    private void shutdown(){
+        if (selector != null){
+            try {
+                for (SelectionKey key : selector.keys()){
+                    if (key.attachment() instanceof Connection){
+                        ((Connection) key.attachment()).close();
+                    }
+                }
+            } catch (ClosedSelectorException ignore){}
+            try {
+                selector.close();
+            } catch (IOException ignore){}
+        }
+        if (srvChannel != null){
+            try {
+                srvChannel.close();
+            } catch (IOException ignore){}
+        }
+    }
+    
+    /**
+     * Stops the server, and closes all its connections
+     */
+    public void close(){
+        running = false;
+        if (selector != null){
+            selector.wakeup();
+        }
+    }
+
+    public int getPort() {
+        return port;
+    }
+
+    public int getMaxConnections() {
+        return maxConnections;
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+    
+    /**
+     * Returns the number of connections being handled
+     * @return The number of connections
+     */
+    public int getActiveConnections(){
+        return active;
+    }
+    
+    /**
+     * Returns the number of connections refused because <code>maxConnections</code> were in use
+     * @return The number of refused connections
+     */
+    public long getRejectedConnections(){
+        return rejected;
+    }
+    
+    private static ByteBuffer ensureCapacity(ByteBuffer buf, int needed, int max) throws IOException{
+        if (buf.remaining() >= needed){
+            return buf;
+        }
+        int required = buf.position() + needed;
+        if (required > max){
+            throw new IOException("The buffer cannot grow above " + max + " bytes");
+        }
+        int capacity = buf.capacity();
+        while (capacity < required){
+            capacity = Math.min(capacity * 2, max);
+        }
+        ByteBuffer grown = ByteBuffer.allocateDirect(capacity);
+        buf.flip();
+        grown.put(buf);
+        return grown;
+    }
+    
+    private class Connection {
+        
+        private final SocketChannel channel;
+        
+        private final GraphicsCommandProcessor processor;
+        
+        private final String peer;
+        
+        private final long startTime = System.currentTimeMillis();
+        
+        private long lastActivity = startTime;
+        
+        private SelectionKey key;
+        
+        /**
+         * Received bytes, in write mode
+         */
+        private ByteBuffer in = ByteBuffer.allocateDirect(INITIAL_BUFFER_SIZE);
+        
+        /**
+         * Replies not yet sent, in write mode
+         */
+        private ByteBuffer out = ByteBuffer.allocateDirect(INITIAL_BUFFER_SIZE);
+        
+        private byte[] frame = new byte[INITIAL_BUFFER_SIZE];
+        
+        /**
+         * The bytes of the pending line already scanned for a line feed
+         */
+        private int scanned = 0;
+        
+        private boolean binary = false;
+        
+        private boolean closed = false;
+        
+        private Connection(SocketChannel channel, GraphicsCommandProcessor processor, String peer){
+            this.channel = channel;
+            this.processor = processor;
+            this.peer = peer;
+        }
+        
+        private void read() throws IOException{
+            if (!in.hasRemaining()){
+                in = ensureCapacity(in, in.capacity(), MAX_BUFFER_SIZE);
+            }
+            int n = channel.read(in);
+            if (n < 0){
+                close();
+                return;
+            }
+            lastActivity = System.currentTimeMillis();
+            decode();
+        }
+        
+        private void decode() throws IOException{
+            in.flip();
+            try {
+                boolean decoded = true;
+                while (decoded && !closed && out.position() < MAX_PENDING_OUTPUT){
+                    decoded = binary ? decodeFrame() : decodeLine();
+                }
+            } finally {
+                in.compact();
+            }
+            flush();
+        }
+        
+        private boolean decodeLine() throws IOException{
+            int start = in.position();
+            int limit = in.limit();
+            for (int i = start + scanned; i < limit; i++){
+                if (in.get(i) == '\n'){
+                    int end = i > start && in.get(i - 1) == '\r' ? i - 1 : i;
+                    byte[] bytes = frameBuffer(end - start);
+                    in.get(bytes, 0, end - start);
+                    in.position(i + 1);
+                    scanned = 0;
+                    
+                    String line = new String(bytes, 0, end - start, CHARSET);
+                    if (line.equals(BinaryProtocol.HELLO)){
+                        System.out.println("Connection of " + peer + " switched to binary protocol");
+                        queue((BinaryProtocol.HELLO_OK + "\n").getBytes(CHARSET));
+                        binary = true;
+                        return true;
+                    }
+                    String reply = processor.executeLine(line, peer);
+                    if (reply != null){
+                        queue((reply + "\n").getBytes(CHARSET));
+                    }
+                    return true;
+                }
+            }
+            scanned = limit - start;
+            return false;
+        }
+        
+        private boolean decodeFrame() throws IOException{
+            if (in.remaining() < 4){
+                return false;
+            }
+            int length = in.getInt(in.position());
+            if (length < 5 || length > BinaryProtocol.MAX_FRAME_LENGTH){
+                throw new IOException("Invalid frame length: " + length);
+            }
+            if (in.remaining() < 4 + length){
+                return false;
+            }
+            in.position(in.position() + 4);
+            byte[] bytes = frameBuffer(length);
+            in.get(bytes, 0, length);
+            
+            int id = processor.executeFrame(bytes, 0, length, replyBytes);
+            out = ensureCapacity(out, 9 + replyBytes.size(), Integer.MAX_VALUE);
+            out.putInt(5 + replyBytes.size());
+            out.put((byte) BinaryProtocol.OP_REPLY);
+            out.putInt(id);
+            out.put(replyBytes.toByteArray());
+            return true;
+        }
+        
+        private byte[] frameBuffer(int length){
+            if (frame.length < length){
+                frame = new byte[Math.max(length, frame.length * 2)];
+            }
+            return frame;
+        }
+        
+        private void queue(byte[] bytes) throws IOException{
+            out = ensureCapacity(out, bytes.length, Integer.MAX_VALUE);
+            out.put(bytes);
+        }
+        
+        private void write() throws IOException{
+            flush();
+            if (!closed && out.position() < MAX_PENDING_OUTPUT && in.position() > 0){
+                //Requests were left undecoded while the replies were pending
+                decode();
+            }
+        }
+        
+        private void flush() throws IOException{
+            if (closed){
+                return;
+            }
+            out.flip();
+            try {
+                channel.write(out);
+            } finally {
+                out.compact();
+            }
+            
+            int ops = 0;
+            if (out.position() < MAX_PENDING_OUTPUT){
+                ops |= SelectionKey.OP_READ;
+            }
+            if (out.position() > 0){
+                ops |= SelectionKey.OP_WRITE;
+            }
+            key.interestOps(ops);
+        }
+        
+        private void close(){
+            if (closed){
+                return;
+            }
+            closed = true;
+            key.cancel();
+            try {
+                channel.close();
+            } catch (IOException ignore){}
+            processor.reset();
+            processors.offer(processor);
+            active--;
+            System.out.println("Connection of " + peer + " closed. Total connection time: " + (System.currentTimeMillis() - startTime) + " ms");
+        }
+    }
+}
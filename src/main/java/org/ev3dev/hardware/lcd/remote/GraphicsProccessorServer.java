@@ -29,20 +29,49 @@
 package org.ev3dev.hardware.lcd.remote;
 
 import java.io.IOException;
+import java.io.OutputStream;
 import java.net.ServerSocket;
 import java.net.Socket;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
+/***
+ * A remote graphics server. Connections are handled by a fixed pool of <code>maxThreads</code> threads. When all
+ *  of them are busy, a new connection is answered <code>BUSY</code> and closed, instead of being queued. The
+ *  images of the connections are pooled as well, so the memory used is bounded by <code>maxThreads</code>.
+ * @author Anthony
+ *
+ */
 public class GraphicsProccessorServer extends Thread{
 
     public static final int DEFAULT_MAX_THREADS = 50;
     
     public static final int DEFAULT_PORT = 6718;
     
+    /**
+     * The line sent to a connection refused because all threads are busy
+     */
+    public static final String BUSY = "BUSY";
+    
     private final int port;
     
     private final int maxThreads;
     
-    private boolean running = false;
+    private final ThreadPoolExecutor executor;
+    
+    private final ArrayBlockingQueue<GraphicsCommandProcessor> processors;
+    
+    private final AtomicLong rejected = new AtomicLong();
+    
+    private volatile boolean running = false;
+    
+    private ServerSocket srvSock = null;
     
     public GraphicsProccessorServer(){
         this(DEFAULT_PORT);
@@ -53,8 +82,22 @@ public class GraphicsProccessorServer extends Thread{
     }
     
     public GraphicsProccessorServer(int port, int maxThreads){
+        if (maxThreads < 1){
+            throw new IllegalArgumentException("The server needs at least 1 thread: " + maxThreads);
+        }
         this.port = port;
         this.maxThreads = maxThreads;
+        this.processors = new ArrayBlockingQueue<GraphicsCommandProcessor>(maxThreads);
+        this.executor = new ThreadPoolExecutor(maxThreads, maxThreads, 60, TimeUnit.SECONDS,
+                new SynchronousQueue<Runnable>(), new ThreadFactory(){
+                    private final AtomicInteger count = new AtomicInteger();
+                    
+                    @Override
+                    public Thread newThread(Runnable r) {
+                        return new Thread(r, "ev3dev-remote-lcd-" + count.incrementAndGet());
+                    }
+                });
+        executor.allowCoreThreadTimeOut(true);
     }
     
     @Override
@@ -63,24 +106,71 @@ public class GraphicsProccessorServer extends Thread{
             running = true;
             
             try {
-                ServerSocket srvSock = new ServerSocket(port);
+                srvSock = new ServerSocket(port);
                 Socket socket;
-                System.out.println("Server started. Waiting for new connection...");
+                System.out.println("Server started with " + maxThreads + " threads. Waiting for new connection...");
                 while(running){
                     socket = srvSock.accept();
-                    System.out.println("Connection incoming: " + socket.getInetAddress().getHostAddress() + " starting socket thread");
-                    ServerSocketHandler handler = new ServerSocketHandler(socket);
-                    handler.start();
+                    System.out.println("Connection incoming: " + socket.getInetAddress().getHostAddress() + " starting socket handler");
+                    socket.setTcpNoDelay(true);
+                    admit(socket);
                 }
-                srvSock.close();
-                
             } catch (IOException e) {
-                e.printStackTrace();
+                if (running){
+                    e.printStackTrace();
+                }
+            } finally {
+                close();
             }
-            
-            running = false;
         }
     }
+    
+    private void admit(final Socket socket){
+        GraphicsCommandProcessor processor = processors.poll();
+        if (processor == null){
+            processor = new GraphicsCommandProcessor();
+        }
+        final GraphicsCommandProcessor p = processor;
+        try {
+            executor.execute(new Runnable(){
+                @Override
+                public void run() {
+                    try {
+                        new ServerSocketHandler(socket, p).run();
+                    } finally {
+                        try {
+                            socket.close();
+                        } catch (IOException ignore){}
+                        p.reset();
+                        processors.offer(p);
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e){
+            rejected.incrementAndGet();
+            processors.offer(processor);
+            System.out.println("Connection of " + socket.getInetAddress().getHostAddress() + " refused: all " + maxThreads + " threads are busy");
+            try {
+                OutputStream out = socket.getOutputStream();
+                out.write((BUSY + "\n").getBytes("US-ASCII"));
+                out.flush();
+                socket.close();
+            } catch (IOException ignore){}
+        }
+    }
+    
+    /**
+     * Stops accepting connections. The connections being handled are not interrupted.
+     */
+    public void close(){
+        running = false;
+        if (srvSock != null){
+            try {
+                srvSock.close();
+            } catch (IOException ignore){}
+        }
+        executor.shutdown();
+    }
 
     public int getPort() {
         return port;
@@ -93,4 +183,20 @@ public class GraphicsProccessorServer extends Thread{
     public boolean isRunning() {
         return running;
     }
+    
+    /**
+     * Returns the number of connections being handled
+     * @return The number of connections
+     */
+    public int getActiveConnections(){
+        return executor.getActiveCount();
+    }
+    
+    /**
+     * Returns the number of connections refused because all threads were busy
+     * @return The number of refused connections
+     */
+    public long getRejectedConnections(){
+        return rejected.get();
+    }
 }
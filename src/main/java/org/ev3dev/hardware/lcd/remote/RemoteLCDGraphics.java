@@ -53,6 +53,8 @@ import java.awt.image.renderable.RenderableImage;
 import java.io.IOException;
 import java.text.AttributedCharacterIterator;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 import org.ev3dev.hardware.lcd.LCDGraphics;
 
@@ -60,22 +62,43 @@ public class RemoteLCDGraphics extends LCDGraphics {
     
     private final GraphicsProccessorClient client;
     
+    private final Class<?> g2dClass;
+    
     public RemoteLCDGraphics(String hostname){
         this(hostname, GraphicsProccessorClient.DEFAULT_PORT);
     }
     
     public RemoteLCDGraphics(String hostname, int port){
         client = new GraphicsProccessorClient(hostname, port);
+        Graphics g = getImage().getGraphics();
+        g2dClass = g.getClass();
+        g.dispose();
     }
 
+    /**
+     * Applies the remote graphics onto the LCD. With the binary protocol, the queued calls are shipped as one
+     *  frame, followed by the request of the processed image.
+     */
     @Override
     public void flush(){
         byte[] data = null;
         try {
-            data = client.process(getImage());
+            if (client.isBinary()){
+                Future<Object> batch = client.flushBatch();
+                data = client.getProcessed();
+                //The batch reply comes before the processed image, as the server executes them in order
+                batch.get();
+            } else {
+                data = client.process(getImage());
+            }
         } catch (IOException e) {
             e.printStackTrace();
             return;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        } catch (ExecutionException e) {
+            e.printStackTrace();
         }
         
         if (data == null){
@@ -92,7 +115,7 @@ public class RemoteLCDGraphics extends LCDGraphics {
     @Override
     public void draw(Shape s) {
         try {
-            client.invokeG2dMethod(getImage().getGraphics().getClass(), "draw", s);
+            client.queueG2dMethod(g2dClass, "draw", s);
         } catch (IOException e) {
             e.printStackTrace();
         }
@@ -101,7 +124,7 @@ public class RemoteLCDGraphics extends LCDGraphics {
     @Override
     public boolean drawImage(Image img, AffineTransform xform, ImageObserver obs) {
         try {
-            boolean result = (boolean) client.invokeG2dMethod(getImage().getGraphics().getClass(), "drawImage", img, xform, obs);
+            boolean result = (boolean) client.invokeG2dMethod(g2dClass, "drawImage", img, xform, obs);
             return result;
         } catch (IOException e) {
             e.printStackTrace();
@@ -112,7 +135,7 @@ public class RemoteLCDGraphics extends LCDGraphics {
     @Override
     public void drawImage(BufferedImage img, BufferedImageOp op, int x, int y) {
         try {
-            client.invokeG2dMethod(getImage().getGraphics().getClass(), "drawImage", op, x, y);
+            client.queueG2dMethod(g2dClass, "drawImage", op, x, y);
         } catch (IOException e) {
             e.printStackTrace();
         }
@@ -122,7 +145,7 @@ public class RemoteLCDGraphics extends LCDGraphics {
     @Override
     public void drawRenderedImage(RenderedImage img, AffineTransform xform) {
         try {
-            client.invokeG2dMethod(getImage().getGraphics().getClass(), "drawRenderedImage", img, xform);
+            client.queueG2dMethod(g2dClass, "drawRenderedImage", img, xform);
         } catch (IOException e) {
             e.printStackTrace();
         }
@@ -131,7 +154,7 @@ public class RemoteLCDGraphics extends LCDGraphics {
     @Override
     public void drawRenderableImage(RenderableImage img, AffineTransform xform) {
         try {
-            client.invokeG2dMethod(getImage().getGraphics().getClass(), "drawRenderableImage", img, xform);
+            client.queueG2dMethod(g2dClass, "drawRenderableImage", img, xform);
         } catch (IOException e) {
             e.printStackTrace();
         }
@@ -140,7 +163,7 @@ public class RemoteLCDGraphics extends LCDGraphics {
     @Override
     public void drawString(String str, int x, int y) {
         try {
-            client.invokeG2dMethod(getImage().getGraphics().getClass(), "drawString", str, x, y);
+            client.queueG2dMethod(g2dClass, "drawString", str, x, y);
         } catch (IOException e) {
             e.printStackTrace();
         }
@@ -149,7 +172,7 @@ public class RemoteLCDGraphics extends LCDGraphics {
     @Override
     public void drawString(String str, float x, float y) {
         try {
-            client.invokeG2dMethod(getImage().getGraphics().getClass(), "drawString", str, x, y);
+            client.queueG2dMethod(g2dClass, "drawString", str, x, y);
         } catch (IOException e) {
             e.printStackTrace();
         }
@@ -158,7 +181,7 @@ public class RemoteLCDGraphics extends LCDGraphics {
     @Override
     public void drawString(AttributedCharacterIterator iterator, int x, int y) {
         try {
-            client.invokeG2dMethod(getImage().getGraphics().getClass(), "drawString", iterator, x, y);
+            client.queueG2dMethod(g2dClass, "drawString", iterator, x, y);
         } catch (IOException e) {
             e.printStackTrace();
         }
@@ -167,7 +190,7 @@ public class RemoteLCDGraphics extends LCDGraphics {
     @Override
     public void drawString(AttributedCharacterIterator iterator, float x, float y) {
         try {
-            client.invokeG2dMethod(getImage().getGraphics().getClass(), "drawString", iterator, x, y);
+            client.queueG2dMethod(g2dClass, "drawString", iterator, x, y);
         } catch (IOException e) {
             e.printStackTrace();
         }
@@ -176,7 +199,7 @@ public class RemoteLCDGraphics extends LCDGraphics {
     @Override
     public void drawGlyphVector(GlyphVector g, float x, float y) {
         try {
-            client.invokeG2dMethod(getImage().getGraphics().getClass(), "drawGlyphVector", x, y);
+            client.queueG2dMethod(g2dClass, "drawGlyphVector", x, y);
         } catch (IOException e) {
             e.printStackTrace();
         }
@@ -185,7 +208,7 @@ public class RemoteLCDGraphics extends LCDGraphics {
     @Override
     public void fill(Shape s) {
         try {
-            client.invokeG2dMethod(getImage().getGraphics().getClass(), "fill", s);
+            client.queueG2dMethod(g2dClass, "fill", s);
         } catch (IOException e) {
             e.printStackTrace();
         }
@@ -194,7 +217,7 @@ public class RemoteLCDGraphics extends LCDGraphics {
     @Override
     public boolean hit(Rectangle rect, Shape s, boolean onStroke) {
         try {
-            boolean result = (boolean) client.invokeG2dMethod(getImage().getGraphics().getClass(), "hit", rect, s, onStroke);
+            boolean result = (boolean) client.invokeG2dMethod(g2dClass, "hit", rect, s, onStroke);
             return result;
         } catch (IOException e) {
             e.printStackTrace();
@@ -205,7 +228,7 @@ public class RemoteLCDGraphics extends LCDGraphics {
     @Override
     public GraphicsConfiguration getDeviceConfiguration() {
         try {
-            GraphicsConfiguration result = (GraphicsConfiguration) client.invokeG2dMethod(getImage().getGraphics().getClass(), "getDeviceConfiguration");
+            GraphicsConfiguration result = (GraphicsConfiguration) client.invokeG2dMethod(g2dClass, "getDeviceConfiguration");
             return result;
         } catch (IOException e) {
             e.printStackTrace();
@@ -263,14 +286,20 @@ public class RemoteLCDGraphics extends LCDGraphics {
 
     @Override
     public void translate(int x, int y) {
-        // TODO Auto-generated method stub
-        
+        try {
+            client.queueG2dMethod(g2dClass, "translate", x, y);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
     }
 
     @Override
     public void translate(double tx, double ty) {
-        // TODO Auto-generated method stub
-        
+        try {
+            client.queueG2dMethod(g2dClass, "translate", tx, ty);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
     }
 
     @Override
@@ -299,14 +328,20 @@ public class RemoteLCDGraphics extends LCDGraphics {
 
     @Override
     public void transform(AffineTransform Tx) {
-        // TODO Auto-generated method stub
-        
+        try {
+            client.queueG2dMethod(g2dClass, "transform", Tx);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
     }
 
     @Override
     public void setTransform(AffineTransform Tx) {
-        // TODO Auto-generated method stub
-        
+        try {
+            client.queueG2dMethod(g2dClass, "setTransform", Tx);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
     }
 
     @Override
@@ -371,8 +406,11 @@ public class RemoteLCDGraphics extends LCDGraphics {
 
     @Override
     public void setColor(Color c) {
-        // TODO Auto-generated method stub
-        
+        try {
+            client.queueG2dMethod(g2dClass, "setColor", c);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
     }
 
     @Override
@@ -395,8 +433,11 @@ public class RemoteLCDGraphics extends LCDGraphics {
 
     @Override
     public void setFont(Font font) {
-        // TODO Auto-generated method stub
-        
+        try {
+            client.queueG2dMethod(g2dClass, "setFont", font);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
     }
 
     @Override
@@ -443,20 +484,29 @@ public class RemoteLCDGraphics extends LCDGraphics {
 
     @Override
     public void drawLine(int x1, int y1, int x2, int y2) {
-        // TODO Auto-generated method stub
-        
+        try {
+            client.queueG2dMethod(g2dClass, "drawLine", x1, y1, x2, y2);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
     }
 
     @Override
     public void fillRect(int x, int y, int width, int height) {
-        // TODO Auto-generated method stub
-        
+        try {
+            client.queueG2dMethod(g2dClass, "fillRect", x, y, width, height);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
     }
 
     @Override
     public void clearRect(int x, int y, int width, int height) {
-        // TODO Auto-generated method stub
-        
+        try {
+            client.queueG2dMethod(g2dClass, "clearRect", x, y, width, height);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
     }
 
     @Override
@@ -554,7 +604,7 @@ public class RemoteLCDGraphics extends LCDGraphics {
     @Override
     public void dispose() {
         try {
-            client.invokeG2dMethod(getImage().getGraphics().getClass(), "dispose");
+            client.queueG2dMethod(g2dClass, "dispose");
         } catch (IOException e) {
             e.printStackTrace();
         }
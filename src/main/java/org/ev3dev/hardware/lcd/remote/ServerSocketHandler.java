@@ -28,32 +28,19 @@
  *******************************************************************************/
 package org.ev3dev.hardware.lcd.remote;
 
-import java.awt.Color;
-import java.awt.Graphics2D;
 import java.awt.image.BufferedImage;
-import java.awt.image.DataBuffer;
-import java.awt.image.DataBufferByte;
-import java.awt.image.IndexColorModel;
-import java.awt.image.Raster;
-import java.awt.image.WritableRaster;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.BufferedReader;
-import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
-import java.io.ObjectInput;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutput;
-import java.io.ObjectOutputStream;
 import java.io.PrintWriter;
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
 import java.net.Socket;
 
-import javax.imageio.ImageIO;
-
-import org.apache.commons.codec.binary.Base64;
-import org.ev3dev.hardware.lcd.LCD;
+import org.ev3dev.hardware.lcd.LCDGraphics;
 
 public class ServerSocketHandler extends Thread{
     
@@ -67,8 +54,20 @@ public class ServerSocketHandler extends Thread{
     
     private boolean running = false;
     
+    private final GraphicsCommandProcessor processor;
+    
     public ServerSocketHandler(Socket socket){
+        this(socket, new GraphicsCommandProcessor());
+    }
+    
+    /**
+     * Creates a handler drawing onto the processor specified, e.g. one from a pool
+     * @param socket The connection
+     * @param processor The processor, which is not reset by the handler
+     */
+    public ServerSocketHandler(Socket socket, GraphicsCommandProcessor processor){
         this.socket = socket;
+        this.processor = processor;
     }
     
     @Override
@@ -84,181 +83,19 @@ public class ServerSocketHandler extends Thread{
                 String line;
                 System.out.println("Connection of " + socket.getInetAddress().getHostAddress() + " is awaiting commands...");
                 
-                byte[] bwdata = new byte[BUF_SIZE];
-                
-                byte[] bwarr = {(byte) 0xff, (byte) 0x00};
-                IndexColorModel bwcm = new IndexColorModel(1, bwarr.length, bwarr, bwarr, bwarr);
-                
-                DataBuffer db = new DataBufferByte(bwdata, bwdata.length);
-                WritableRaster wr = Raster.createPackedRaster(db, LCD.SCREEN_WIDTH, LCD.SCREEN_HEIGHT, 1, null);
-                
-                BufferedImage image = new BufferedImage(bwcm, wr, false, null);
-                Graphics2D g2d = (Graphics2D) image.getGraphics();
-                
-                g2d.setPaint(Color.WHITE);
-                g2d.setBackground(Color.WHITE);
-                g2d.fillRect(0, 0, image.getWidth(), image.getHeight());
+                String peer = socket.getInetAddress().getHostAddress();
                 
                 while ((line = reader.readLine()) != null){
-                    if (line.startsWith("INVOKE")){
-                        System.out.println("Connection of " + socket.getInetAddress().getHostAddress() + " recevied invoke command since " + (System.currentTimeMillis() - startTime) + " ms");
-                        
-                        String[] splitData = line.split(" ");
-                        if (splitData.length < 5){
-                            System.out.println("Missing parameters " + splitData.length + " / 5");
-                        }
-                        String id = splitData[1];
-                        String g2dClassStr = splitData[2];
-                        String methodName = splitData[3];
-                        String[] paraTypesStr = splitData[4].split(",");
-                        String[] argsStr = splitData[5].split(",");
-                        
-                        System.out.println("Connection of " + socket.getInetAddress().getHostAddress() + " at ID \"" + id + "\" is invoking G2D method \"" + methodName + "\" with " + argsStr.length + " arguments");
-                        
-                        Class<?> paraTypes[] = null;
-                        
-                        if (splitData[3].equals("none")){
-                            paraTypes = new Class<?>[0];
-                        } else {
-                            paraTypes = new Class<?>[paraTypesStr.length];
-                            for (int i = 0; i < paraTypes.length; i++){
-                                try {
-                                    Class<?> c = Class.forName(paraTypesStr[i]);
-                                    paraTypes[i] = c;
-                                } catch (ClassNotFoundException e) {
-                                    System.out.println("WARNING: Class not found: " + e);
-                                    continue;
-                                }
-                            }
-                        }
-                        
-                        Object args[] = null;
-                        if (splitData[4].equals("none")){
-                            args = new Object[0];
-                        } else {
-                            args = new Object[argsStr.length];
-                            for (int i = 0; i < args.length; i++){
-                                ByteArrayInputStream in = new ByteArrayInputStream(Base64.decodeBase64(argsStr[i]));
-                                ObjectInput objIn = new ObjectInputStream(in);
-                                
-                                try {
-                                    args[i] = objIn.readObject();
-                                    if (args[i] instanceof Integer){
-                                        args[i] = (int) args[i];
-                                    } else if (args[i] instanceof Float){
-                                        args[i] = (float) args[i];
-                                    }
-                                } catch (ClassNotFoundException e) {
-                                    System.out.println("WARNING: Class not found: " + e);
-                                    continue;
-                                }
-                                
-                                objIn.close();
-                                in.close();
-                            }
-                        }
-                        Class<?> g2dClass = null;
-                        try {
-                            g2dClass = Class.forName(g2dClassStr);
-                        } catch (ClassNotFoundException e1) {
-                            System.out.println("WARNING: Cannot find G2D class specified");
-                            e1.printStackTrace();
-                            continue;
-                        }
-                        
-                        Method[] methods = g2dClass.getDeclaredMethods();
-                        for (int i = 0; i < methods.length; i++){
-                            System.out.println("[" + i + "] " + methods[i].getName());
-                            for (int j = 0; j < methods[i].getParameterTypes().length; j++){
-                                System.out.println("\t[" + i + "] containing [" + j + "] parameter: " + methods[i].getParameterTypes()[j].getName());
-                            }
-                        }
-                        
-                        Method method = null;
-                        try {
-                            method = g2dClass.getDeclaredMethod(methodName, paraTypes);
-                        } catch (NoSuchMethodException e) {
-                            System.out.println("WARNING: Method for G2D not found: " + e);
-                            e.printStackTrace();
-                            continue;
-                        } catch (SecurityException e) {
-                            System.out.println("WARNING: Cannot access to method of G2D: " + e);
-                            e.printStackTrace();
-                            continue;
-                        }
-                        
-                        Object objReturn = null;
-                        try {
-                            objReturn = method.invoke(g2d, args);
-                        } catch (IllegalAccessException e) {
-                            System.out.println("WARNING: Unable to invoke method: " + e);
-                            e.printStackTrace();
-                        } catch (IllegalArgumentException e) {
-                            System.out.println("WARNING: Unable to invoke method: " + e);
-                            e.printStackTrace();
-                        } catch (InvocationTargetException e) {
-                            System.out.println("WARNING: Unable to invoke method: " + e);
-                            e.printStackTrace();
-                        }
-                        
-                        ByteArrayOutputStream out = new ByteArrayOutputStream();
-                        ObjectOutput objOut;
-                        objOut = new ObjectOutputStream(out);
-                        objOut.writeObject(objReturn);
-                        objOut.flush();
-                        writer.println("DONE " + id + " " + Base64.encodeBase64String(out.toByteArray()));
-                        out.close();
-                        System.out.println("Connection of " + socket.getInetAddress().getHostAddress() + " at ID \"" + id + "\" successfully invoked G2D method \"" + methodName + "\" with " + argsStr.length + " arguments");
-                        
-                        
-                    } else if (line.startsWith("GETIMAGE")){
-                        System.out.println("Connection of " + socket.getInetAddress().getHostAddress() + " recevied GETIMAGE command since " + (System.currentTimeMillis() - startTime) + " ms");
-                    
-                        String[] splitData = line.split(" ");
-                        if (splitData.length < 2){
-                            System.out.println("Missing parameters " + splitData.length + " / 2");
-                        }
-                        String id = splitData[1];
-                        
-                        ByteArrayOutputStream out = new ByteArrayOutputStream();
-                        ObjectOutput objOut;
-                        objOut = new ObjectOutputStream(out);
-                        objOut.writeObject(image);
-                        objOut.flush();
-                        
-                        writer.println("DONE " + id + " " + Base64.encodeBase64String(out.toByteArray()));
-                        out.close();
-                    } else if (line.startsWith("GETPROCESSED")){
-                        System.out.println("Connection of " + socket.getInetAddress().getHostAddress() + " recevied GETPROCESSED command since " + (System.currentTimeMillis() - startTime) + " ms");
-                    
-                        String[] splitData = line.split(" ");
-                        if (splitData.length < 2){
-                            System.out.println("Missing parameters " + splitData.length + " / 2");
-                        }
-                        String id = splitData[1];
-                        
-                        writer.println("DONE " + id + " " + Base64.encodeBase64String(processImage(image)));
-                    } else if (line.startsWith("PROCESS")){
-                        System.out.println("Connection of " + socket.getInetAddress().getHostAddress() + " recevied process command since " + (System.currentTimeMillis() - startTime) + " ms");
-                        String[] splitData = line.split(" ");
-                        
-                        if (splitData.length < 3){
-                            System.out.println("Error processing... missing parameters: " + splitData.length);
-                            continue;
-                        }
-                        
-                        String id = splitData[1];
-                        String data = splitData[2];
-                        
-                        System.out.println("Processing data with ID: " + id + " DATA: " + data);
-                        
-                        ByteArrayInputStream in = new ByteArrayInputStream(Base64.decodeBase64(data));
-                        BufferedImage inImage = ImageIO.read(in);
-                        
-                        byte[] buf = processImage(inImage);
-                        
-                        System.out.println("Processing Done for ID: " + id);
-                        writer.println("DONE " + id + " " + Base64.encodeBase64String(buf));
+                    if (line.equals(BinaryProtocol.HELLO)){
+                        //The client waits for the reply before sending frames, so nothing is left buffered in the reader
+                        writer.println(BinaryProtocol.HELLO_OK);
+                        System.out.println("Connection of " + peer + " switched to the binary protocol");
+                        runBinary(processor);
+                        break;
+                    }
+                    String reply = processor.executeLine(line, peer);
+                    if (reply != null){
+                        writer.println(reply);
                     }
                 }
                 System.out.println("Connection of " + socket.getInetAddress().getHostAddress() + " closed. Total connection time: " + (System.currentTimeMillis() - startTime) + " ms");
@@ -274,54 +111,21 @@ public class ServerSocketHandler extends Thread{
         }
     }
     
-    public static byte[] processImage(BufferedImage image){
-        byte[] buf = new byte[BUF_SIZE];
+    private void runBinary(GraphicsCommandProcessor processor) throws IOException{
+        DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+        ByteArrayOutputStream replyBytes = new ByteArrayOutputStream();
         
-        //byte[] pixel = ((DataBufferByte) image.getRaster().getDataBuffer()).getData();
-        //System.out.println("pixel[] len: " + pixel.length);
-        //System.out.println("content: " + Arrays.toString(pixel));
-        
-        int bitPos;
-        for (int i = 0; i < LCD.SCREEN_HEIGHT; i++){
-            //System.out.println("rendering row " + i + "...");
-            //long t = System.currentTimeMillis();
-            bitPos = 0;
-            for (int j = 0; j < LCD.SCREEN_WIDTH; j++){
-                //int val = image.getRGB(j, i);
-                //int cmb = val & 0xff + (val & 0xff00) >> 8 + (val & 0xff0000) >> 16;
-                
-                if (bitPos > 7){
-                    //System.out.println("Overload");
-                    bitPos = 0;
-                }
-                
-                
-                //TODO: Rewrite not to use getRGB()! It results in low performance
-                Color color = new Color(image.getRGB(j, i));
-                
-                int y = (int) (0.2126 * color.getRed() + 0.7152 * color.getBlue() + 0.0722 * color.getGreen()); //Combine all colours together 255+255+255 = 765
-                //System.out.println("(" + j + ", " + i + "): " + cmb);
-                
-                
-                //byte pixelBit = pixel[i * LINE_LEN + j / 8];
-                
-                //System.out.println(Integer.toHexString(pixelBit));
-                
-                //System.out.println("Pixel: " + (i * LINE_LEN + j / 8) + " bit " + bitPos + ": " + y + " fill? " + (y < 128));
-                if (y < 128){
-                    //System.out.println("pixel black: " + (i * LINE_LEN + j / 8 + "@bit" + bitPos) + "y: " + y + " r:" + color.getRed() + "g:" + color.getGreen() + "b:" + color.getBlue());
-                    //System.out.println("Black: " + (pixelBit & 0xff));
-                    buf[i * LINE_LEN + j / 8] |= (1 << bitPos);
-                } else {
-                    //System.out.println("White");
-                    buf[i * LINE_LEN + j / 8] &= ~(1 << bitPos);
-                }
-                
-                bitPos++;
-            }
-            //System.out.println("row (" + (i) + ") getRGB used: " + (System.currentTimeMillis() - t) + " ms");
+        byte[] frame;
+        while ((frame = BinaryProtocol.readFrame(in)) != null){
+            int id = processor.executeFrame(frame, 0, frame.length, replyBytes);
+            BinaryProtocol.writeFrame(out, BinaryProtocol.OP_REPLY, id, replyBytes);
+            out.flush();
         }
-        return buf;
+    }
+    
+    public static byte[] processImage(BufferedImage image){
+        return LCDGraphics.toFramebuffer(image, new byte[BUF_SIZE]);
     }
     
 }
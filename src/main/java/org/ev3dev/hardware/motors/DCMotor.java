@@ -247,8 +247,7 @@ public class DCMotor extends Device{
 	 * @throws EV3LibraryException If I/O goes wrong
 	 */
 	public int getDutyCycle() throws EV3LibraryException{
-		String dutycycle = this.getAttribute(SYSFS_PROPERTY_DUTY_CYCLE);
-		return Integer.parseInt(dutycycle);
+		return this.getIntAttribute(SYSFS_PROPERTY_DUTY_CYCLE);
 	}
 	
 	/**
@@ -259,8 +258,7 @@ public class DCMotor extends Device{
 	 * @throws EV3LibraryException If I/O goes wrong
 	 */
 	public int getDutyCycleSP() throws EV3LibraryException{
-		String dutycyclesp = this.getAttribute(SYSFS_PROPERTY_DUTY_CYCLE_SP);
-		return Integer.parseInt(dutycyclesp);
+		return this.getIntAttribute(SYSFS_PROPERTY_DUTY_CYCLE_SP);
 	}
 	
 	/**
@@ -271,7 +269,7 @@ public class DCMotor extends Device{
 	 * @throws EV3LibraryException If I/O goes wrong
 	 */
 	public void setDutyCycleSP(int sp) throws EV3LibraryException{
-		this.setAttribute(SYSFS_PROPERTY_DUTY_CYCLE_SP, Integer.toString(sp));
+		this.setIntAttribute(SYSFS_PROPERTY_DUTY_CYCLE_SP, sp);
 	}
 	
 	/**
@@ -304,8 +302,7 @@ public class DCMotor extends Device{
 	 * @throws EV3LibraryException If I/O goes wrong
 	 */
 	public int getRamp_Up_SP() throws EV3LibraryException{
-		String str = this.getAttribute(SYSFS_PROPERTY_RAMP_UP_SP);
-		return Integer.parseInt(str);
+		return this.getIntAttribute(SYSFS_PROPERTY_RAMP_UP_SP);
 	}
 	
 	/**
@@ -318,7 +315,7 @@ public class DCMotor extends Device{
 	 * @throws EV3LibraryException If I/O goes wrong
 	 */
 	public void setRamp_Up_SP(int ramp_up_sp) throws EV3LibraryException{
-		this.setAttribute(SYSFS_PROPERTY_RAMP_UP_SP, Integer.toString(ramp_up_sp));
+		this.setIntAttribute(SYSFS_PROPERTY_RAMP_UP_SP, ramp_up_sp);
 	}
 	
 	/**
@@ -330,8 +327,7 @@ public class DCMotor extends Device{
 	 * @throws EV3LibraryException If I/O goes wrong
 	 */
 	public int getRamp_Down_SP() throws EV3LibraryException{
-		String str = this.getAttribute(SYSFS_PROPERTY_RAMP_DOWN_SP);
-		return Integer.parseInt(str);
+		return this.getIntAttribute(SYSFS_PROPERTY_RAMP_DOWN_SP);
 	}
 	
 	/**
@@ -343,7 +339,7 @@ public class DCMotor extends Device{
 	 * @throws EV3LibraryException If I/O goes wrong
 	 */
 	public void setRamp_Down_SP(int ramp_down_sp) throws EV3LibraryException{
-		this.setAttribute(SYSFS_PROPERTY_RAMP_DOWN_SP, Integer.toString(ramp_down_sp));
+		this.setIntAttribute(SYSFS_PROPERTY_RAMP_DOWN_SP, ramp_down_sp);
 	}
 	
 	/**
@@ -434,8 +430,7 @@ public class DCMotor extends Device{
 	 * @throws EV3LibraryException If I/O goes wrong
 	 */
 	public int getTime_SP() throws EV3LibraryException{
-		String str = this.getAttribute(SYSFS_PROPERTY_TIME_SP);
-		return Integer.parseInt(str);
+		return this.getIntAttribute(SYSFS_PROPERTY_TIME_SP);
 	}
 	
 	/**
@@ -444,6 +439,6 @@ public class DCMotor extends Device{
 	 * @throws EV3LibraryException If I/O goes wrong
 	 */
 	public void setTime_SP(int time_sp) throws EV3LibraryException{
-		this.setAttribute(SYSFS_PROPERTY_TIME_SP, Integer.toString(time_sp));
+		this.setIntAttribute(SYSFS_PROPERTY_TIME_SP, time_sp);
 	}
 }
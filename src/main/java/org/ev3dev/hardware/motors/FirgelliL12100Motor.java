@@ -93,8 +93,7 @@ public class FirgelliL12100Motor extends Motor {
 		if (!this.isConnected()){
 			return -1;
 		}
-		String countpermetre = this.getAttribute(SYSFS_PROPERTY_COUNT_PER_M);
-		return Integer.parseInt(countpermetre);
+		return this.getIntAttribute(SYSFS_PROPERTY_COUNT_PER_M);
 	}
 	
 	/**
@@ -109,8 +108,7 @@ public class FirgelliL12100Motor extends Motor {
 		if (!this.isConnected()){
 			return -1;
 		}
-		String str = this.getAttribute(SYSFS_PROPERTY_FULL_TRAVEL_COUNT);
-		return Integer.parseInt(str);
+		return this.getIntAttribute(SYSFS_PROPERTY_FULL_TRAVEL_COUNT);
 	}
 
 }
@@ -387,8 +387,7 @@ public class Motor extends Device{
 		if (!this.isConnected()){
 			return -1;
 		}
-		String countperrot = this.getAttribute(SYSFS_PROPERTY_COUNT_PER_ROT);
-		return Integer.parseInt(countperrot);
+		return this.getIntAttribute(SYSFS_PROPERTY_COUNT_PER_ROT);
 	}
 	
 	//getCountPerM() Linear Motor (Just for mark down)
@@ -415,8 +414,7 @@ public class Motor extends Device{
 		if (!this.isConnected()){
 			return -1;
 		}
-		String dutycycle = this.getAttribute(SYSFS_PROPERTY_DUTY_CYCLE);
-		return Integer.parseInt(dutycycle);
+		return this.getIntAttribute(SYSFS_PROPERTY_DUTY_CYCLE);
 	}
 	
 	/**
@@ -430,8 +428,7 @@ public class Motor extends Device{
 		if (!this.isConnected()){
 			return -1;
 		}
-		String dutycyclesp = this.getAttribute(SYSFS_PROPERTY_DUTY_CYCLE_SP);
-		return Integer.parseInt(dutycyclesp);
+		return this.getIntAttribute(SYSFS_PROPERTY_DUTY_CYCLE_SP);
 	}
 	
 	/**
@@ -445,7 +442,7 @@ public class Motor extends Device{
 		if (!this.isConnected()){
 			return;
 		}
-		this.setAttribute(SYSFS_PROPERTY_DUTY_CYCLE_SP, Integer.toString(sp));
+		this.setIntAttribute(SYSFS_PROPERTY_DUTY_CYCLE_SP, sp);
 	}
 	
 	//getFullTravelCount() Linear Motor Only (Mark down)
@@ -486,8 +483,7 @@ public class Motor extends Device{
 		if (!this.isConnected()){
 			return -1;
 		}
-		String str = this.getAttribute("position_p");
-		return Integer.parseInt(str);
+		return this.getIntAttribute(SYSFS_PROPERTY_POSITION);
 	}
 	
 	/**
@@ -500,7 +496,7 @@ public class Motor extends Device{
 		if (!this.isConnected()){
 			return;
 		}
-		this.setAttribute(SYSFS_PROPERTY_POSITION, Integer.toString(position));
+		this.setIntAttribute(SYSFS_PROPERTY_POSITION, position);
 	}
 	
 	/**
@@ -512,8 +508,7 @@ public class Motor extends Device{
 		if (!this.isConnected()){
 			return -1;
 		}
-		String str = this.getAttribute(SYSFS_PROPERTY_POSITION_P);
-		return Integer.parseInt(str);
+		return this.getIntAttribute(SYSFS_PROPERTY_POSITION_P);
 	}
 	
 	/**
@@ -525,8 +520,7 @@ public class Motor extends Device{
 		if (!this.isConnected()){
 			return -1;
 		}
-		String str = this.getAttribute(SYSFS_PROPERTY_POSITION_I);
-		return Integer.parseInt(str);
+		return this.getIntAttribute(SYSFS_PROPERTY_POSITION_I);
 	}
 	
 	/**
@@ -538,8 +532,7 @@ public class Motor extends Device{
 		if (!this.isConnected()){
 			return -1;
 		}
-		String str = this.getAttribute(SYSFS_PROPERTY_POSITION_D);
-		return Integer.parseInt(str);
+		return this.getIntAttribute(SYSFS_PROPERTY_POSITION_D);
 	}
 	
 	/**
@@ -551,7 +544,7 @@ public class Motor extends Device{
 		if (!this.isConnected()){
 			return;
 		}
-		this.setAttribute(SYSFS_PROPERTY_POSITION_P, Integer.toString(position_p));
+		this.setIntAttribute(SYSFS_PROPERTY_POSITION_P, position_p);
 	}
 	
 	/**
@@ -563,7 +556,7 @@ public class Motor extends Device{
 		if (!this.isConnected()){
 			return;
 		}
-		this.setAttribute(SYSFS_PROPERTY_POSITION_I, Integer.toString(position_i));
+		this.setIntAttribute(SYSFS_PROPERTY_POSITION_I, position_i);
 	}
 	
 	/**
@@ -575,7 +568,7 @@ public class Motor extends Device{
 		if (!this.isConnected()){
 			return;
 		}
-		this.setAttribute(SYSFS_PROPERTY_POSITION_D, Integer.toString(position_d));
+		this.setIntAttribute(SYSFS_PROPERTY_POSITION_D, position_d);
 	}
 	
 	/**
@@ -588,8 +581,7 @@ public class Motor extends Device{
 		if (!this.isConnected()){
 			return -1;
 		}
-		String str = this.getAttribute(SYSFS_PROPERTY_POSITION_SP);
-		return Integer.parseInt(str);
+		return this.getIntAttribute(SYSFS_PROPERTY_POSITION_SP);
 	}
 
 	/**
@@ -602,7 +594,7 @@ public class Motor extends Device{
 		if (!this.isConnected()){
 			return;
 		}
-		this.setAttribute(SYSFS_PROPERTY_POSITION_SP, Integer.toString(position_sp));
+		this.setIntAttribute(SYSFS_PROPERTY_POSITION_SP, position_sp);
 	}
 	
 	/**
@@ -615,8 +607,7 @@ public class Motor extends Device{
 		if (!this.isConnected()){
 			return -1;
 		}
-		String str = this.getAttribute(SYSFS_PROPERTY_SPEED);
-		return Integer.parseInt(str);
+		return this.getIntAttribute(SYSFS_PROPERTY_SPEED);
 	}
 	
 	/**
@@ -629,8 +620,7 @@ public class Motor extends Device{
 		if (!this.isConnected()){
 			return -1;
 		}
-		String str = this.getAttribute(SYSFS_PROPERTY_SPEED);
-		return Integer.parseInt(str);
+		return this.getIntAttribute(SYSFS_PROPERTY_SPEED_SP);
 	}
 	
 	/**
@@ -643,7 +633,7 @@ public class Motor extends Device{
 		if (!this.isConnected()){
 			return;
 		}
-		this.setAttribute(SYSFS_PROPERTY_SPEED_SP, Integer.toString(speed_sp));
+		this.setIntAttribute(SYSFS_PROPERTY_SPEED_SP, speed_sp);
 	}
 	
 	/**
@@ -659,8 +649,7 @@ public class Motor extends Device{
 		if (!this.isConnected()){
 			return -1;
 		}
-		String str = this.getAttribute(SYSFS_PROPERTY_RAMP_UP_SP);
-		return Integer.parseInt(str);
+		return this.getIntAttribute(SYSFS_PROPERTY_RAMP_UP_SP);
 	}
 	
 	/**
@@ -676,7 +665,7 @@ public class Motor extends Device{
 		if (!this.isConnected()){
 			return;
 		}
-		this.setAttribute(SYSFS_PROPERTY_RAMP_UP_SP, Integer.toString(ramp_up_sp));
+		this.setIntAttribute(SYSFS_PROPERTY_RAMP_UP_SP, ramp_up_sp);
 	}
 	
 	/**
@@ -691,8 +680,7 @@ public class Motor extends Device{
 		if (!this.isConnected()){
 			return -1;
 		}
-		String str = this.getAttribute(SYSFS_PROPERTY_RAMP_DOWN_SP);
-		return Integer.parseInt(str);
+		return this.getIntAttribute(SYSFS_PROPERTY_RAMP_DOWN_SP);
 	}
 	
 	/**
@@ -707,7 +695,7 @@ public class Motor extends Device{
 		if (!this.isConnected()){
 			return;
 		}
-		this.setAttribute(SYSFS_PROPERTY_RAMP_DOWN_SP, Integer.toString(ramp_down_sp));
+		this.setIntAttribute(SYSFS_PROPERTY_RAMP_DOWN_SP, ramp_down_sp);
 	}
 	
 	/**
@@ -819,8 +807,7 @@ public class Motor extends Device{
 		if (!this.isConnected()){
 			return -1;
 		}
-		String str = this.getAttribute(SYSFS_PROPERTY_TIME_SP);
-		return Integer.parseInt(str);
+		return this.getIntAttribute(SYSFS_PROPERTY_TIME_SP);
 	}
 	
 	/**
@@ -832,7 +819,7 @@ public class Motor extends Device{
 		if (!this.isConnected()){
 			return;
 		}
-		this.setAttribute(SYSFS_PROPERTY_TIME_SP, Integer.toString(time_sp));
+		this.setIntAttribute(SYSFS_PROPERTY_TIME_SP, time_sp);
 	}
 	
 }
\ No newline at end of file
@@ -0,0 +1,361 @@
+/*******************************************************************************
+ * Any modification, copies of sections of this file must be attached with this
+ * license and shown clearly in the developer's project. The code can be used
+ * as long as you state clearly you do not own it. Any violation might result in
+ *  a take-down.
+ *
+ * MIT License
+ *
+ * Copyright (c) 2016, 2017 Anthony Law
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *******************************************************************************/
+package org.ev3dev.hardware.motors;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+
+import org.ev3dev.exception.EV3LibraryException;
+import org.ev3dev.io.AttributeHandle;
+
+/**
+ * Controls a group of motors (e.g. the two <code>LargeMotor</code>s of a tank chassis) together. Setpoints are staged
+ *  for every motor first, and the <b>command</b> of all the motors is then written in a tight burst on pre-opened
+ *  descriptors, with pre-encoded command bytes, so the motors start as close together as possible.<br>
+ * <br>
+ * The time between the first and the last <b>command</b> write of the latest burst is exposed as the dispatch skew.
+ * <pre>
+ * MotorGroup tank = new MotorGroup(leftMotor, rightMotor);
+ * tank.setSpeed_SP(500);
+ * tank.runForever();
+ * long skew = tank.getDispatchSkewMicros();
+ * </pre>
+ * @author Anthony
+ *
+ */
+public class MotorGroup {
+	
+	private static final String[] SETPOINT_PROPERTIES = {
+			Motor.SYSFS_PROPERTY_SPEED_SP,
+			Motor.SYSFS_PROPERTY_DUTY_CYCLE_SP,
+			Motor.SYSFS_PROPERTY_POSITION_SP,
+			Motor.SYSFS_PROPERTY_TIME_SP
+	};
+	
+	private static final int SPEED_SP = 0;
+	
+	private static final int DUTY_CYCLE_SP = 1;
+	
+	private static final int POSITION_SP = 2;
+	
+	private static final int TIME_SP = 3;
+	
+	private final Motor[] motors;
+	
+	private final AttributeHandle[] commandHandles;
+	
+	private final int[][] setpoints;
+	
+	private final boolean[][] staged;
+	
+	private final long[] dispatchTimes;
+	
+	private final HashMap<String, ByteBuffer> encodedCommands = new HashMap<String, ByteBuffer>();
+	
+	private long dispatchSkew = 0;
+	
+	private long maxDispatchSkew = 0;
+	
+	/**
+	 * Creates a new motor group. The <b>command</b> attributes of the motors are opened in advance.
+	 * @param motors The motors of this group
+	 * @throws EV3LibraryException If I/O goes wrong
+	 */
+	public MotorGroup(Motor... motors) throws EV3LibraryException{
+		if (motors.length == 0){
+			throw new IllegalArgumentException("A motor group must have at least one motor");
+		}
+		this.motors = motors.clone();
+		this.commandHandles = new AttributeHandle[motors.length];
+		this.setpoints = new int[SETPOINT_PROPERTIES.length][motors.length];
+		this.staged = new boolean[SETPOINT_PROPERTIES.length][motors.length];
+		this.dispatchTimes = new long[motors.length];
+		
+		encodeCommand(Motor.SYSFS_COMMAND_RUN_FOREVER);
+		encodeCommand(Motor.SYSFS_COMMAND_RUN_TO_ABS_POS);
+		encodeCommand(Motor.SYSFS_COMMAND_RUN_TO_REL_POS);
+		encodeCommand(Motor.SYSFS_COMMAND_RUN_TIMED);
+		encodeCommand(Motor.SYSFS_COMMAND_RUN_DIRECT);
+		encodeCommand(Motor.SYSFS_COMMAND_STOP);
+		encodeCommand(Motor.SYSFS_COMMAND_RESET);
+		
+		try {
+			prepareCommandHandles();
+		} catch (IOException e){
+			throw new EV3LibraryException("Open motor group command attributes failed", e);
+		}
+	}
+	
+	private ByteBuffer encodeCommand(String command){
+		ByteBuffer encoded = encodedCommands.get(command);
+		if (encoded == null){
+			byte[] data = command.getBytes();
+			encoded = ByteBuffer.allocateDirect(data.length);
+			encoded.put(data);
+			encoded.flip();
+			encodedCommands.put(command, encoded);
+		}
+		return encoded;
+	}
+	
+	private void prepareCommandHandles() throws IOException{
+		for (int i = 0; i < motors.length; i++){
+			if (!motors[i].isConnected()){
+				commandHandles[i] = null;
+				continue;
+			}
+			AttributeHandle handle = motors[i].getAttributeHandle(Motor.SYSFS_PROPERTY_COMMAND);
+			handle.openForWrite();
+			commandHandles[i] = handle;
+		}
+	}
+	
+	/**
+	 * Returns the number of motors in this group
+	 * @return The number of motors
+	 */
+	public int size(){
+		return motors.length;
+	}
+	
+	/**
+	 * Returns the motor at the specified index
+	 * @param index The index of the motor
+	 * @return The motor
+	 */
+	public Motor getMotor(int index){
+		return motors[index];
+	}
+	
+	private synchronized void stage(int setpoint, int value){
+		for (int i = 0; i < motors.length; i++){
+			setpoints[setpoint][i] = value;
+			staged[setpoint][i] = true;
+		}
+	}
+	
+	private synchronized void stage(int setpoint, int index, int value){
+		setpoints[setpoint][index] = value;
+		staged[setpoint][index] = true;
+	}
+	
+	/**
+	 * Stages the speed setpoint of all the motors. It is written on the next command.
+	 * @param speed_sp The speed setpoint
+	 */
+	public void setSpeed_SP(int speed_sp){
+		stage(SPEED_SP, speed_sp);
+	}
+	
+	/**
+	 * Stages the speed setpoint of the motor at the specified index. It is written on the next command.
+	 * @param index The index of the motor
+	 * @param speed_sp The speed setpoint
+	 */
+	public void setSpeed_SP(int index, int speed_sp){
+		stage(SPEED_SP, index, speed_sp);
+	}
+	
+	/**
+	 * Stages the duty cycle setpoint of all the motors. It is written on the next command.
+	 * @param sp The duty cycle setpoint
+	 */
+	public void setDutyCycleSP(int sp){
+		stage(DUTY_CYCLE_SP, sp);
+	}
+	
+	/**
+	 * Stages the duty cycle setpoint of the motor at the specified index. It is written on the next command.
+	 * @param index The index of the motor
+	 * @param sp The duty cycle setpoint
+	 */
+	public void setDutyCycleSP(int index, int sp){
+		stage(DUTY_CYCLE_SP, index, sp);
+	}
+	
+	/**
+	 * Stages the position setpoint of all the motors. It is written on the next command.
+	 * @param position_sp The position setpoint
+	 */
+	public void setPosition_SP(int position_sp){
+		stage(POSITION_SP, position_sp);
+	}
+	
+	/**
+	 * Stages the position setpoint of the motor at the specified index. It is written on the next command.
+	 * @param index The index of the motor
+	 * @param position_sp The position setpoint
+	 */
+	public void setPosition_SP(int index, int position_sp){
+		stage(POSITION_SP, index, position_sp);
+	}
+	
+	/**
+	 * Stages the time setpoint of all the motors. It is written on the next command.
+	 * @param time_sp The time setpoint in milliseconds
+	 */
+	public void setTime_SP(int time_sp){
+		stage(TIME_SP, time_sp);
+	}
+	
+	/**
+	 * Stages the time setpoint of the motor at the specified index. It is written on the next command.
+	 * @param index The index of the motor
+	 * @param time_sp The time setpoint in milliseconds
+	 */
+	public void setTime_SP(int index, int time_sp){
+		stage(TIME_SP, index, time_sp);
+	}
+	
+	/**
+	 * Writes the staged setpoints of all the motors, then writes the command to all the motors in a tight burst.
+	 * Motors that are not connected are skipped.
+	 * @param command Command that suits for the motor driver
+	 * @throws EV3LibraryException If I/O goes wrong
+	 */
+	public synchronized void sendCommand(String command) throws EV3LibraryException{
+		ByteBuffer encoded = encodeCommand(command);
+		try {
+			for (int sp = 0; sp < SETPOINT_PROPERTIES.length; sp++){
+				for (int i = 0; i < motors.length; i++){
+					if (staged[sp][i] && motors[i].isConnected()){
+						motors[i].getAttributeHandle(SETPOINT_PROPERTIES[sp]).writeInt(setpoints[sp][i]);
+						staged[sp][i] = false;
+					}
+				}
+			}
+			prepareCommandHandles();
+			
+			int first = -1;
+			int last = -1;
+			for (int i = 0; i < motors.length; i++){
+				AttributeHandle handle = commandHandles[i];
+				if (handle == null){
+					continue;
+				}
+				encoded.rewind();
+				handle.write(encoded);
+				dispatchTimes[i] = System.nanoTime();
+				if (first == -1){
+					first = i;
+				}
+				last = i;
+			}
+			if (first != -1){
+				dispatchSkew = dispatchTimes[last] - dispatchTimes[first];
+				if (dispatchSkew > maxDispatchSkew){
+					maxDispatchSkew = dispatchSkew;
+				}
+			}
+		} catch (IOException e){
+			throw new EV3LibraryException("Send motor group command failed: " + command, e);
+		}
+	}
+	
+	/***
+	 * Cause all the motors to run until another command is sent
+	 * @throws EV3LibraryException If I/O goes wrong
+	 */
+	public void runForever() throws EV3LibraryException{
+		sendCommand(Motor.SYSFS_COMMAND_RUN_FOREVER);
+	}
+	
+	/***
+	 * Run all the motors to an absolute position specified by <b>position_sp</b>
+	 * @throws EV3LibraryException If I/O goes wrong
+	 */
+	public void runToAbsPos() throws EV3LibraryException{
+		sendCommand(Motor.SYSFS_COMMAND_RUN_TO_ABS_POS);
+	}
+	
+	/***
+	 * Run all the motors to a position relative to their current position
+	 * @throws EV3LibraryException If I/O goes wrong
+	 */
+	public void runToRelPos() throws EV3LibraryException{
+		sendCommand(Motor.SYSFS_COMMAND_RUN_TO_REL_POS);
+	}
+	
+	/***
+	 * Run all the motors for the amount of time specified in <b>time_sp</b>
+	 * @throws EV3LibraryException If I/O goes wrong
+	 */
+	public void runTimed() throws EV3LibraryException{
+		sendCommand(Motor.SYSFS_COMMAND_RUN_TIMED);
+	}
+	
+	/***
+	 * Run all the motors at the duty cycle specified by <b>duty_cycle_sp</b>
+	 * @throws EV3LibraryException If I/O goes wrong
+	 */
+	public void runDirect() throws EV3LibraryException{
+		sendCommand(Motor.SYSFS_COMMAND_RUN_DIRECT);
+	}
+	
+	/**
+	 * Stop all the motors using the command specified by <b>stop_command</b>
+	 * @throws EV3LibraryException If I/O goes wrong
+	 */
+	public void stop() throws EV3LibraryException{
+		sendCommand(Motor.SYSFS_COMMAND_STOP);
+	}
+	
+	/**
+	 * Reset all of the motor parameter attributes of all the motors to their default value
+	 * @throws EV3LibraryException If I/O goes wrong
+	 */
+	public void reset() throws EV3LibraryException{
+		sendCommand(Motor.SYSFS_COMMAND_RESET);
+	}
+	
+	/**
+	 * Returns the time between the first and the last <b>command</b> write of the latest command, in microseconds.
+	 * @return The dispatch skew in microseconds
+	 */
+	public synchronized long getDispatchSkewMicros(){
+		return dispatchSkew / 1000;
+	}
+	
+	/**
+	 * Returns the largest dispatch skew observed by this group, in microseconds.
+	 * @return The maximum dispatch skew in microseconds
+	 */
+	public synchronized long getMaxDispatchSkewMicros(){
+		return maxDispatchSkew / 1000;
+	}
+	
+	/**
+	 * Resets the maximum dispatch skew
+	 */
+	public synchronized void resetDispatchSkew(){
+		dispatchSkew = 0;
+		maxDispatchSkew = 0;
+	}
+}
@@ -192,8 +192,7 @@ public class ServoMotor extends Device{
 	 * @throws EV3LibraryException If I/O goes wrong
 	 */
 	public int getMaxPulse_SP() throws EV3LibraryException{
-		String str = this.getAttribute(SYSFS_PROPERTY_MAX_PULSE_SP);
-		return Integer.parseInt(str);
+		return this.getIntAttribute(SYSFS_PROPERTY_MAX_PULSE_SP);
 	}
 	
 	/**
@@ -203,7 +202,7 @@ public class ServoMotor extends Device{
 	 * @throws EV3LibraryException If I/O goes wrong
 	 */
 	public void setMaxPulse_SP(int max_pulse_sp) throws EV3LibraryException{
-		this.setAttribute(SYSFS_PROPERTY_MAX_PULSE_SP, Integer.toString(max_pulse_sp));
+		this.setIntAttribute(SYSFS_PROPERTY_MAX_PULSE_SP, max_pulse_sp);
 	}
 	
 	/**
@@ -215,8 +214,7 @@ public class ServoMotor extends Device{
 	 * @throws EV3LibraryException If I/O goes wrong
 	 */
 	public int getMidPulse_SP() throws EV3LibraryException{
-		String str = this.getAttribute(SYSFS_PROPERTY_MID_PULSE_SP);
-		return Integer.parseInt(str);
+		return this.getIntAttribute(SYSFS_PROPERTY_MID_PULSE_SP);
 	}
 	
 	/**
@@ -228,7 +226,7 @@ public class ServoMotor extends Device{
 	 * @throws EV3LibraryException If I/O goes wrong
 	 */
 	public void setMidPulse_SP(int mid_pulse_sp) throws EV3LibraryException{
-		this.setAttribute(SYSFS_PROPERTY_MID_PULSE_SP, Integer.toString(mid_pulse_sp));
+		this.setIntAttribute(SYSFS_PROPERTY_MID_PULSE_SP, mid_pulse_sp);
 	}
 	
 	/**
@@ -239,8 +237,7 @@ public class ServoMotor extends Device{
 	 * @throws EV3LibraryException If I/O goes wrong
 	 */
 	public int getMinPulse_SP() throws EV3LibraryException{
-		String str = this.getAttribute(SYSFS_PROPERTY_MIN_PULSE_SP);
-		return Integer.parseInt(str);
+		return this.getIntAttribute(SYSFS_PROPERTY_MIN_PULSE_SP);
 	}
 	
 	/**
@@ -251,7 +248,7 @@ public class ServoMotor extends Device{
 	 * @throws EV3LibraryException If I/O goes wrong
 	 */
 	public void setMinPulse_SP(int min_pulse_sp) throws EV3LibraryException{
-		this.setAttribute(SYSFS_PROPERTY_MIN_PULSE_SP, Integer.toString(min_pulse_sp));
+		this.setIntAttribute(SYSFS_PROPERTY_MIN_PULSE_SP, min_pulse_sp);
 	}
 	
 	/**
@@ -282,8 +279,7 @@ public class ServoMotor extends Device{
 	 * @throws EV3LibraryException If I/O goes wrong
 	 */
 	public int getPosition_SP() throws EV3LibraryException{
-		String str = this.getAttribute(SYSFS_PROPERTY_POSITION_SP);
-		return Integer.parseInt(str);
+		return this.getIntAttribute(SYSFS_PROPERTY_POSITION_SP);
 	}
 
 	/**
@@ -294,7 +290,7 @@ public class ServoMotor extends Device{
 	 * @throws EV3LibraryException If I/O goes wrong
 	 */
 	public void setPosition_SP(int position_sp) throws EV3LibraryException{
-		this.setAttribute(SYSFS_PROPERTY_POSITION_SP, Integer.toString(position_sp));
+		this.setIntAttribute(SYSFS_PROPERTY_POSITION_SP, position_sp);
 	}
 	
 	/**
@@ -307,7 +303,7 @@ public class ServoMotor extends Device{
 	 * @throws EV3LibraryException If I/O goes wrong
 	 */
 	public void setRate_SP(int rate_sp) throws EV3LibraryException{
-		this.setAttribute(SYSFS_PROPERTY_RATE_SP, Integer.toString(rate_sp));
+		this.setIntAttribute(SYSFS_PROPERTY_RATE_SP, rate_sp);
 	}
 	
 	/**
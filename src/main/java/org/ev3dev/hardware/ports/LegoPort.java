@@ -29,9 +29,12 @@
 package org.ev3dev.hardware.ports;
 
 import java.io.IOException;
+import java.util.HashMap;
 
 import org.ev3dev.exception.EV3LibraryException;
 import org.ev3dev.exception.InvalidPortException;
+import org.ev3dev.hardware.DeviceEvents;
+import org.ev3dev.io.AttributeHandle;
 import org.ev3dev.io.Sysfs;
 
 /***
@@ -58,6 +61,8 @@ public class LegoPort{
 	
 	private int port = 0;
 	
+	private final HashMap<String, AttributeHandle> attributeHandles = new HashMap<String, AttributeHandle>();
+	
 	/**
 	 * The sysfs class name of LegoPort
 	 */
@@ -115,6 +120,32 @@ public class LegoPort{
 			throw new InvalidPortException("Port is higher than " + OUTPUT_D + ", Port: " + port);
 		}
 		this.port = port;
+		DeviceEvents.register(this);
+	}
+	
+	/**
+	 * Returns the Sysfs node name of this port (e.g. port0)
+	 * @return The node name inside <code>/sys/class/lego-port</code>
+	 */
+	public String getNodeName(){
+		return "port" + port;
+	}
+	
+	/***
+	 * Returns the resolved handle of the port property specified. The handle is created once per property and
+	 * reused by every later read/write.
+	 * @param property The property name
+	 * @return The attribute handle of the property
+	 */
+	public final AttributeHandle getAttributeHandle(String property){
+		synchronized (attributeHandles){
+			AttributeHandle handle = attributeHandles.get(property);
+			if (handle == null){
+				handle = Sysfs.getAttributeHandle(CLASS_NAME, getNodeName(), property);
+				attributeHandles.put(property, handle);
+			}
+			return handle;
+		}
 	}
 	
 	/**
@@ -125,7 +156,7 @@ public class LegoPort{
 	public String getAddress() throws EV3LibraryException{
 		String address;
 		try {
-			address = Sysfs.getAttribute(CLASS_NAME, "port" + port, "address");
+			address = getAttributeHandle("address").readString();
 		} catch (IOException e) {
 			throw new EV3LibraryException("Get address attribute failed", e);
 		}
@@ -140,7 +171,7 @@ public class LegoPort{
 	public String getDriverName() throws EV3LibraryException{
 		String drivername;
 		try {
-			drivername = Sysfs.getAttribute(CLASS_NAME, "port" + port, "driver_name");
+			drivername = getAttributeHandle("driver_name").readString();
 		} catch (IOException e) {
 			throw new EV3LibraryException("Get driver name attribute failed", e);
 		}
@@ -155,7 +186,7 @@ public class LegoPort{
 	public String[] getModes() throws EV3LibraryException{
 		String modesstr;
 		try {
-			modesstr = Sysfs.getAttribute(CLASS_NAME, "port" + port, "modes");
+			modesstr = getAttributeHandle("modes").readString();
 		} catch (IOException e) {
 			throw new EV3LibraryException("Get modes attribute failed", e);
 		}
@@ -173,7 +204,7 @@ public class LegoPort{
 	public String getMode() throws EV3LibraryException{
 		String mode;
 		try {
-			mode = Sysfs.getAttribute(CLASS_NAME, "port" + port, "mode");
+			mode = getAttributeHandle("mode").readString();
 		} catch (IOException e) {
 			throw new EV3LibraryException("Get mode attribute failed", e);
 		}
@@ -190,7 +221,7 @@ public class LegoPort{
 	 */
 	public void setMode(String mode) throws EV3LibraryException{
 		try {
-			Sysfs.setAttribute(CLASS_NAME, "port" + port, "mode", mode);
+			getAttributeHandle("mode").writeString(mode);
 		} catch (IOException e) {
 			throw new EV3LibraryException("Set mode attribute failed", e);
 		}
@@ -205,7 +236,7 @@ public class LegoPort{
 	 */
 	public void setDevice(String driver) throws EV3LibraryException{
 		try {
-			Sysfs.setAttribute(CLASS_NAME, "port" + port, "set_device", driver);
+			getAttributeHandle("set_device").writeString(driver);
 		} catch (IOException e) {
 			throw new EV3LibraryException("Set device attribute failed", e);
 		}
@@ -221,7 +252,7 @@ public class LegoPort{
 	public String getStatus() throws EV3LibraryException{
 		String status;
 		try {
-			status = Sysfs.getAttribute(CLASS_NAME, "port" + port, "status");
+			status = getAttributeHandle("status").readString();
 		} catch (IOException e) {
 			throw new EV3LibraryException("Get status attribute failed", e);
 		}
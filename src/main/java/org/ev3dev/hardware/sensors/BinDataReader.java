@@ -0,0 +1,280 @@
+/*******************************************************************************
+ * Any modification, copies of sections of this file must be attached with this
+ * license and shown clearly in the developer's project. The code can be used
+ * as long as you state clearly you do not own it. Any violation might result in
+ *  a take-down.
+ *
+ * MIT License
+ *
+ * Copyright (c) 2016, 2017 Anthony Law
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *******************************************************************************/
+package org.ev3dev.hardware.sensors;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import org.ev3dev.exception.EV3LibraryException;
+
+/**
+ * Reads the raw <code>bin_data</code> attribute of a sensor, and decodes it by <code>bin_data_format</code>.
+ *  All the values of the current mode are read in one binary read, with no ASCII parsing, and from the same
+ *  sensor refresh cycle.<br>
+ * <br>
+ * A reader is obtained by <code>Sensor.getBinDataReader()</code>. Sensors that opted into it by
+ *  <code>Sensor.setBinDataEnabled(true)</code> use it for <code>Sensor.readValues()</code>. The data is the raw
+ *  sensor data before any scaling of the driver, so it only matches <code>value[N]</code> for drivers that do not
+ *  scale the values.
+ * @author Anthony
+ *
+ */
+public final class BinDataReader {
+	
+	/**
+	 * The maximum size of the <code>bin_data</code> attribute
+	 */
+	public static final int MAX_BIN_DATA_SIZE = 32;
+	
+	/**
+	 * The formats of the <code>bin_data</code> attribute
+	 * @author Anthony
+	 *
+	 */
+	public static enum Format {
+		/**
+		 * Unsigned 8-bit integer
+		 */
+		U8("u8", 1),
+		
+		/**
+		 * Signed 8-bit integer
+		 */
+		S8("s8", 1),
+		
+		/**
+		 * Unsigned 16-bit integer (little-endian)
+		 */
+		U16("u16", 2),
+		
+		/**
+		 * Signed 16-bit integer (little-endian)
+		 */
+		S16("s16", 2),
+		
+		/**
+		 * Signed 16-bit integer (big-endian)
+		 */
+		S16_BE("s16_be", 2),
+		
+		/**
+		 * Signed 32-bit integer (little-endian)
+		 */
+		S32("s32", 4),
+		
+		/**
+		 * IEEE 754 32-bit floating point (little-endian)
+		 */
+		FLOAT("float", 4);
+		
+		private final String sysfsName;
+		
+		private final int size;
+		
+		private Format(String sysfsName, int size){
+			this.sysfsName = sysfsName;
+			this.size = size;
+		}
+		
+		/**
+		 * Returns the name of this format in <code>bin_data_format</code>
+		 * @return The format name (e.g. s16)
+		 */
+		public String getSysfsName(){
+			return sysfsName;
+		}
+		
+		/**
+		 * Returns the size of a value of this format
+		 * @return The size in bytes
+		 */
+		public int getSize(){
+			return size;
+		}
+		
+		/**
+		 * Returns the format of the <code>bin_data_format</code> name specified
+		 * @param name The format name (e.g. s16)
+		 * @return The format, or null if it is unknown
+		 */
+		public static Format fromSysfsName(String name){
+			for (Format format : values()){
+				if (format.sysfsName.equals(name)){
+					return format;
+				}
+			}
+			return null;
+		}
+	}
+	
+	private final Sensor sensor;
+	
+	private final ByteBuffer buffer = ByteBuffer.allocateDirect(MAX_BIN_DATA_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+	
+	private Format format = null;
+	
+	private boolean formatRead = false;
+	
+	BinDataReader(Sensor sensor){
+		this.sensor = sensor;
+	}
+	
+	/**
+	 * Returns the <code>bin_data_format</code> of the current mode. It is read once, until the mode changes.
+	 * @return The format, or null if the driver does not expose a known format
+	 * @throws EV3LibraryException If I/O goes wrong
+	 */
+	public synchronized Format getFormat() throws EV3LibraryException{
+		if (!formatRead){
+			String name;
+			try {
+				name = sensor.getAttribute(Sensor.SYSFS_PROPERTY_BIN_DATA_FORMAT);
+			} catch (EV3LibraryException e){
+				name = null;
+			}
+			format = name == null ? null : Format.fromSysfsName(name);
+			formatRead = true;
+		}
+		return format;
+	}
+	
+	/**
+	 * Returns whether the driver exposes <code>bin_data</code> in a known format in the current mode
+	 * @return Whether <code>bin_data</code> can be decoded
+	 * @throws EV3LibraryException If I/O goes wrong
+	 */
+	public boolean isSupported() throws EV3LibraryException{
+		return getFormat() != null;
+	}
+	
+	/**
+	 * Reads <code>bin_data</code> into the reused little-endian buffer of this reader.
+	 * @return The reused buffer, flipped and ready to be read. It is only valid until the next read.
+	 * @throws EV3LibraryException If I/O goes wrong
+	 */
+	public synchronized ByteBuffer read() throws EV3LibraryException{
+		buffer.clear();
+		try {
+			sensor.getAttributeHandle(Sensor.SYSFS_PROPERTY_BIN_DATA).readBytes(buffer);
+		} catch (IOException e){
+			throw new EV3LibraryException("Read sensor bin_data failed", e);
+		}
+		buffer.flip();
+		return buffer;
+	}
+	
+	/**
+	 * Reads and decodes the values of the current mode into the array specified. The values are the raw sensor data
+	 *  (not divided by 10 ^ decimals). Drivers that scale or offset the data report different <code>value[N]</code>.
+	 *  <code>FLOAT</code> values are truncated.
+	 * @param dest The destination array. If it is shorter than <code>num_values</code>, only the first values are decoded.
+	 * @return The number of values decoded
+	 * @throws EV3LibraryException If I/O goes wrong, or the format is not supported
+	 */
+	public synchronized int read(int[] dest) throws EV3LibraryException{
+		Format f = requireFormat();
+		int n = decodableValues(f, dest.length);
+		for (int i = 0; i < n; i++){
+			dest[i] = decodeInt(f, i);
+		}
+		return n;
+	}
+	
+	/**
+	 * Reads and decodes one value of the current mode. This is the raw sensor data, which is not
+	 *  <code>value[N]</code> if the driver scales or offsets it.
+	 * @param index The value index
+	 * @return The raw value
+	 * @throws EV3LibraryException If I/O goes wrong, or the format is not supported
+	 */
+	public synchronized int readValue(int index) throws EV3LibraryException{
+		Format f = requireFormat();
+		if (index >= decodableValues(f, index + 1)){
+			throw new IndexOutOfBoundsException("Value index out of range: " + index);
+		}
+		return decodeInt(f, index);
+	}
+	
+	/**
+	 * Reads and decodes the values of the current mode into the array specified. Integer formats are converted to
+	 *  float without dividing by 10 ^ decimals.
+	 * @param dest The destination array. If it is shorter than <code>num_values</code>, only the first values are decoded.
+	 * @return The number of values decoded
+	 * @throws EV3LibraryException If I/O goes wrong, or the format is not supported
+	 */
+	public synchronized int read(float[] dest) throws EV3LibraryException{
+		Format f = requireFormat();
+		int n = decodableValues(f, dest.length);
+		for (int i = 0; i < n; i++){
+			dest[i] = f == Format.FLOAT ? buffer.getFloat(i * 4) : decodeInt(f, i);
+		}
+		return n;
+	}
+	
+	private Format requireFormat() throws EV3LibraryException{
+		Format f = getFormat();
+		if (f == null){
+			throw new EV3LibraryException("The sensor does not expose bin_data in a known format");
+		}
+		return f;
+	}
+	
+	private int decodableValues(Format f, int length){
+		int n = Math.min(sensor.getCachedNumValues(), length);
+		read();
+		return Math.min(n, buffer.remaining() / f.size);
+	}
+	
+	private int decodeInt(Format f, int index){
+		switch (f){
+		case U8:
+			return buffer.get(index) & 0xff;
+		case S8:
+			return buffer.get(index);
+		case U16:
+			return buffer.getShort(index * 2) & 0xffff;
+		case S16:
+			return buffer.getShort(index * 2);
+		case S16_BE:
+			return Short.reverseBytes(buffer.getShort(index * 2));
+		case S32:
+			return buffer.getInt(index * 4);
+		case FLOAT:
+			return (int) buffer.getFloat(index * 4);
+		default:
+			throw new IllegalStateException("Unknown bin_data format: " + f);
+		}
+	}
+	
+	synchronized void invalidate(){
+		formatRead = false;
+		format = null;
+	}
+}
@@ -120,15 +120,8 @@ public class ColorSensor extends Sensor {
 	 * @throws InvalidModeException The mode selected wasn't valid, or <b>Auto Switch Mode</b> has disabled.
 	 */
 	public int getReflectedLightIntensity() throws EV3LibraryException, InvalidModeException{
-		if (!this.getMode().equals(SYSFS_REFLECTED_LIGHT_INTENSITY_MODE)){
-			if (autoSwitchMode){
-				this.setMode(SYSFS_REFLECTED_LIGHT_INTENSITY_MODE);
-			} else {
-				throw new InvalidModeException("[Auto-switch is off] You are not using a correct mode(" + SYSFS_REFLECTED_LIGHT_INTENSITY_MODE + ")! Yours: " + this.getMode());
-			}
-		}
-		String str = this.getAttribute("value" + SYSFS_REFLECTED_LIGHT_INTENSITY_VALUE_INDEX);
-		return Integer.parseInt(str);
+		this.ensureMode(SYSFS_REFLECTED_LIGHT_INTENSITY_MODE, autoSwitchMode);
+		return this.getValue(SYSFS_REFLECTED_LIGHT_INTENSITY_VALUE_INDEX);
 	}
 	
 	/**
@@ -138,15 +131,8 @@ public class ColorSensor extends Sensor {
 	 * @throws InvalidModeException The mode selected wasn't valid, or <b>Auto Switch Mode</b> has disabled.
 	 */
 	public int getAmbientLightIntensity() throws EV3LibraryException, InvalidModeException{
-		if (!this.getMode().equals(SYSFS_AMBIENT_LIGHT_INTENSITY_MODE)){
-			if (autoSwitchMode){
-				this.setMode(SYSFS_AMBIENT_LIGHT_INTENSITY_MODE);
-			} else {
-				throw new InvalidModeException("[Auto-switch is off] You are not using a correct mode(" + SYSFS_AMBIENT_LIGHT_INTENSITY_MODE + ")! Yours: " + this.getMode());
-			}
-		}
-		String str = this.getAttribute("value" + SYSFS_AMBIENT_LIGHT_INTENSITY_VALUE_INDEX);
-		return Integer.parseInt(str);
+		this.ensureMode(SYSFS_AMBIENT_LIGHT_INTENSITY_MODE, autoSwitchMode);
+		return this.getValue(SYSFS_AMBIENT_LIGHT_INTENSITY_VALUE_INDEX);
 	}
 	
 	/**
@@ -164,15 +150,8 @@ public class ColorSensor extends Sensor {
 	 * @throws InvalidModeException The mode selected wasn't valid, or <b>Auto Switch Mode</b> has disabled.
 	 */
 	public int getColor() throws EV3LibraryException, InvalidModeException{
-		if (!this.getMode().equals(SYSFS_COLOR_MODE)){
-			if (autoSwitchMode){
-				this.setMode(SYSFS_COLOR_MODE);
-			} else {
-				throw new InvalidModeException("[Auto-switch is off] You are not using a correct mode(" + SYSFS_COLOR_MODE + ")! Yours: " + this.getMode());
-			}
-		}
-		String str = this.getAttribute("value" + SYSFS_COLOR_VALUE_INDEX);
-		return Integer.parseInt(str);
+		this.ensureMode(SYSFS_COLOR_MODE, autoSwitchMode);
+		return this.getValue(SYSFS_COLOR_VALUE_INDEX);
 	}
 	
 	/**
@@ -182,15 +161,8 @@ public class ColorSensor extends Sensor {
 	 * @throws InvalidModeException The mode selected wasn't valid, or <b>Auto Switch Mode</b> has disabled.
 	 */
 	public int getRGB_Red() throws EV3LibraryException, InvalidModeException{
-		if (!this.getMode().equals(SYSFS_RGB_MODE)){
-			if (autoSwitchMode){
-				this.setMode(SYSFS_RGB_MODE);
-			} else {
-				throw new InvalidModeException("[Auto-switch is off] You are not using a correct mode(" + SYSFS_RGB_MODE + ")! Yours: " + this.getMode());
-			}
-		}
-		String str = this.getAttribute("value" + SYSFS_RGB_R_VALUE_INDEX);
-		return Integer.parseInt(str);
+		this.ensureMode(SYSFS_RGB_MODE, autoSwitchMode);
+		return this.getValue(SYSFS_RGB_R_VALUE_INDEX);
 	}
 	
 	/**
@@ -200,15 +172,8 @@ public class ColorSensor extends Sensor {
 	 * @throws InvalidModeException The mode selected wasn't valid, or <b>Auto Switch Mode</b> has disabled.
 	 */
 	public int getRGB_Green() throws EV3LibraryException, InvalidModeException{
-		if (!this.getMode().equals(SYSFS_RGB_MODE)){
-			if (autoSwitchMode){
-				this.setMode(SYSFS_RGB_MODE);
-			} else {
-				throw new InvalidModeException("[Auto-switch is off] You are not using a correct mode(" + SYSFS_RGB_MODE + ")! Yours: " + this.getMode());
-			}
-		}
-		String str = this.getAttribute("value" + SYSFS_RGB_G_VALUE_INDEX);
-		return Integer.parseInt(str);
+		this.ensureMode(SYSFS_RGB_MODE, autoSwitchMode);
+		return this.getValue(SYSFS_RGB_G_VALUE_INDEX);
 	}
 	
 	/**
@@ -218,15 +183,23 @@ public class ColorSensor extends Sensor {
 	 * @throws InvalidModeException The mode selected wasn't valid, or <b>Auto Switch Mode</b> has disabled.
 	 */
 	public int getRGB_Blue() throws EV3LibraryException, InvalidModeException{
-		if (!this.getMode().equals(SYSFS_RGB_MODE)){
-			if (autoSwitchMode){
-				this.setMode(SYSFS_RGB_MODE);
-			} else {
-				throw new InvalidModeException("[Auto-switch is off] You are not using a correct mode(" + SYSFS_RGB_MODE + ")! Yours: " + this.getMode());
-			}
+		this.ensureMode(SYSFS_RGB_MODE, autoSwitchMode);
+		return this.getValue(SYSFS_RGB_B_VALUE_INDEX);
+	}
+	
+	/**
+	 * Reads the red, green and blue components of the detected color in one pass, in the range 0-1020
+	 * @param rgb The destination array, at least 3 long. The components are stored at
+	 *  <code>SYSFS_RGB_R_VALUE_INDEX</code>, <code>SYSFS_RGB_G_VALUE_INDEX</code> and <code>SYSFS_RGB_B_VALUE_INDEX</code>
+	 * @throws EV3LibraryException If I/O goes wrong
+	 * @throws InvalidModeException The mode selected wasn't valid, or <b>Auto Switch Mode</b> has disabled.
+	 */
+	public void readRGB(int[] rgb) throws EV3LibraryException, InvalidModeException{
+		if (rgb.length < 3){
+			throw new IllegalArgumentException("The RGB array must be at least 3 long");
 		}
-		String str = this.getAttribute("value" + SYSFS_RGB_B_VALUE_INDEX);
-		return Integer.parseInt(str);
+		this.ensureMode(SYSFS_RGB_MODE, autoSwitchMode);
+		this.readValues(rgb);
 	}
 	
 	/**
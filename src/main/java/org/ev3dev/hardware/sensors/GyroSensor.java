@@ -61,6 +61,21 @@ public class GyroSensor extends Sensor {
 	 */
 	public static final int SYSFS_RATE_VALUE_INDEX = 0;
 	
+	/**
+	 * Gyro angle and rate required Sysfs mode
+	 */
+	public static final String SYSFS_ANGLE_AND_RATE_MODE = "GYRO-G&A";
+	
+	/**
+	 * Gyro angle Sysfs value index of the angle and rate mode
+	 */
+	public static final int SYSFS_ANGLE_AND_RATE_ANGLE_VALUE_INDEX = 0;
+	
+	/**
+	 * Gyro rate Sysfs value index of the angle and rate mode
+	 */
+	public static final int SYSFS_ANGLE_AND_RATE_RATE_VALUE_INDEX = 1;
+	
 	/**
 	 * This device's default driver name
 	 */
@@ -89,15 +104,8 @@ public class GyroSensor extends Sensor {
 	 * @throws InvalidModeException The mode selected wasn't valid, or <b>Auto Switch Mode</b> has disabled.
 	 */
 	public int getAngle() throws InvalidModeException, EV3LibraryException{
-		if (!this.getMode().equals(SYSFS_ANGLE_MODE)){
-			if (autoSwitchMode){
-				this.setMode(SYSFS_ANGLE_MODE);
-			} else {
-				throw new InvalidModeException("[Auto-switch is off] You are not using a correct mode(" + SYSFS_ANGLE_MODE + ")! Yours: " + this.getMode());
-			}
-		}
-		String str = this.getAttribute("value" + SYSFS_ANGLE_VALUE_INDEX);
-		return Integer.parseInt(str);
+		this.ensureMode(SYSFS_ANGLE_MODE, autoSwitchMode);
+		return this.getValue(SYSFS_ANGLE_VALUE_INDEX);
 	}
 	
 	/**
@@ -107,15 +115,8 @@ public class GyroSensor extends Sensor {
 	 * @throws InvalidModeException The mode selected wasn't valid, or <b>Auto Switch Mode</b> has disabled.
 	 */
 	public int getRate() throws InvalidModeException, EV3LibraryException{
-		if (!this.getMode().equals(SYSFS_RATE_MODE)){
-			if (autoSwitchMode){
-				this.setMode(SYSFS_RATE_MODE);
-			} else {
-				throw new InvalidModeException("[Auto-switch is off] You are not using a correct mode(" + SYSFS_RATE_MODE + ")! Yours: " + this.getMode());
-			}
-		}
-		String str = this.getAttribute("value" + SYSFS_RATE_VALUE_INDEX);
-		return Integer.parseInt(str);
+		this.ensureMode(SYSFS_RATE_MODE, autoSwitchMode);
+		return this.getValue(SYSFS_RATE_VALUE_INDEX);
 	}
 
 	/**
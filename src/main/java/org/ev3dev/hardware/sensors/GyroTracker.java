@@ -0,0 +1,452 @@
+/*******************************************************************************
+ * Any modification, copies of sections of this file must be attached with this
+ * license and shown clearly in the developer's project. The code can be used
+ * as long as you state clearly you do not own it. Any violation might result in
+ *  a take-down.
+ *
+ * MIT License
+ *
+ * Copyright (c) 2016, 2017 Anthony Law
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *******************************************************************************/
+package org.ev3dev.hardware.sensors;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import org.ev3dev.exception.EV3LibraryException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Tracks the heading of a <code>GyroSensor</code> on a dedicated thread. The sensor stays in the combined
+ *  <code>GYRO-G&amp;A</code> mode, so the angle and the rate are sampled together without switching modes.
+ *  The rate is integrated into the heading at a fixed rate, with the bias (drift) of the sensor estimated and
+ *  subtracted.<br>
+ * <br>
+ * The bias is first measured over the calibration samples (the sensor must not move while calibrating), then
+ *  slowly adjusted whenever the sensor is still. The heading, rate and bias are published as a consistent snapshot,
+ *  so reading them from a control loop never touches Sysfs.
+ * <pre>
+ * GyroTracker tracker = new GyroTracker(gyroSensor, 5, TimeUnit.MILLISECONDS);
+ * tracker.start();
+ * while (true){
+ *     double heading = tracker.getHeading();
+ * }
+ * </pre>
+ * @author Anthony
+ *
+ */
+public class GyroTracker {
+	
+	private static final Logger logger = LoggerFactory.getLogger(GyroTracker.class);
+	
+	/**
+	 * The default number of samples measuring the initial bias
+	 */
+	public static final int DEFAULT_CALIBRATION_SAMPLES = 100;
+	
+	/**
+	 * The default rate (degrees/second) under which the sensor is considered still, and the bias is adjusted
+	 */
+	public static final float DEFAULT_STILL_THRESHOLD = 2;
+	
+	/**
+	 * The default weight of a still sample when adjusting the bias
+	 */
+	public static final float DEFAULT_BIAS_ADAPTATION = 0.005f;
+	
+	/**
+	 * A consistent snapshot of a <code>GyroTracker</code>
+	 * @author Anthony
+	 *
+	 */
+	public static final class Snapshot {
+		
+		private double heading;
+		
+		private float rate;
+		
+		private float bias;
+		
+		private int sensorAngle;
+		
+		private long timestamp;
+		
+		private long sampleCount;
+		
+		/**
+		 * Returns the integrated heading, in degrees
+		 * @return The heading
+		 */
+		public double getHeading(){
+			return heading;
+		}
+		
+		/**
+		 * Returns the rate with the bias subtracted, in degrees/second
+		 * @return The rate
+		 */
+		public float getRate(){
+			return rate;
+		}
+		
+		/**
+		 * Returns the estimated bias, in degrees/second
+		 * @return The bias
+		 */
+		public float getBias(){
+			return bias;
+		}
+		
+		/**
+		 * Returns the angle reported by the sensor itself, without bias compensation
+		 * @return The sensor angle in degrees
+		 */
+		public int getSensorAngle(){
+			return sensorAngle;
+		}
+		
+		/**
+		 * Returns the <code>System.nanoTime()</code> of the sample
+		 * @return The timestamp in nanoseconds
+		 */
+		public long getTimestamp(){
+			return timestamp;
+		}
+		
+		/**
+		 * Returns the number of samples integrated
+		 * @return The number of samples
+		 */
+		public long getSampleCount(){
+			return sampleCount;
+		}
+	}
+	
+	private final GyroSensor gyro;
+	
+	private final long period;
+	
+	private final int[] scratch = new int[2];
+	
+	//Sequence of the snapshot: odd while the tracker thread is writing it
+	private volatile long sequence = 0;
+	
+	private volatile double heading = 0;
+	
+	private volatile float rate = 0;
+	
+	private volatile float bias = 0;
+	
+	private volatile int sensorAngle = 0;
+	
+	private volatile long timestamp = 0;
+	
+	private volatile long samples = 0;
+	
+	private volatile long missedDeadlines = 0;
+	
+	private volatile long errors = 0;
+	
+	
+	private volatile boolean resetRequested = false;
+	
+	private volatile double resetHeading = 0;
+	
+	private volatile int calibrationSamples = DEFAULT_CALIBRATION_SAMPLES;
+	
+	private volatile boolean calibrationRequested = true;
+	
+	private volatile float stillThreshold = DEFAULT_STILL_THRESHOLD;
+	
+	private volatile float biasAdaptation = DEFAULT_BIAS_ADAPTATION;
+	
+	/**
+	 * The tracker thread. A thread tracks only while it is this one, so a stopped thread cannot keep writing.
+	 */
+	private volatile Thread thread = null;
+	
+	/**
+	 * Creates a new gyro tracker. Call <code>start()</code> to start tracking.
+	 * @param gyro The gyro sensor
+	 * @param period The sampling period
+	 * @param unit The time unit of the period
+	 */
+	public GyroTracker(GyroSensor gyro, long period, TimeUnit unit){
+		this.gyro = gyro;
+		this.period = unit.toNanos(period);
+		if (this.period <= 0){
+			throw new IllegalArgumentException("The sampling period must be positive: " + period);
+		}
+	}
+	
+	/**
+	 * Switches the sensor to the <code>GYRO-G&amp;A</code> mode, and starts the tracker thread. The bias is calibrated
+	 *  first, so the sensor must not move for the calibration samples.
+	 * @throws EV3LibraryException If I/O goes wrong
+	 */
+	public synchronized void start() throws EV3LibraryException{
+		if (thread != null){
+			return;
+		}
+		gyro.setMode(GyroSensor.SYSFS_ANGLE_AND_RATE_MODE);
+		thread = new Thread(new Runnable(){
+			@Override
+			public void run() {
+				track();
+			}
+		}, "ev3dev-gyro-tracker");
+		thread.setDaemon(true);
+		thread.setPriority(Thread.MAX_PRIORITY);
+		thread.start();
+	}
+	
+	/**
+	 * Stops the tracker thread, and waits for it to exit. The last snapshot stays readable.
+	 */
+	public void stop(){
+		Thread old;
+		synchronized (this){
+			old = thread;
+			thread = null;
+		}
+		if (old == null){
+			return;
+		}
+		//Not interrupted, as an interrupt during a read would close the shared Sysfs channel
+		LockSupport.unpark(old);
+		if (old != Thread.currentThread()){
+			boolean interrupted = false;
+			while (old.isAlive()){
+				try {
+					old.join();
+				} catch (InterruptedException e){
+					interrupted = true;
+				}
+			}
+			if (interrupted){
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+	
+	/**
+	 * Returns whether the tracker thread is running
+	 * @return Whether it is running
+	 */
+	public boolean isRunning(){
+		return thread != null;
+	}
+	
+	/**
+	 * Sets the heading to the value specified, on the next sample
+	 * @param heading The new heading in degrees
+	 */
+	public void resetHeading(double heading){
+		resetHeading = heading;
+		resetRequested = true;
+	}
+	
+	/**
+	 * Measures the bias again over the number of samples specified. The sensor must not move meanwhile.
+	 * @param samples The number of calibration samples
+	 */
+	public void calibrate(int samples){
+		if (samples < 1){
+			throw new IllegalArgumentException("The calibration needs at least 1 sample: " + samples);
+		}
+		calibrationSamples = samples;
+		calibrationRequested = true;
+	}
+	
+	/**
+	 * Returns whether the bias is being calibrated
+	 * @return Whether it is calibrating
+	 */
+	public boolean isCalibrating(){
+		return calibrationRequested;
+	}
+	
+	/**
+	 * Sets the rate under which the sensor is considered still, and the bias is adjusted
+	 * @param threshold The rate in degrees/second
+	 */
+	public void setStillThreshold(float threshold){
+		this.stillThreshold = threshold;
+	}
+	
+	/**
+	 * Sets the weight of a still sample when adjusting the bias. 0 disables the adjustment after calibration.
+	 * @param adaptation The weight, from 0 to 1
+	 */
+	public void setBiasAdaptation(float adaptation){
+		if (adaptation < 0 || adaptation > 1){
+			throw new IllegalArgumentException("The bias adaptation must be from 0 to 1: " + adaptation);
+		}
+		this.biasAdaptation = adaptation;
+	}
+	
+	private void track(){
+		long deadline = System.nanoTime();
+		long lastTime = 0;
+		float lastRate = 0;
+		int calibrationCount = 0;
+		double calibrationSum = 0;
+		
+		try {
+			while (thread == Thread.currentThread() && !Thread.interrupted()){
+				long now = System.nanoTime();
+				try {
+					int n = gyro.readValues(scratch);
+					if (n < 2){
+						throw new EV3LibraryException("The gyro sensor is not in mode " + GyroSensor.SYSFS_ANGLE_AND_RATE_MODE);
+					}
+					int angle = scratch[GyroSensor.SYSFS_ANGLE_AND_RATE_ANGLE_VALUE_INDEX];
+					int rawRate = scratch[GyroSensor.SYSFS_ANGLE_AND_RATE_RATE_VALUE_INDEX];
+					
+					if (calibrationRequested && calibrationCount == 0){
+						calibrationSum = 0;
+					}
+					float b = bias;
+					if (calibrationRequested){
+						calibrationSum += rawRate;
+						calibrationCount++;
+						if (calibrationCount >= calibrationSamples){
+							b = (float) (calibrationSum / calibrationCount);
+							calibrationCount = 0;
+							calibrationRequested = false;
+						}
+					} else if (Math.abs(rawRate - b) < stillThreshold){
+						b += biasAdaptation * (rawRate - b);
+					}
+					float r = rawRate - b;
+					
+					double h = heading;
+					if (resetRequested){
+						h = resetHeading;
+						resetRequested = false;
+					} else if (lastTime != 0 && !calibrationRequested){
+						//Trapezoidal integration of the compensated rate
+						h += (lastRate + r) * 0.5 * (now - lastTime) / 1e9;
+					}
+					
+					long seq = sequence;
+					sequence = seq + 1;
+					heading = h;
+					rate = r;
+					bias = b;
+					sensorAngle = angle;
+					timestamp = now;
+					samples++;
+					sequence = seq + 2;
+					
+					lastTime = now;
+					lastRate = r;
+				} catch (EV3LibraryException e){
+					errors++;
+					lastTime = 0;
+				} catch (RuntimeException e){
+					logger.warn("Tracking the gyro sensor failed", e);
+					errors++;
+					lastTime = 0;
+				}
+				
+				deadline += period;
+				long after = System.nanoTime();
+				if (after - deadline > 0){
+					long missed = (after - deadline) / period + 1;
+					missedDeadlines += missed;
+					deadline += missed * period;
+				}
+				LockSupport.parkNanos(deadline - after);
+			}
+		} finally {
+			synchronized (this){
+				if (thread == Thread.currentThread()){
+					thread = null;
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Returns the latest integrated heading. This never touches Sysfs.
+	 * @return The heading in degrees
+	 */
+	public double getHeading(){
+		return heading;
+	}
+	
+	/**
+	 * Returns the latest rate, with the bias subtracted. This never touches Sysfs.
+	 * @return The rate in degrees/second
+	 */
+	public float getRate(){
+		return rate;
+	}
+	
+	/**
+	 * Returns the estimated bias
+	 * @return The bias in degrees/second
+	 */
+	public float getBias(){
+		return bias;
+	}
+	
+	/**
+	 * Copies the latest heading, rate, bias and sensor angle into the snapshot specified, consistent with each other.
+	 * @param dest The destination snapshot, which can be reused
+	 * @return The same snapshot
+	 */
+	public Snapshot readSnapshot(Snapshot dest){
+		while (true){
+			long seq = sequence;
+			if ((seq & 1) == 0){
+				dest.heading = heading;
+				dest.rate = rate;
+				dest.bias = bias;
+				dest.sensorAngle = sensorAngle;
+				dest.timestamp = timestamp;
+				dest.sampleCount = samples;
+				if (sequence == seq){
+					return dest;
+				}
+			}
+			Thread.yield();
+		}
+	}
+	
+	/**
+	 * Returns the number of sampling deadlines missed
+	 * @return The number of missed deadlines
+	 */
+	public long getMissedDeadlines(){
+		return missedDeadlines;
+	}
+	
+	/**
+	 * Returns the number of samples failed because of I/O or other errors
+	 * @return The number of failed samples
+	 */
+	public long getErrorCount(){
+		return errors;
+	}
+}
@@ -98,8 +98,7 @@ public class I2CSensor extends Sensor {
 	 * @throws EV3LibraryException If I/O goes wrong
 	 */
 	public int getPollMs() throws EV3LibraryException{
-		String str = this.getAttribute(SYSFS_PROPERTY_POLL_MS);
-		return Integer.parseInt(str);
+		return this.getIntAttribute(SYSFS_PROPERTY_POLL_MS);
 	}
 	
 	/**
@@ -110,6 +109,6 @@ public class I2CSensor extends Sensor {
 	 * @throws EV3LibraryException If I/O goes wrong
 	 */
 	public void setPollMs(int ms) throws EV3LibraryException{
-		this.setAttribute(SYSFS_PROPERTY_POLL_MS, Integer.toString(ms));
+		this.setIntAttribute(SYSFS_PROPERTY_POLL_MS, ms);
 	}
 }
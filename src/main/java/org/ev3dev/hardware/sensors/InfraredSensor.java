@@ -79,15 +79,8 @@ public class InfraredSensor extends Sensor {
 	 * @throws InvalidModeException The mode selected wasn't valid, or <b>Auto Switch Mode</b> has disabled.
 	 */
 	public int getProximity() throws InvalidModeException, EV3LibraryException{
-		if (!this.getMode().equals(SYSFS_PROXIMITY_REQUIRED_MODE)){
-			if (autoSwitchMode){
-				this.setMode(SYSFS_PROXIMITY_REQUIRED_MODE);
-			} else {
-				throw new InvalidModeException("[Auto-switch is off] You are not using a correct mode(" + SYSFS_PROXIMITY_REQUIRED_MODE + ")! Yours: " + this.getMode());
-			}
-		}
-		String str = this.getAttribute("value" + SYSFS_PROXIMITY_VALUE_INDEX);
-		return Integer.parseInt(str);
+		this.ensureMode(SYSFS_PROXIMITY_REQUIRED_MODE, autoSwitchMode);
+		return this.getValue(SYSFS_PROXIMITY_VALUE_INDEX);
 	}
 	
 	/**
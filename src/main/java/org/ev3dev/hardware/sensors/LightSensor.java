@@ -89,15 +89,8 @@ public class LightSensor extends Sensor {
 	 * @throws InvalidModeException The mode selected wasn't valid, or <b>Auto Switch Mode</b> has disabled.
 	 */
 	public float getReflectedLightIntensity() throws EV3LibraryException, InvalidModeException{
-		if (!this.getMode().equals(SYSFS_REFLECTED_REQUIRED_MODE)){
-			if (autoSwitchMode){
-				this.setMode(SYSFS_REFLECTED_REQUIRED_MODE);
-			} else {
-				throw new InvalidModeException("[Auto-switch is off] You are not using a correct mode(" + SYSFS_REFLECTED_REQUIRED_MODE + ")! Yours: " + this.getMode());
-			}
-		}
-		String str = this.getAttribute("value" + SYSFS_REFLECTED_VALUE_INDEX);
-		return Float.parseFloat(str);
+		this.ensureMode(SYSFS_REFLECTED_REQUIRED_MODE, autoSwitchMode);
+		return this.getValue(SYSFS_REFLECTED_VALUE_INDEX);
 	}
 	
 	/**
@@ -107,15 +100,8 @@ public class LightSensor extends Sensor {
 	 * @throws InvalidModeException The mode selected wasn't valid, or <b>Auto Switch Mode</b> has disabled.
 	 */
 	public float getAmbientLightIntensity() throws EV3LibraryException, InvalidModeException{
-		if (!this.getMode().equals(SYSFS_AMBIENT_REQUIRED_MODE)){
-			if (autoSwitchMode){
-				this.setMode(SYSFS_AMBIENT_REQUIRED_MODE);
-			} else {
-				throw new InvalidModeException("[Auto-switch is off] You are not using a correct mode(" + SYSFS_AMBIENT_REQUIRED_MODE + ")! Yours: " + this.getMode());
-			}
-		}
-		String str = this.getAttribute("value" + SYSFS_AMBIENT_VALUE_INDEX);
-		return Float.parseFloat(str);
+		this.ensureMode(SYSFS_AMBIENT_REQUIRED_MODE, autoSwitchMode);
+		return this.getValue(SYSFS_AMBIENT_VALUE_INDEX);
 	}
 	
 	/**
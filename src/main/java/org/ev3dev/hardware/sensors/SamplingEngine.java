@@ -0,0 +1,389 @@
+/*******************************************************************************
+ * Any modification, copies of sections of this file must be attached with this
+ * license and shown clearly in the developer's project. The code can be used
+ * as long as you state clearly you do not own it. Any violation might result in
+ *  a take-down.
+ *
+ * MIT License
+ *
+ * Copyright (c) 2016, 2017 Anthony Law
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *******************************************************************************/
+package org.ev3dev.hardware.sensors;
+
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.ev3dev.exception.EV3LibraryException;
+import org.ev3dev.io.Sysfs;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Samples registered sensors in the background, so that a slow sensor read does not stall the control loop.<br>
+ * <br>
+ * Every registered sensor is a <code>Channel</code> with its own period. The engine reads the values of the
+ *  channel by <code>Sensor.readValues()</code> on a high priority thread, and publishes them into a
+ *  single-writer slot. Reading the latest sample of a channel never blocks and never does I/O.
+ *  A channel that could not be sampled in time counts missed deadlines instead of queuing up late samples.
+ * <pre>
+ * SamplingEngine engine = new SamplingEngine();
+ * SamplingEngine.Channel distance = engine.register(ultrasonicSensor, 20, TimeUnit.MILLISECONDS);
+ * while (true){
+ *     int mm = distance.getValue(0);
+ * }
+ * </pre>
+ * @author Anthony
+ *
+ */
+public class SamplingEngine {
+	
+	private static final Logger logger = LoggerFactory.getLogger(SamplingEngine.class);
+	
+	private final ScheduledExecutorService scheduler;
+	
+	private volatile boolean shutdown = false;
+	
+	/**
+	 * Creates a new sampling engine with a single sampling thread
+	 */
+	public SamplingEngine(){
+		this(1);
+	}
+	
+	/**
+	 * Creates a new sampling engine
+	 * @param threads The number of sampling threads
+	 */
+	public SamplingEngine(int threads){
+		ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(threads, new ThreadFactory(){
+			private int count = 0;
+			
+			@Override
+			public synchronized Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, "ev3dev-sampling-" + count++);
+				thread.setDaemon(true);
+				thread.setPriority(Thread.MAX_PRIORITY);
+				return thread;
+			}
+		});
+		executor.setRemoveOnCancelPolicy(true);
+		executor.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+		this.scheduler = executor;
+	}
+	
+	/**
+	 * Registers a sensor to be sampled periodically. The number of values and the decimals of the current mode
+	 *  are read once here, see <code>Channel.refreshFormat()</code>.
+	 * @param sensor The sensor
+	 * @param period The sampling period
+	 * @param unit The time unit of the period
+	 * @return The channel of the sensor
+	 * @throws EV3LibraryException If I/O goes wrong
+	 */
+	public Channel register(Sensor sensor, long period, TimeUnit unit) throws EV3LibraryException{
+		long periodNanos = unit.toNanos(period);
+		if (periodNanos <= 0){
+			throw new IllegalArgumentException("The sampling period must be positive: " + period);
+		}
+		Channel channel = new Channel(sensor, periodNanos);
+		channel.schedule(0);
+		return channel;
+	}
+	
+	/**
+	 * Stops sampling all the channels of this engine. A sample being read is completed, as interrupting the
+	 *  sampling thread during a read would close the shared Sysfs channel.
+	 */
+	public void shutdown(){
+		shutdown = true;
+		scheduler.shutdown();
+	}
+	
+	/**
+	 * A sampled sensor of a <code>SamplingEngine</code>
+	 * @author Anthony
+	 *
+	 */
+	public final class Channel implements Runnable {
+		
+		private final Sensor sensor;
+		
+		private final long period;
+		
+		//Sequence of the slot: odd while the sampling thread is writing it
+		private volatile long sequence = 0;
+		
+		private final AtomicLongArray values = new AtomicLongArray(Sensor.MAX_NUM_VALUES);
+		
+		private final int[] scratch = new int[Sensor.MAX_NUM_VALUES];
+		
+		private final CopyOnWriteArrayList<SensorHistory> histories = new CopyOnWriteArrayList<SensorHistory>();
+		
+		private volatile long timestamp = 0;
+		
+		private volatile int numValues;
+		
+		private volatile int decimals;
+		
+		private volatile boolean formatValid = true;
+		
+		private volatile long samples = 0;
+		
+		private volatile long missedDeadlines = 0;
+		
+		private volatile long errors = 0;
+		
+		private volatile boolean cancelled = false;
+		
+		private long nextDeadline;
+		
+		private ScheduledFuture<?> future = null;
+		
+		private Channel(Sensor sensor, long period) throws EV3LibraryException{
+			this.sensor = sensor;
+			this.period = period;
+			readFormat();
+			this.nextDeadline = System.nanoTime();
+		}
+		
+		private void readFormat() throws EV3LibraryException{
+			numValues = Math.min(sensor.getNumValues(), Sensor.MAX_NUM_VALUES);
+			decimals = sensor.getDecimals();
+			formatValid = true;
+		}
+		
+		private synchronized void schedule(long delay){
+			if (!cancelled && !shutdown){
+				try {
+					future = scheduler.schedule(this, delay, TimeUnit.NANOSECONDS);
+				} catch (RejectedExecutionException ignore){
+					//The engine was shut down meanwhile
+				}
+			}
+		}
+		
+		@Override
+		public void run() {
+			if (cancelled || shutdown){
+				return;
+			}
+			try {
+				if (!formatValid){
+					readFormat();
+				}
+				sample();
+			} catch (EV3LibraryException e){
+				errors++;
+				formatValid = false;
+			} catch (NumberFormatException e){
+				errors++;
+				formatValid = false;
+			} catch (RuntimeException e){
+				//Anything escaping would cancel the channel silently, as it is not rescheduled
+				logger.warn("Sampling " + sensor.getClass().getSimpleName() + " failed", e);
+				errors++;
+				formatValid = false;
+			}
+			
+			long now = System.nanoTime();
+			nextDeadline += period;
+			if (now - nextDeadline > 0){
+				long missed = (now - nextDeadline) / period + 1;
+				missedDeadlines += missed;
+				nextDeadline += missed * period;
+			}
+			schedule(nextDeadline - now);
+		}
+		
+		private void sample(){
+			long start = System.nanoTime();
+			int n = sensor.readValues(scratch);
+			long seq = sequence;
+			sequence = seq + 1;
+			for (int i = 0; i < n; i++){
+				values.set(i, scratch[i]);
+			}
+			timestamp = start;
+			sequence = seq + 2;
+			samples++;
+			
+			for (SensorHistory history : histories){
+				if (history.getValueIndex() < n){
+					history.add(scratch[history.getValueIndex()], start);
+				}
+			}
+		}
+		
+		/**
+		 * Attaches a history to this channel. Every sample of the value index of the history is added to it, on the
+		 *  sampling thread, which becomes the single writer of the history.
+		 * @param history The history
+		 */
+		public void attachHistory(SensorHistory history){
+			histories.addIfAbsent(history);
+		}
+		
+		/**
+		 * Detaches a history from this channel
+		 * @param history The history
+		 */
+		public void detachHistory(SensorHistory history){
+			histories.remove(history);
+		}
+		
+		/**
+		 * Copies the latest sample into the array specified. The values are consistent with each other (from the same sample).
+		 * @param dest The destination array, at least <code>getNumValues()</code> long
+		 * @return The <code>System.nanoTime()</code> when the sample was taken, or 0 if no sample was taken yet
+		 */
+		public long read(int[] dest){
+			while (true){
+				long seq = sequence;
+				if ((seq & 1) != 0){
+					Thread.yield();
+					continue;
+				}
+				int n = Math.min(numValues, dest.length);
+				for (int i = 0; i < n; i++){
+					dest[i] = (int) values.get(i);
+				}
+				long time = timestamp;
+				if (sequence == seq){
+					return time;
+				}
+			}
+		}
+		
+		/**
+		 * Returns the latest raw value at the index specified. The value is not divided by 10 ^ decimals.
+		 * @param index The value index
+		 * @return The raw value
+		 */
+		public int getValue(int index){
+			return (int) values.get(index);
+		}
+		
+		/**
+		 * Returns the latest value at the index specified, divided by 10 ^ decimals.
+		 * @param index The value index
+		 * @return The scaled value
+		 */
+		public float getScaledValue(int index){
+			return Sysfs.toFixedPoint(values.get(index), decimals);
+		}
+		
+		/**
+		 * Returns the sensor of this channel
+		 * @return The sensor
+		 */
+		public Sensor getSensor(){
+			return sensor;
+		}
+		
+		/**
+		 * Returns the sampling period of this channel
+		 * @return The period in nanoseconds
+		 */
+		public long getPeriod(){
+			return period;
+		}
+		
+		/**
+		 * Returns the number of values sampled by this channel
+		 * @return The number of values
+		 */
+		public int getNumValues(){
+			return numValues;
+		}
+		
+		/**
+		 * Returns the number of decimal places of the values
+		 * @return The number of decimal places
+		 */
+		public int getDecimals(){
+			return decimals;
+		}
+		
+		/**
+		 * Returns the <code>System.nanoTime()</code> when the latest sample was taken
+		 * @return The timestamp in nanoseconds, or 0 if no sample was taken yet
+		 */
+		public long getTimestamp(){
+			return timestamp;
+		}
+		
+		/**
+		 * Returns the number of samples taken
+		 * @return The number of samples
+		 */
+		public long getSampleCount(){
+			return samples;
+		}
+		
+		/**
+		 * Returns the number of sampling deadlines missed, because the previous sample took too long or the
+		 *  sampling thread was busy.
+		 * @return The number of missed deadlines
+		 */
+		public long getMissedDeadlines(){
+			return missedDeadlines;
+		}
+		
+		/**
+		 * Returns the number of samples failed because of I/O or other errors
+		 * @return The number of failed samples
+		 */
+		public long getErrorCount(){
+			return errors;
+		}
+		
+		/**
+		 * Reads the number of values and the decimals again on the next sample. Call this after changing the mode of the sensor.
+		 */
+		public void refreshFormat(){
+			formatValid = false;
+		}
+		
+		/**
+		 * Stops sampling this channel
+		 */
+		public synchronized void cancel(){
+			cancelled = true;
+			if (future != null){
+				future.cancel(false);
+			}
+		}
+		
+		/**
+		 * Returns whether this channel is cancelled
+		 * @return Whether this channel is cancelled
+		 */
+		public boolean isCancelled(){
+			return cancelled;
+		}
+	}
+}
@@ -29,6 +29,7 @@
 package org.ev3dev.hardware.sensors;
 
 import org.ev3dev.exception.EV3LibraryException;
+import org.ev3dev.exception.InvalidModeException;
 import org.ev3dev.exception.InvalidPortException;
 import org.ev3dev.hardware.Device;
 import org.ev3dev.hardware.ports.LegoPort;
@@ -95,6 +96,42 @@ public class Sensor extends Device{
 	 */
 	public static final String SYSFS_PROPERTY_UNITS = "units";
 	
+	/**
+	 * The Sysfs class's <code>value[N]</code> property name prefix
+	 */
+	public static final String SYSFS_PROPERTY_VALUE = "value";
+	
+	/**
+	 * The Sysfs class's <code>bin_data</code> property name
+	 */
+	public static final String SYSFS_PROPERTY_BIN_DATA = "bin_data";
+	
+	/**
+	 * The Sysfs class's <code>bin_data_format</code> property name
+	 */
+	public static final String SYSFS_PROPERTY_BIN_DATA_FORMAT = "bin_data_format";
+	
+	/**
+	 * The maximum number of <code>value[N]</code> attributes of a sensor
+	 */
+	public static final int MAX_NUM_VALUES = 8;
+	
+	private volatile String cachedMode;
+	
+	private volatile int cachedNumValues = -1;
+	
+	private BinDataReader binDataReader;
+	
+	private volatile boolean binDataEnabled;
+	
+	private static final String[] VALUE_PROPERTIES = new String[MAX_NUM_VALUES];
+	
+	static {
+		for (int i = 0; i < MAX_NUM_VALUES; i++){
+			VALUE_PROPERTIES[i] = SYSFS_PROPERTY_VALUE + i;
+		}
+	}
+	
 	/**
 	 * This Sysfs's class name (e.g. <code>/sys/class/lego-sensor</code>, and <code>lego-sensor</code> is the class name)
 	 */
@@ -164,8 +201,7 @@ public class Sensor extends Device{
 	 * @throws EV3LibraryException If I/O goes wrong
 	 */
 	public int getDecimals() throws EV3LibraryException{
-		String str = this.getAttribute(SYSFS_PROPERTY_DECIMALS);
-		return Integer.parseInt(str);
+		return this.getIntAttribute(SYSFS_PROPERTY_DECIMALS);
 	}
 	
 	/**
@@ -179,11 +215,18 @@ public class Sensor extends Device{
 	
 	/**
 	 * Returns the current mode. Writing one of the values returned by modes sets the sensor to that mode.
+	 *  The mode is always read from Sysfs, and the cached mode is updated.
 	 * @return The current mode
 	 * @throws EV3LibraryException If I/O goes wrong
 	 */
 	public String getMode() throws EV3LibraryException{
-		return this.getAttribute(SYSFS_PROPERTY_MODE);
+		String mode = this.getAttribute(SYSFS_PROPERTY_MODE);
+		if (!mode.equals(cachedMode)){
+			cachedNumValues = -1;
+			invalidateBinDataReader();
+		}
+		cachedMode = mode;
+		return mode;
 	}
 	
 	/**
@@ -192,7 +235,62 @@ public class Sensor extends Device{
 	 * @throws EV3LibraryException If I/O goes wrong
 	 */
 	public void setMode(String mode) throws EV3LibraryException{
+		cachedMode = null;
+		cachedNumValues = -1;
+		invalidateBinDataReader();
 		this.setAttribute(SYSFS_PROPERTY_MODE, mode);
+		cachedMode = mode;
+	}
+	
+	/**
+	 * Returns the mode this library last wrote or read, without reading Sysfs. The mode is only read from Sysfs
+	 *  if it is not known yet, e.g. after the sensor was hot-plugged.
+	 * @return The cached mode
+	 * @throws EV3LibraryException If I/O goes wrong
+	 */
+	public String getCachedMode() throws EV3LibraryException{
+		String mode = cachedMode;
+		if (mode == null){
+			mode = getMode();
+		}
+		return mode;
+	}
+	
+	/**
+	 * Drops the cached mode and reads it again from Sysfs. Call this if the mode could have been changed outside of this
+	 *  instance (e.g. by another program, or another instance of the same sensor).
+	 * @return The current mode
+	 * @throws EV3LibraryException If I/O goes wrong
+	 */
+	public String refreshMode() throws EV3LibraryException{
+		cachedMode = null;
+		return getMode();
+	}
+	
+	/**
+	 * Makes sure the sensor is in the mode specified, using the cached mode, so no Sysfs read is done if the sensor
+	 *  is already in that mode.
+	 * @param mode The required mode
+	 * @param autoSwitch Whether to switch to the required mode, instead of throwing an exception
+	 * @throws InvalidModeException If the sensor is not in the required mode and <code>autoSwitch</code> is <code>false</code>
+	 * @throws EV3LibraryException If I/O goes wrong
+	 */
+	protected final void ensureMode(String mode, boolean autoSwitch) throws InvalidModeException, EV3LibraryException{
+		String current = getCachedMode();
+		if (!current.equals(mode)){
+			if (autoSwitch){
+				this.setMode(mode);
+			} else {
+				throw new InvalidModeException("[Auto-switch is off] You are not using a correct mode(" + mode + ")! Yours: " + current);
+			}
+		}
+	}
+	
+	@Override
+	protected void invalidateCachedState(){
+		cachedMode = null;
+		cachedNumValues = -1;
+		invalidateBinDataReader();
 	}
 	
 	/**
@@ -225,8 +323,104 @@ public class Sensor extends Device{
 	 * @throws EV3LibraryException If I/O goes wrong
 	 */
 	public int getNumValues() throws EV3LibraryException{
-		String str = this.getAttribute(SYSFS_PROPERTY_NUM_VALUES);
-		return Integer.parseInt(str);
+		return this.getIntAttribute(SYSFS_PROPERTY_NUM_VALUES);
+	}
+	
+	/**
+	 * Returns the <code>value[N]</code> property name of the index specified, without building a new String.
+	 * @param index The value index, from 0 to <code>MAX_NUM_VALUES - 1</code>
+	 * @return The property name (e.g. value0)
+	 */
+	public static String getValueProperty(int index){
+		if (index < 0 || index >= MAX_NUM_VALUES){
+			throw new IndexOutOfBoundsException("Value index out of range: " + index);
+		}
+		return VALUE_PROPERTIES[index];
+	}
+	
+	/**
+	 * Returns the raw value of the <code>value[N]</code> attribute specified. The value is not divided by 10 ^ decimals.
+	 *  If <code>bin_data</code> is enabled and the driver exposes it, the value is decoded from <code>bin_data</code> instead.
+	 * @param index The value index
+	 * @return The raw value
+	 * @throws EV3LibraryException If I/O goes wrong
+	 */
+	public int getValue(int index) throws EV3LibraryException{
+		if (binDataEnabled){
+			BinDataReader reader = getBinDataReader();
+			if (reader.isSupported()){
+				return reader.readValue(index);
+			}
+		}
+		return this.getIntAttribute(getValueProperty(index));
+	}
+	
+	/**
+	 * Reads all the values of the current mode into the array specified. If <code>bin_data</code> is enabled and
+	 *  the driver exposes it, the values are decoded from one binary read. Otherwise <code>value0</code> to
+	 *  <code>value[num_values - 1]</code> are read back-to-back. The number of values is cached until the mode changes.
+	 *  The values are raw (not divided by 10 ^ decimals).
+	 * @param dest The destination array. If it is shorter than <code>num_values</code>, only the first values are read.
+	 * @return The number of values read
+	 * @throws EV3LibraryException If I/O goes wrong
+	 */
+	public int readValues(int[] dest) throws EV3LibraryException{
+		if (binDataEnabled){
+			BinDataReader reader = getBinDataReader();
+			if (reader.isSupported()){
+				return reader.read(dest);
+			}
+		}
+		int n = Math.min(getCachedNumValues(), dest.length);
+		for (int i = 0; i < n; i++){
+			dest[i] = this.getIntAttribute(getValueProperty(i));
+		}
+		return n;
+	}
+	
+	int getCachedNumValues() throws EV3LibraryException{
+		int n = cachedNumValues;
+		if (n < 0){
+			n = Math.min(getNumValues(), MAX_NUM_VALUES);
+			cachedNumValues = n;
+		}
+		return n;
+	}
+	
+	/**
+	 * Returns the <code>bin_data</code> reader of this sensor
+	 * @return The reader
+	 */
+	public synchronized BinDataReader getBinDataReader(){
+		if (binDataReader == null){
+			binDataReader = new BinDataReader(this);
+		}
+		return binDataReader;
+	}
+	
+	private synchronized void invalidateBinDataReader(){
+		if (binDataReader != null){
+			binDataReader.invalidate();
+		}
+	}
+	
+	/**
+	 * Sets whether <code>readValues()</code> decodes <code>bin_data</code>, when the driver exposes it in the current mode,
+	 *  instead of reading the <code>value[N]</code> attributes. Only enable it for drivers that do not scale the values,
+	 *  as <code>bin_data</code> holds the raw sensor data.<br>
+	 * (Default: disabled)
+	 * @param enabled A Boolean
+	 */
+	public void setBinDataEnabled(boolean enabled){
+		this.binDataEnabled = enabled;
+	}
+	
+	/**
+	 * Returns whether <code>readValues()</code> decodes <code>bin_data</code>
+	 * @return A Boolean
+	 */
+	public boolean isBinDataEnabled(){
+		return binDataEnabled;
 	}
 	
 	/**
@@ -0,0 +1,402 @@
+/*******************************************************************************
+ * Any modification, copies of sections of this file must be attached with this
+ * license and shown clearly in the developer's project. The code can be used
+ * as long as you state clearly you do not own it. Any violation might result in
+ *  a take-down.
+ *
+ * MIT License
+ *
+ * Copyright (c) 2016, 2017 Anthony Law
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *******************************************************************************/
+package org.ev3dev.hardware.sensors;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.ev3dev.exception.EV3LibraryException;
+import org.ev3dev.io.Sysfs;
+
+/**
+ * A fixed-capacity history of the samples of a sensor value, with nanosecond timestamps. Filters and controllers
+ *  can read the last N samples and the statistics of the window without boxing or allocating.<br>
+ * <br>
+ * A history has a single writer: either the thread calling <code>record()</code> / <code>add()</code>, or the
+ *  sampling thread of a <code>SamplingEngine.Channel</code> it is attached to. Any number of threads may read it
+ *  at the same time without locking; a read is retried if it overlapped a write.<br>
+ * <br>
+ * The minimum, maximum, mean and variance of the window are maintained incrementally on every write. The sum of
+ *  squares is kept as a <code>double</code>, which is exact while it stays below 2 ^ 53.
+ * <pre>
+ * SensorHistory history = new SensorHistory(gyroSensor, 0, 100);
+ * engine.register(gyroSensor, 10, TimeUnit.MILLISECONDS).attachHistory(history);
+ * float mean = history.getMean();
+ * </pre>
+ * @author Anthony
+ *
+ */
+public class SensorHistory {
+	
+	private final Sensor sensor;
+	
+	private final int valueIndex;
+	
+	private final int capacity;
+	
+	private final float scale;
+	
+	private final AtomicIntegerArray values;
+	
+	private final AtomicLongArray timestamps;
+	
+	//Sequence of the history: odd while the writer is writing it
+	private volatile long sequence = 0;
+	
+	//Total number of samples ever written
+	private volatile long count = 0;
+	
+	private volatile long sum = 0;
+	
+	private volatile double sumOfSquares = 0;
+	
+	private volatile int min = 0;
+	
+	private volatile int max = 0;
+	
+	//Monotonic deques of sample numbers, owned by the writer
+	private final long[] minDeque;
+	
+	private final long[] maxDeque;
+	
+	private int minHead = 0;
+	
+	private int minSize = 0;
+	
+	private int maxHead = 0;
+	
+	private int maxSize = 0;
+	
+	/**
+	 * Creates a history of the value specified of a sensor. The values are scaled by the decimals of the current mode.
+	 * @param sensor The sensor
+	 * @param valueIndex The value index (e.g. 0 for value0)
+	 * @param capacity The number of samples kept
+	 * @throws EV3LibraryException If I/O goes wrong
+	 */
+	public SensorHistory(Sensor sensor, int valueIndex, int capacity) throws EV3LibraryException{
+		this(sensor, valueIndex, capacity, sensor.getDecimals());
+	}
+	
+	/**
+	 * Creates a history of raw values that are not read from a sensor, only written by <code>add()</code>.
+	 * @param capacity The number of samples kept
+	 * @param decimals The number of decimal places of the values
+	 */
+	public SensorHistory(int capacity, int decimals){
+		this(null, 0, capacity, decimals);
+	}
+	
+	private SensorHistory(Sensor sensor, int valueIndex, int capacity, int decimals){
+		if (capacity < 1){
+			throw new IllegalArgumentException("The capacity must be at least 1: " + capacity);
+		}
+		this.sensor = sensor;
+		this.valueIndex = valueIndex;
+		this.capacity = capacity;
+		this.scale = Sysfs.toFixedPoint(1, decimals);
+		this.values = new AtomicIntegerArray(capacity);
+		this.timestamps = new AtomicLongArray(capacity);
+		this.minDeque = new long[capacity];
+		this.maxDeque = new long[capacity];
+	}
+	
+	/**
+	 * Returns the sensor of this history
+	 * @return The sensor, or null if this history is not attached to a sensor
+	 */
+	public Sensor getSensor(){
+		return sensor;
+	}
+	
+	/**
+	 * Returns the value index of this history
+	 * @return The value index
+	 */
+	public int getValueIndex(){
+		return valueIndex;
+	}
+	
+	/**
+	 * Returns the number of samples this history can keep
+	 * @return The capacity
+	 */
+	public int getCapacity(){
+		return capacity;
+	}
+	
+	/**
+	 * Reads the value of the sensor and adds it to this history. Must only be called by the writer.
+	 * @throws EV3LibraryException If I/O goes wrong
+	 */
+	public void record() throws EV3LibraryException{
+		if (sensor == null){
+			throw new IllegalStateException("This history is not attached to a sensor");
+		}
+		long time = System.nanoTime();
+		add(sensor.getValue(valueIndex), time);
+	}
+	
+	/**
+	 * Adds a raw sample to this history. The oldest sample is dropped if this history is full. Must only be called by the writer.
+	 * @param value The raw value (not divided by 10 ^ decimals)
+	 * @param timestamp The <code>System.nanoTime()</code> when the value was sampled
+	 */
+	public void add(int value, long timestamp){
+		long n = count;
+		int slot = (int) (n % capacity);
+		long seq = sequence;
+		sequence = seq + 1;
+		
+		long newSum = sum + value;
+		double newSumOfSquares = sumOfSquares + (double) value * value;
+		if (n >= capacity){
+			int old = values.get(slot);
+			newSum -= old;
+			newSumOfSquares -= (double) old * old;
+		}
+		//Drop the samples leaving the window first, since the new sample takes the slot of the oldest one
+		long oldest = n + 1 - capacity;
+		while (minSize > 0 && minDeque[minHead] < oldest){
+			minHead = (minHead + 1) % capacity;
+			minSize--;
+		}
+		while (maxSize > 0 && maxDeque[maxHead] < oldest){
+			maxHead = (maxHead + 1) % capacity;
+			maxSize--;
+		}
+		while (minSize > 0 && valueOf(minDeque[(minHead + minSize - 1) % capacity]) >= value){
+			minSize--;
+		}
+		while (maxSize > 0 && valueOf(maxDeque[(maxHead + maxSize - 1) % capacity]) <= value){
+			maxSize--;
+		}
+		
+		values.set(slot, value);
+		timestamps.set(slot, timestamp);
+		minDeque[(minHead + minSize) % capacity] = n;
+		minSize++;
+		maxDeque[(maxHead + maxSize) % capacity] = n;
+		maxSize++;
+		
+		sum = newSum;
+		sumOfSquares = newSumOfSquares;
+		min = valueOf(minDeque[minHead]);
+		max = valueOf(maxDeque[maxHead]);
+		count = n + 1;
+		sequence = seq + 2;
+	}
+	
+	private int valueOf(long sampleNumber){
+		return values.get((int) (sampleNumber % capacity));
+	}
+	
+	/**
+	 * Returns the number of samples in this history
+	 * @return The number of samples, at most the capacity
+	 */
+	public int size(){
+		return (int) Math.min(count, capacity);
+	}
+	
+	/**
+	 * Returns the total number of samples ever added to this history
+	 * @return The number of samples
+	 */
+	public long getTotalCount(){
+		return count;
+	}
+	
+	/**
+	 * Returns the raw value of a sample
+	 * @param age 0 for the latest sample, 1 for the one before it, and so on
+	 * @return The raw value
+	 */
+	public int getRaw(int age){
+		while (true){
+			long seq = sequence;
+			if ((seq & 1) == 0){
+				int value = values.get(slotOf(age, count));
+				if (sequence == seq){
+					return value;
+				}
+			}
+			Thread.yield();
+		}
+	}
+	
+	/**
+	 * Returns the value of a sample, divided by 10 ^ decimals
+	 * @param age 0 for the latest sample, 1 for the one before it, and so on
+	 * @return The value
+	 */
+	public float get(int age){
+		return getRaw(age) * scale;
+	}
+	
+	/**
+	 * Returns the <code>System.nanoTime()</code> of a sample
+	 * @param age 0 for the latest sample, 1 for the one before it, and so on
+	 * @return The timestamp in nanoseconds
+	 */
+	public long getTimestamp(int age){
+		while (true){
+			long seq = sequence;
+			if ((seq & 1) == 0){
+				long time = timestamps.get(slotOf(age, count));
+				if (sequence == seq){
+					return time;
+				}
+			}
+			Thread.yield();
+		}
+	}
+	
+	private int slotOf(int age, long n){
+		if (age < 0 || age >= Math.min(n, capacity)){
+			throw new IndexOutOfBoundsException("No sample of age " + age + ", size: " + Math.min(n, capacity));
+		}
+		return (int) ((n - 1 - age) % capacity);
+	}
+	
+	/**
+	 * Copies the samples of this history into the arrays specified, from the oldest to the latest.
+	 * @param destValues The destination array of the raw values
+	 * @param destTimestamps The destination array of the timestamps, or null
+	 * @return The number of samples copied, at most the length of <code>destValues</code> (the latest samples are copied)
+	 */
+	public int copy(int[] destValues, long[] destTimestamps){
+		while (true){
+			long seq = sequence;
+			if ((seq & 1) != 0){
+				Thread.yield();
+				continue;
+			}
+			long n = count;
+			int size = (int) Math.min(Math.min(n, capacity), destValues.length);
+			if (destTimestamps != null){
+				size = Math.min(size, destTimestamps.length);
+			}
+			for (int i = 0; i < size; i++){
+				int slot = (int) ((n - size + i) % capacity);
+				destValues[i] = values.get(slot);
+				if (destTimestamps != null){
+					destTimestamps[i] = timestamps.get(slot);
+				}
+			}
+			if (sequence == seq){
+				return size;
+			}
+		}
+	}
+	
+	/**
+	 * Returns the minimum value of the window, divided by 10 ^ decimals
+	 * @return The minimum value, or 0 if this history is empty
+	 */
+	public float getMin(){
+		return min * scale;
+	}
+	
+	/**
+	 * Returns the maximum value of the window, divided by 10 ^ decimals
+	 * @return The maximum value, or 0 if this history is empty
+	 */
+	public float getMax(){
+		return max * scale;
+	}
+	
+	/**
+	 * Returns the mean of the window, divided by 10 ^ decimals
+	 * @return The mean, or 0 if this history is empty
+	 */
+	public float getMean(){
+		while (true){
+			long seq = sequence;
+			if ((seq & 1) == 0){
+				long n = Math.min(count, capacity);
+				long s = sum;
+				if (sequence == seq){
+					return n == 0 ? 0 : (float) ((double) s / n * scale);
+				}
+			}
+			Thread.yield();
+		}
+	}
+	
+	/**
+	 * Returns the population variance of the window, in the square of the unit divided by 10 ^ decimals
+	 * @return The variance, or 0 if this history is empty
+	 */
+	public float getVariance(){
+		while (true){
+			long seq = sequence;
+			if ((seq & 1) == 0){
+				long n = Math.min(count, capacity);
+				long s = sum;
+				double sq = sumOfSquares;
+				if (sequence == seq){
+					if (n == 0){
+						return 0;
+					}
+					double mean = (double) s / n;
+					double variance = Math.max(0, sq / n - mean * mean);
+					return (float) (variance * scale * scale);
+				}
+			}
+			Thread.yield();
+		}
+	}
+	
+	/**
+	 * Returns the standard deviation of the window, divided by 10 ^ decimals
+	 * @return The standard deviation, or 0 if this history is empty
+	 */
+	public float getStandardDeviation(){
+		return (float) Math.sqrt(getVariance());
+	}
+	
+	/**
+	 * Removes all the samples. Must only be called by the writer.
+	 */
+	public void clear(){
+		long seq = sequence;
+		sequence = seq + 1;
+		count = 0;
+		sum = 0;
+		sumOfSquares = 0;
+		min = 0;
+		max = 0;
+		minHead = 0;
+		minSize = 0;
+		maxHead = 0;
+		maxSize = 0;
+		sequence = seq + 2;
+	}
+}
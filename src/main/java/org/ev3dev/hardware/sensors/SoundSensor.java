@@ -89,15 +89,8 @@ public class SoundSensor extends Sensor {
 	 * @throws InvalidModeException The mode selected wasn't valid, or <b>Auto Switch Mode</b> has disabled.
 	 */
 	public float getSoundPressure() throws InvalidModeException, EV3LibraryException{
-		if (!this.getMode().equals(SYSFS_SOUND_PRESSURE_REQUIRED_MODE)){
-			if (autoSwitchMode){
-				this.setMode(SYSFS_SOUND_PRESSURE_REQUIRED_MODE);
-			} else {
-				throw new InvalidModeException("[Auto-switch is off] You are not using a correct mode(" + SYSFS_SOUND_PRESSURE_REQUIRED_MODE + ")! Yours: " + this.getMode());
-			}
-		}
-		String str = this.getAttribute("value" + SYSFS_SOUND_PRESSURE_VALUE_INDEX);
-		return Float.parseFloat(str);
+		this.ensureMode(SYSFS_SOUND_PRESSURE_REQUIRED_MODE, autoSwitchMode);
+		return this.getValue(SYSFS_SOUND_PRESSURE_VALUE_INDEX);
 	}
 	
 	/**
@@ -107,15 +100,8 @@ public class SoundSensor extends Sensor {
 	 * @throws InvalidModeException The mode selected wasn't valid, or <b>Auto Switch Mode</b> has disabled.
 	 */
 	public float getSoundPressureLow() throws InvalidModeException, EV3LibraryException{
-		if (!this.getMode().equals(SYSFS_SOUND_PRESSURE_LOW_REQUIRED_MODE)){
-			if (autoSwitchMode){
-				this.setMode(SYSFS_SOUND_PRESSURE_LOW_REQUIRED_MODE);
-			} else {
-				throw new InvalidModeException("[Auto-switch is off] You are not using a correct mode(" + SYSFS_SOUND_PRESSURE_LOW_REQUIRED_MODE + ")! Yours: " + this.getMode());
-			}
-		}
-		String str = this.getAttribute("value" + SYSFS_SOUND_PRESSURE_LOW_VALUE_INDEX);
-		return Float.parseFloat(str);
+		this.ensureMode(SYSFS_SOUND_PRESSURE_LOW_REQUIRED_MODE, autoSwitchMode);
+		return this.getValue(SYSFS_SOUND_PRESSURE_LOW_VALUE_INDEX);
 	}
 	
 	/**
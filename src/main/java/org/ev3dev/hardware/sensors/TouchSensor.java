@@ -28,14 +28,22 @@
  *******************************************************************************/
 package org.ev3dev.hardware.sensors;
 
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
 import org.ev3dev.exception.EV3LibraryException;
 import org.ev3dev.exception.InvalidModeException;
 import org.ev3dev.exception.InvalidPortException;
 import org.ev3dev.exception.InvalidSensorException;
 import org.ev3dev.hardware.ports.LegoPort;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 public class TouchSensor extends Sensor {
 	
+	private static final Logger logger = LoggerFactory.getLogger(TouchSensor.class);
+	
 	/**
 	 * Sysfs class TouchSensor required mode
 	 */
@@ -56,8 +64,21 @@ public class TouchSensor extends Sensor {
 	 */
 	public static final String DRIVER_NAME_NXT = "lego-nxt-touch"; 
 	
+	/**
+	 * The default period of the change detection, in milliseconds
+	 */
+	public static final long DEFAULT_DETECTION_PERIOD = 5;
+	
 	public boolean autoSwitchMode = true;
 	
+	private final CopyOnWriteArrayList<TouchListener> listeners = new CopyOnWriteArrayList<TouchListener>();
+	
+	private volatile boolean detecting = false;
+	
+	private volatile boolean detectedPressed = false;
+	
+	private volatile Thread detector = null;
+	
 	/**
 	 * Creates a new TouchSensor instance.
 	 * @param port LegoPort
@@ -84,15 +105,158 @@ public class TouchSensor extends Sensor {
 	 * @throws InvalidModeException The mode selected wasn't valid, or <b>Auto Switch Mode</b> has disabled.
 	 */
 	public boolean isPressed() throws EV3LibraryException, InvalidModeException{
-		if (!this.getMode().equals(SYSFS_REQUIRED_MODE)){
-			if (autoSwitchMode){
-				this.setMode(SYSFS_REQUIRED_MODE);
-			} else {
-				throw new InvalidModeException("[Auto-switch is off] You are not using a correct mode(" + SYSFS_REQUIRED_MODE + ")! Yours: " + this.getMode());
+		this.ensureMode(SYSFS_REQUIRED_MODE, autoSwitchMode);
+		String str = this.getAttribute(getValueProperty(SYSFS_VALUE_INDEX));
+		return str.equals("1");
+	}
+	
+	/**
+	 * Adds a listener of the presses and releases. The change detection must be started by
+	 *  <code>startDetection()</code> for the listener to be called.
+	 * @param listener The listener
+	 */
+	public void addTouchListener(TouchListener listener){
+		listeners.addIfAbsent(listener);
+	}
+	
+	/**
+	 * Removes a listener of the presses and releases
+	 * @param listener The listener
+	 */
+	public void removeTouchListener(TouchListener listener){
+		listeners.remove(listener);
+	}
+	
+	/**
+	 * Starts the change detection thread with the default period
+	 * @throws EV3LibraryException If I/O goes wrong
+	 * @throws InvalidModeException The mode selected wasn't valid, or <b>Auto Switch Mode</b> has disabled.
+	 */
+	public void startDetection() throws EV3LibraryException, InvalidModeException{
+		startDetection(DEFAULT_DETECTION_PERIOD, TimeUnit.MILLISECONDS);
+	}
+	
+	/**
+	 * Starts a thread sampling the sensor at a fixed rate, which calls the touch listeners on every press and
+	 *  release. Does nothing if it is already started.
+	 * @param period The sampling period
+	 * @param unit The time unit of the period
+	 * @throws EV3LibraryException If I/O goes wrong
+	 * @throws InvalidModeException The mode selected wasn't valid, or <b>Auto Switch Mode</b> has disabled.
+	 */
+	public synchronized void startDetection(long period, TimeUnit unit) throws EV3LibraryException, InvalidModeException{
+		if (detecting){
+			return;
+		}
+		final long nanos = unit.toNanos(period);
+		if (nanos <= 0){
+			throw new IllegalArgumentException("The detection period must be positive: " + period);
+		}
+		this.ensureMode(SYSFS_REQUIRED_MODE, autoSwitchMode);
+		detectedPressed = this.getValue(SYSFS_VALUE_INDEX) != 0;
+		detecting = true;
+		detector = new Thread(new Runnable(){
+			@Override
+			public void run() {
+				detectLoop(nanos);
 			}
+		}, "ev3dev-touch-detector");
+		detector.setDaemon(true);
+		detector.setPriority(Thread.MAX_PRIORITY);
+		detector.start();
+	}
+	
+	/**
+	 * Stops the change detection thread, and waits for it to exit
+	 */
+	public void stopDetection(){
+		Thread old;
+		synchronized (this){
+			old = detector;
+			detecting = false;
+			detector = null;
+		}
+		if (old == null){
+			return;
+		}
+		//Not interrupted, as an interrupt during a read would close the shared Sysfs channel
+		LockSupport.unpark(old);
+		if (old != Thread.currentThread()){
+			boolean interrupted = false;
+			while (old.isAlive()){
+				try {
+					old.join();
+				} catch (InterruptedException e){
+					interrupted = true;
+				}
+			}
+			if (interrupted){
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+	
+	/**
+	 * Returns whether the change detection thread is running
+	 * @return Whether it is running
+	 */
+	public boolean isDetecting(){
+		return detecting;
+	}
+	
+	/**
+	 * Returns the pressed state of the last sample of the change detection thread. This never touches Sysfs.
+	 * @return The touch sensor is pressed or not.
+	 */
+	public boolean isDetectedPressed(){
+		return detectedPressed;
+	}
+	
+	private void detectLoop(long period){
+		long deadline = System.nanoTime();
+		try {
+			while (detector == Thread.currentThread() && !Thread.interrupted()){
+				sample();
+				deadline += period;
+				long after = System.nanoTime();
+				if (after - deadline > 0){
+					deadline += ((after - deadline) / period + 1) * period;
+				}
+				LockSupport.parkNanos(deadline - after);
+			}
+		} finally {
+			synchronized (this){
+				if (detector == Thread.currentThread()){
+					detecting = false;
+					detector = null;
+				}
+			}
+		}
+	}
+	
+	private void sample(){
+		long now = System.nanoTime();
+		try {
+			boolean pressed = this.getValue(SYSFS_VALUE_INDEX) != 0;
+			if (pressed != detectedPressed){
+				detectedPressed = pressed;
+				for (TouchListener listener : listeners){
+					try {
+						if (pressed){
+							listener.touchPressed(this, now);
+						} else {
+							listener.touchReleased(this, now);
+						}
+					} catch (RuntimeException e){
+						logger.warn("Touch listener failed", e);
+					}
+				}
+			}
+		} catch (EV3LibraryException e){
+			logger.debug("Touch sensor sample failed", e);
+		} catch (RuntimeException e){
+			logger.warn("Touch sensor sample failed", e);
 		}
-		String str = this.getAttribute("value" + SYSFS_VALUE_INDEX);
-		return str.equals("1");
 	}
 	
 	/**
@@ -101,15 +101,8 @@ public class UltrasonicSensor extends Sensor {
 	 * @throws InvalidModeException The mode selected wasn't valid, or <b>Auto Switch Mode</b> has disabled.
 	 */
 	public float getDistanceCentimeters() throws EV3LibraryException, InvalidModeException{
-		if (!this.getMode().equals(SYSFS_CM_MODE)){
-			if (autoSwitchMode){
-				this.setMode(SYSFS_CM_MODE);
-			} else {
-				throw new InvalidModeException("[Auto-switch is off] You are not using a correct mode(" + SYSFS_CM_MODE + ")! Yours: " + this.getMode());
-			}
-		}
-		String str = this.getAttribute("value" + SYSFS_CM_VALUE_INDEX);
-		return Float.parseFloat(str);
+		this.ensureMode(SYSFS_CM_MODE, autoSwitchMode);
+		return this.getValue(SYSFS_CM_VALUE_INDEX);
 	}
 	
 	/**
@@ -119,15 +112,8 @@ public class UltrasonicSensor extends Sensor {
 	 * @throws InvalidModeException The mode selected wasn't valid, or <b>Auto Switch Mode</b> has disabled.
 	 */
 	public float getDistanceInches() throws EV3LibraryException, InvalidModeException{
-		if (!this.getMode().equals(SYSFS_IN_MODE)){
-			if (autoSwitchMode){
-				this.setMode(SYSFS_IN_MODE);
-			} else {
-				throw new InvalidModeException("[Auto-switch is off] You are not using a correct mode(" + SYSFS_IN_MODE + ")! Yours: " + this.getMode());
-			}
-		}
-		String str = this.getAttribute("value" + SYSFS_IN_VALUE_INDEX);
-		return Float.parseFloat(str);
+		this.ensureMode(SYSFS_IN_MODE, autoSwitchMode);
+		return this.getValue(SYSFS_IN_VALUE_INDEX);
 	}
 	
 	/**
@@ -137,14 +123,8 @@ public class UltrasonicSensor extends Sensor {
 	 * @throws InvalidModeException The mode selected wasn't valid, or <b>Auto Switch Mode</b> has disabled.
 	 */
 	public boolean isOtherSensorPresent() throws EV3LibraryException, InvalidModeException{
-		if (!this.getMode().equals(SYSFS_OTHER_PRESENT_MODE)){
-			if (autoSwitchMode){
-				this.setMode(SYSFS_OTHER_PRESENT_MODE);
-			} else {
-				throw new InvalidModeException("[Auto-switch is off] You are not using a correct mode(" + SYSFS_OTHER_PRESENT_MODE + ")! Yours: " + this.getMode());
-			}
-		}
-		String str = this.getAttribute("value" + SYSFS_OTHER_PRESENT_VALUE_INDEX);
+		this.ensureMode(SYSFS_OTHER_PRESENT_MODE, autoSwitchMode);
+		String str = this.getAttribute(getValueProperty(SYSFS_OTHER_PRESENT_VALUE_INDEX));
 		return str.equals("1");
 	}
 	
@@ -277,6 +277,19 @@ public class PixyCmucam5Sensor extends I2CSensor {
 		return modeSig(7);
 	}
 	
+	/**
+	 * Reads all the values of the detected block of the current mode in one pass.<br>
+	 * <br>
+	 * Mode <code>ALL</code> stores 6 values, at the <code>MODE_ALL_*_VALUE_INDEX</code> indexes.<br>
+	 * Mode <code>SIG[N]</code> stores 5 values, at the <code>MODE_SIG_*_VALUE_INDEX</code> indexes.
+	 * @param dest The destination array, at least 6 long for mode <code>ALL</code>, 5 for mode <code>SIG[N]</code>
+	 * @return The number of values read
+	 * @throws EV3LibraryException If I/O goes wrong
+	 */
+	public int readBlock(int[] dest) throws EV3LibraryException{
+		return readValues(dest);
+	}
+	
 	/**
 	 * A class to communicate with Pixy Cmucam 5 using mode ALL
 	 * @author Anthony
@@ -300,7 +313,7 @@ public class PixyCmucam5Sensor extends I2CSensor {
 		 * @throws EV3LibraryException
 		 */
 		private void fixMode() throws EV3LibraryException{
-			String currMode = getMode();
+			String currMode = getCachedMode();
 			if (!currMode.equals(mode)){
 				if (autoSwitchMode){
 					setMode(mode);
@@ -310,6 +323,17 @@ public class PixyCmucam5Sensor extends I2CSensor {
 			}
 		}
 		
+		/**
+		 * Reads all the values of the detected block in one pass.
+		 * @param dest The destination array
+		 * @return The number of values read
+		 * @throws EV3LibraryException If I/O goes wrong
+		 */
+		public int readBlock(int[] dest) throws EV3LibraryException{
+			fixMode();
+			return PixyCmucam5Sensor.this.readBlock(dest);
+		}
+		
 		/**
 		 * Sets whether it should switch mode automatically if the mode is invalid.<br>
 		 * By default, it will auto switch mode.
@@ -334,7 +358,7 @@ public class PixyCmucam5Sensor extends I2CSensor {
 		 */
 		public byte getSignatureLowByte() throws EV3LibraryException{
 			fixMode();
-			String str = getAttribute("value" + MODE_ALL_SIG_LOW_BYTE_VALUE_INDEX);
+			String str = getAttribute(getValueProperty(MODE_ALL_SIG_LOW_BYTE_VALUE_INDEX));
 			return Byte.parseByte(str);
 		}
 		
@@ -345,7 +369,7 @@ public class PixyCmucam5Sensor extends I2CSensor {
 		 */
 		public byte getSignatureHighByte() throws EV3LibraryException{
 			fixMode();
-			String str = getAttribute("value" + MODE_ALL_SIG_HIGH_BYTE_VALUE_INDEX);
+			String str = getAttribute(getValueProperty(MODE_ALL_SIG_HIGH_BYTE_VALUE_INDEX));
 			return Byte.parseByte(str);
 		}
 		
@@ -356,8 +380,7 @@ public class PixyCmucam5Sensor extends I2CSensor {
 		 */
 		public int getX() throws EV3LibraryException{
 			fixMode();
-			String str = getAttribute("value" + MODE_ALL_X_VALUE_INDEX);
-			return Integer.parseInt(str);
+			return getIntAttribute(getValueProperty(MODE_ALL_X_VALUE_INDEX));
 		}
 		
 		/**
@@ -367,8 +390,7 @@ public class PixyCmucam5Sensor extends I2CSensor {
 		 */
 		public int getY() throws EV3LibraryException{
 			fixMode();
-			String str = getAttribute("value" + MODE_ALL_Y_VALUE_INDEX);
-			return Integer.parseInt(str);
+			return getIntAttribute(getValueProperty(MODE_ALL_Y_VALUE_INDEX));
 		}
 		
 		/**
@@ -378,8 +400,7 @@ public class PixyCmucam5Sensor extends I2CSensor {
 		 */
 		public int getWidth() throws EV3LibraryException{
 			fixMode();
-			String str = getAttribute("value" + MODE_ALL_WIDTH_VALUE_INDEX);
-			return Integer.parseInt(str);
+			return getIntAttribute(getValueProperty(MODE_ALL_WIDTH_VALUE_INDEX));
 		}
 		
 		/**
@@ -389,8 +410,7 @@ public class PixyCmucam5Sensor extends I2CSensor {
 		 */
 		public int getHeight() throws EV3LibraryException{
 			fixMode();
-			String str = getAttribute("value" + MODE_ALL_HEIGHT_VALUE_INDEX);
-			return Integer.parseInt(str);
+			return getIntAttribute(getValueProperty(MODE_ALL_HEIGHT_VALUE_INDEX));
 		}
 	}
 	
@@ -417,7 +437,7 @@ public class PixyCmucam5Sensor extends I2CSensor {
 		 * @throws EV3LibraryException
 		 */
 		private void fixMode() throws EV3LibraryException{
-			String currMode = getMode();
+			String currMode = getCachedMode();
 			if (!currMode.equals(mode)){
 				if (autoSwitchMode){
 					setMode(mode);
@@ -427,6 +447,17 @@ public class PixyCmucam5Sensor extends I2CSensor {
 			}
 		}
 		
+		/**
+		 * Reads all the values of the detected block in one pass.
+		 * @param dest The destination array
+		 * @return The number of values read
+		 * @throws EV3LibraryException If I/O goes wrong
+		 */
+		public int readBlock(int[] dest) throws EV3LibraryException{
+			fixMode();
+			return PixyCmucam5Sensor.this.readBlock(dest);
+		}
+		
 		/**
 		 * Sets whether it should switch mode automatically if the mode is invalid.<br>
 		 * By default, it will auto switch mode.
@@ -451,7 +482,7 @@ public class PixyCmucam5Sensor extends I2CSensor {
 		 */
 		public byte getCount() throws EV3LibraryException{
 			fixMode();
-			String str = getAttribute("value" + MODE_SIG_COUNT_VALUE_INDEX);
+			String str = getAttribute(getValueProperty(MODE_SIG_COUNT_VALUE_INDEX));
 			return Byte.parseByte(str);
 		}
 		
@@ -462,8 +493,7 @@ public class PixyCmucam5Sensor extends I2CSensor {
 		 */
 		public int getX() throws EV3LibraryException{
 			fixMode();
-			String str = getAttribute("value" + MODE_SIG_X_VALUE_INDEX);
-			return Integer.parseInt(str);
+			return getIntAttribute(getValueProperty(MODE_SIG_X_VALUE_INDEX));
 		}
 		
 		/**
@@ -473,8 +503,7 @@ public class PixyCmucam5Sensor extends I2CSensor {
 		 */
 		public int getY() throws EV3LibraryException{
 			fixMode();
-			String str = getAttribute("value" + MODE_SIG_Y_VALUE_INDEX);
-			return Integer.parseInt(str);
+			return getIntAttribute(getValueProperty(MODE_SIG_Y_VALUE_INDEX));
 		}
 		
 		/**
@@ -484,8 +513,7 @@ public class PixyCmucam5Sensor extends I2CSensor {
 		 */
 		public int getWidth() throws EV3LibraryException{
 			fixMode();
-			String str = getAttribute("value" + MODE_SIG_WIDTH_VALUE_INDEX);
-			return Integer.parseInt(str);
+			return getIntAttribute(getValueProperty(MODE_SIG_WIDTH_VALUE_INDEX));
 		}
 		
 		/**
@@ -495,8 +523,7 @@ public class PixyCmucam5Sensor extends I2CSensor {
 		 */
 		public int getHeight() throws EV3LibraryException{
 			fixMode();
-			String str = getAttribute("value" + MODE_SIG_HEIGHT_VALUE_INDEX);
-			return Integer.parseInt(str);
+			return getIntAttribute(getValueProperty(MODE_SIG_HEIGHT_VALUE_INDEX));
 		}
 	}
 
@@ -125,8 +125,7 @@ public class ADCAdapter extends Sensor {
 	public int getCh1Volt() throws EV3LibraryException{
 		String mode = getAttribute(SYSFS_PROPERTY_MODE);
 		if (mode.equals(MODE_CH1_VOLTAGE) || mode.equals(MODE_ALL_VOLTAGE)){
-			String str = getAttribute(PROPERTY_PREFIX + INDEX_MODE_CH1_VOLTAGE);
-			return Integer.parseInt(str);
+			return getIntAttribute(PROPERTY_PREFIX + INDEX_MODE_CH1_VOLTAGE);
 		} else {
 			throw new InvalidModeException("The Channel 1 voltage property cannot be accessed if the mode is not \"" + MODE_CH1_VOLTAGE + "\" or \"" + MODE_ALL_VOLTAGE + "\"");
 		}
@@ -140,8 +139,7 @@ public class ADCAdapter extends Sensor {
 	public int getCh2Volt() throws EV3LibraryException{
 		String mode = getAttribute(SYSFS_PROPERTY_MODE);
 		if (mode.equals(MODE_CH2_VOLTAGE) || mode.equals(MODE_ALL_VOLTAGE)){
-			String str = getAttribute(PROPERTY_PREFIX + (mode.equals(MODE_ALL_VOLTAGE) ? INDEX_MODE_ALL_CH2_VOLTAGE : INDEX_MODE_CH1_VOLTAGE));
-			return Integer.parseInt(str);
+			return getIntAttribute(PROPERTY_PREFIX + (mode.equals(MODE_ALL_VOLTAGE) ? INDEX_MODE_ALL_CH2_VOLTAGE : INDEX_MODE_CH1_VOLTAGE));
 		} else {
 			throw new InvalidModeException("The Channel 2 voltage property cannot be accessed if the mode is not \"" + MODE_CH2_VOLTAGE + "\" or \"" + MODE_ALL_VOLTAGE + "\"");
 		}
@@ -84,8 +84,7 @@ public class EV3AnalogSensor extends Sensor {
 	 * @return The voltage
 	 */
 	public int getRawValue() throws EV3LibraryException{
-		String str = getAttribute("value" + VALUE_INDEX);
-		return Integer.parseInt(str);
+		return getIntAttribute(getValueProperty(VALUE_INDEX));
 	}
 	
 	/**
@@ -218,8 +218,7 @@ public class HTNXTColorSensor extends I2CSensor {
 	 * @return a integer from 0 to 17
 	 */
 	public int getColor(){
-		String str = getAttribute(VALUE_PREFIX + INDEX_MODE_COLOR_COLOR);
-		return Integer.parseInt(str);
+		return getIntAttribute(VALUE_PREFIX + INDEX_MODE_COLOR_COLOR);
 	}
 	
 	/**
@@ -229,8 +228,7 @@ public class HTNXTColorSensor extends I2CSensor {
 	 * @return a integer from 0 to 255
 	 */
 	public int getReflectedLightIntensity(){
-		String str = getAttribute(VALUE_PREFIX + INDEX_REFLECTED);
-		return Integer.parseInt(str);
+		return getIntAttribute(VALUE_PREFIX + INDEX_REFLECTED);
 	}
 	
 	/**
@@ -240,15 +238,29 @@ public class HTNXTColorSensor extends I2CSensor {
 	 * @return
 	 */
 	public int getRedComponent(){
-		String mode = getMode();
-		String str;
+		String mode = getCachedMode();
 		if (mode.equals(MODE_ALL)){
-			str = getAttribute(VALUE_PREFIX + INDEX_MODE_ALL_RED);
+			return getIntAttribute(VALUE_PREFIX + INDEX_MODE_ALL_RED);
 		} else if (mode.equals(MODE_RAW) || mode.equals(MODE_NORM)){
-			str = getAttribute(VALUE_PREFIX + INDEX_RED_COMP);
+			return getIntAttribute(VALUE_PREFIX + INDEX_RED_COMP);
 		} else {
 			throw new EV3LibraryException("The function does not support with the current mode: " + mode);
 		}
-		return Integer.parseInt(str);
+	}
+	
+	/**
+	 * <b>This function requires mode <code>ALL</code>.</b><br>
+	 * <br>
+	 * Reads the color value, red, green and blue components in one pass.
+	 * @param dest The destination array, at least 4 long. The values are stored at <code>INDEX_MODE_ALL_COLOR</code>,
+	 *  <code>INDEX_MODE_ALL_RED</code>, <code>INDEX_MODE_ALL_GREEN</code> and <code>INDEX_MODE_ALL_BLUE</code>
+	 * @throws EV3LibraryException If I/O goes wrong, or the mode is not <code>ALL</code>
+	 */
+	public void readAll(int[] dest) throws EV3LibraryException{
+		if (dest.length < 4){
+			throw new IllegalArgumentException("The destination array must be at least 4 long");
+		}
+		ensureMode(MODE_ALL, false);
+		readValues(dest);
 	}
 }
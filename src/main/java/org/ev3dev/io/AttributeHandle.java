@@ -0,0 +1,242 @@
+/*******************************************************************************
+ * Any modification, copies of sections of this file must be attached with this
+ * license and shown clearly in the developer's project. The code can be used
+ * as long as you state clearly you do not own it. Any violation might result in
+ *  a take-down.
+ *
+ * MIT License
+ *
+ * Copyright (c) 2016, 2017 Anthony Law
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *******************************************************************************/
+package org.ev3dev.io;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/***
+ * A resolved Sysfs attribute path (e.g. <code>/sys/class/tacho-motor/motor0/position</code>).
+ *  The path is built only once, and reads/writes go straight to the held-open descriptor of the attribute,
+ *  so the hot path does no string building. Handles are obtained from <code>Sysfs.getAttributeHandle()</code>.
+ * @author Anthony
+ *
+ */
+public final class AttributeHandle {
+	
+	private final String path;
+	
+	private SysfsHandle handle = null;
+	
+	AttributeHandle(String path){
+		this.path = path;
+	}
+	
+	/**
+	 * Returns the full path of this attribute
+	 * @return The attribute path
+	 */
+	public String getPath(){
+		return path;
+	}
+	
+	private SysfsHandle current(){
+		SysfsHandle h = handle;
+		if (h == null || h.isClosed()){
+			h = Sysfs.getHandle(path);
+			handle = h;
+		}
+		return h;
+	}
+	
+	/***
+	 * Reads the value of this attribute.
+	 * @return The value of the attribute
+	 * @throws FileNotFoundException If the attribute isn't exist.
+	 * @throws IOException If the API couldn't read the attribute
+	 */
+	public String readString() throws FileNotFoundException, IOException{
+		if (!Sysfs.isCachedHandlesEnabled()){
+			return Sysfs.readStringPath(path);
+		}
+		SysfsHandle h = current();
+		try {
+			return h.readString();
+		} catch (IOException e){
+			Sysfs.handleFailed(h);
+			throw e;
+		}
+	}
+	
+	/***
+	 * Reads the value of this attribute as a decimal integer, without creating any <code>String</code>.
+	 * @return The value of the attribute
+	 * @throws FileNotFoundException If the attribute isn't exist.
+	 * @throws IOException If the API couldn't read the attribute
+	 * @throws NumberFormatException If the attribute isn't a decimal integer
+	 */
+	public long readLong() throws FileNotFoundException, IOException{
+		if (!Sysfs.isCachedHandlesEnabled()){
+			return Sysfs.readLongPath(path);
+		}
+		SysfsHandle h = current();
+		try {
+			return h.readLong();
+		} catch (IOException e){
+			Sysfs.handleFailed(h);
+			throw e;
+		}
+	}
+	
+	/***
+	 * Reads the value of this attribute as a decimal integer, without creating any <code>String</code>.
+	 * @return The value of the attribute
+	 * @throws FileNotFoundException If the attribute isn't exist.
+	 * @throws IOException If the API couldn't read the attribute
+	 * @throws NumberFormatException If the attribute isn't a decimal integer, or out of the integer range
+	 */
+	public int readInt() throws FileNotFoundException, IOException{
+		return Sysfs.toInt(readLong());
+	}
+	
+	/***
+	 * Reads the value of this fixed-point attribute (e.g. <code>value[N]</code>).
+	 * @param decimals The number of decimal places
+	 * @return The value of the attribute divided by 10 ^ decimals
+	 * @throws FileNotFoundException If the attribute isn't exist.
+	 * @throws IOException If the API couldn't read the attribute
+	 * @throws NumberFormatException If the attribute isn't a decimal integer
+	 */
+	public float readFixedPoint(int decimals) throws FileNotFoundException, IOException{
+		return Sysfs.toFixedPoint(readLong(), decimals);
+	}
+	
+	/***
+	 * Reads the raw bytes of this attribute (e.g. <code>bin_data</code>) into the buffer specified, without decoding.
+	 * @param dest The destination buffer. As many bytes as it has remaining are copied, and its position is advanced.
+	 * @return The number of bytes copied
+	 * @throws FileNotFoundException If the attribute isn't exist.
+	 * @throws IOException If the API couldn't read the attribute
+	 */
+	public int readBytes(ByteBuffer dest) throws FileNotFoundException, IOException{
+		boolean cached = Sysfs.isCachedHandlesEnabled();
+		SysfsHandle h = cached ? current() : new SysfsHandle(path);
+		try {
+			return h.readInto(dest);
+		} catch (IOException e){
+			if (cached){
+				Sysfs.handleFailed(h);
+			}
+			throw e;
+		} finally {
+			if (!cached){
+				h.close();
+			}
+		}
+	}
+	
+	/***
+	 * Writes the value of this attribute.
+	 * @param new_value The new value of the attribute
+	 * @throws FileNotFoundException If the attribute isn't exist.
+	 * @throws IOException If the API couldn't write the attribute
+	 */
+	public void writeString(String new_value) throws FileNotFoundException, IOException{
+		if (!Sysfs.isCachedHandlesEnabled()){
+			Sysfs.writeStringPath(path, new_value);
+			return;
+		}
+		SysfsHandle h = current();
+		try {
+			h.writeString(new_value);
+		} catch (IOException e){
+			Sysfs.handleFailed(h);
+			throw e;
+		}
+	}
+	
+	/***
+	 * Writes a decimal integer to this attribute, without creating any <code>String</code>.
+	 * @param new_value The new value of the attribute
+	 * @throws FileNotFoundException If the attribute isn't exist.
+	 * @throws IOException If the API couldn't write the attribute
+	 */
+	public void writeInt(int new_value) throws FileNotFoundException, IOException{
+		if (!Sysfs.isCachedHandlesEnabled()){
+			Sysfs.writeLongPath(path, new_value);
+			return;
+		}
+		SysfsHandle h = current();
+		try {
+			h.writeLong(new_value);
+		} catch (IOException e){
+			Sysfs.handleFailed(h);
+			throw e;
+		}
+	}
+	
+	/***
+	 * Writes the remaining bytes of the buffer to this attribute, in a single write. This is meant for values that
+	 *  are encoded once and written many times (e.g. motor commands); the buffer position is advanced.
+	 * @param data The encoded value
+	 * @throws FileNotFoundException If the attribute isn't exist.
+	 * @throws IOException If the API couldn't write the attribute
+	 */
+	public void write(ByteBuffer data) throws FileNotFoundException, IOException{
+		boolean cached = Sysfs.isCachedHandlesEnabled();
+		SysfsHandle h = cached ? current() : new SysfsHandle(path);
+		try {
+			h.write(data);
+		} catch (IOException e){
+			if (cached){
+				Sysfs.handleFailed(h);
+			}
+			throw e;
+		} finally {
+			if (!cached){
+				h.close();
+			}
+		}
+	}
+	
+	/***
+	 * Opens the write descriptor of this attribute in advance, so the next write doesn't pay for the open.
+	 *  This does nothing if cached handles are disabled.
+	 * @throws FileNotFoundException If the attribute isn't exist.
+	 * @throws IOException If the API couldn't open the attribute
+	 */
+	public void openForWrite() throws FileNotFoundException, IOException{
+		if (!Sysfs.isCachedHandlesEnabled()){
+			return;
+		}
+		SysfsHandle h = current();
+		try {
+			h.openForWrite();
+		} catch (IOException e){
+			Sysfs.handleFailed(h);
+			throw e;
+		}
+	}
+	
+	@Override
+	public String toString(){
+		return path;
+	}
+}
@@ -0,0 +1,207 @@
+/*******************************************************************************
+ * Any modification, copies of sections of this file must be attached with this
+ * license and shown clearly in the developer's project. The code can be used
+ * as long as you state clearly you do not own it. Any violation might result in
+ *  a take-down.
+ *
+ * MIT License
+ *
+ * Copyright (c) 2016, 2017 Anthony Law
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *******************************************************************************/
+package org.ev3dev.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * A process-wide index of the device nodes inside the Sysfs classes, with an <code>address -&gt; classFullName</code>
+ *  lookup (e.g. <code>outA -&gt; motor0</code>).<br>
+ * <br>
+ * The device classes are enumerated once, on the first lookup. Afterwards, a class is refreshed incrementally
+ *  (the <code>address</code> of every node is read again, removed nodes are dropped) when the lookup misses,
+ *  when a cached node disappeared, or when the <code>DeviceWatcher</code> reported a change. As ev3dev reuses the
+ *  node names, the <code>address</code> of a cached node is read again on every hit.
+ * @author Anthony
+ *
+ */
+public final class DeviceIndex {
+	
+	/**
+	 * The Sysfs classes enumerated on the first lookup
+	 */
+	public static final String[] DEFAULT_CLASSES = {"lego-port", "tacho-motor", "dc-motor", "servo-motor", "lego-sensor", "leds"};
+	
+	private static final HashMap<String, ClassIndex> classes = new HashMap<String, ClassIndex>();
+	
+	private static String indexedSysfsPath = null;
+	
+	private static int scans = 0;
+	
+	private DeviceIndex(){}
+	
+	private static class ClassIndex {
+		
+		private final HashMap<String, String> addressesByNode = new HashMap<String, String>();
+		
+		private final HashMap<String, String> nodesByAddress = new HashMap<String, String>();
+		
+		private long generation = -1;
+	}
+	
+	/**
+	 * Looks up the node (class full name) of the class with the address specified.
+	 * @param class_name The class name (e.g. tacho-motor)
+	 * @param address The port address (e.g. outA)
+	 * @return The node name (e.g. motor0), or null if there is no such device
+	 */
+	public static synchronized String lookup(String class_name, String address){
+		ClassIndex index = getClassIndex(class_name);
+		String node = index.nodesByAddress.get(address);
+		if (node != null){
+			//The node name may have been freed and handed out to a device on another port
+			String current = readAddress(new File(Sysfs.getSysfsPath() + class_name + "/" + node));
+			if (address.equals(current)){
+				return node;
+			}
+			put(index, node, current);
+		}
+		refresh(class_name, index);
+		return index.nodesByAddress.get(address);
+	}
+	
+	/**
+	 * Returns the node names of the class specified (e.g. motor0, motor1)
+	 * @param class_name The class name (e.g. tacho-motor)
+	 * @return The node names
+	 */
+	public static synchronized String[] getNodes(String class_name){
+		ClassIndex index = getClassIndex(class_name);
+		return index.addressesByNode.keySet().toArray(new String[index.addressesByNode.size()]);
+	}
+	
+	/**
+	 * Returns the address of the node specified, as indexed
+	 * @param class_name The class name (e.g. lego-port)
+	 * @param node The node name (e.g. port0)
+	 * @return The address (e.g. in1), or null if unknown
+	 */
+	public static synchronized String getAddress(String class_name, String node){
+		return getClassIndex(class_name).addressesByNode.get(node);
+	}
+	
+	/**
+	 * Refreshes the class specified incrementally.
+	 * @param class_name The class name (e.g. tacho-motor)
+	 */
+	public static synchronized void refresh(String class_name){
+		refresh(class_name, getClassIndex(class_name));
+	}
+	
+	/**
+	 * Drops the whole index. It is re-enumerated on the next lookup.
+	 */
+	public static synchronized void invalidate(){
+		classes.clear();
+		indexedSysfsPath = null;
+	}
+	
+	/**
+	 * Returns the number of class directory scans done so far (for diagnostics)
+	 * @return The number of scans
+	 */
+	public static synchronized int getScanCount(){
+		return scans;
+	}
+	
+	private static ClassIndex getClassIndex(String class_name){
+		String sysfsPath = Sysfs.getSysfsPath();
+		if (!sysfsPath.equals(indexedSysfsPath)){
+			classes.clear();
+			indexedSysfsPath = sysfsPath;
+			for (String name : DEFAULT_CLASSES){
+				ClassIndex index = new ClassIndex();
+				classes.put(name, index);
+				refresh(name, index);
+			}
+		}
+		ClassIndex index = classes.get(class_name);
+		if (index == null){
+			index = new ClassIndex();
+			classes.put(class_name, index);
+			refresh(class_name, index);
+		} else if (index.generation != DeviceWatcher.getGeneration()){
+			refresh(class_name, index);
+		}
+		return index;
+	}
+	
+	private static void refresh(String class_name, ClassIndex index){
+		index.generation = DeviceWatcher.getGeneration();
+		scans++;
+		
+		File[] files = Sysfs.getAllSubClass(class_name);
+		HashMap<String, File> present = new HashMap<String, File>();
+		if (files != null){
+			for (File file : files){
+				present.put(file.getName(), file);
+			}
+		}
+		
+		Iterator<Map.Entry<String, String>> it = index.addressesByNode.entrySet().iterator();
+		while (it.hasNext()){
+			Map.Entry<String, String> entry = it.next();
+			if (!present.containsKey(entry.getKey())){
+				if (entry.getValue() != null && entry.getKey().equals(index.nodesByAddress.get(entry.getValue()))){
+					index.nodesByAddress.remove(entry.getValue());
+				}
+				it.remove();
+			}
+		}
+		
+		for (Map.Entry<String, File> entry : present.entrySet()){
+			put(index, entry.getKey(), readAddress(entry.getValue()));
+		}
+	}
+	
+	private static void put(ClassIndex index, String node, String address){
+		String old = index.addressesByNode.put(node, address);
+		if (old != null && !old.equals(address) && node.equals(index.nodesByAddress.get(old))){
+			index.nodesByAddress.remove(old);
+		}
+		if (address != null){
+			index.nodesByAddress.put(address, node);
+		}
+	}
+	
+	private static String readAddress(File node){
+		SysfsHandle handle = new SysfsHandle(node.getPath() + "/address");
+		try {
+			return handle.readString();
+		} catch (IOException e){
+			return null;
+		} finally {
+			handle.close();
+		}
+	}
+}
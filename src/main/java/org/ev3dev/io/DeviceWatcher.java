@@ -0,0 +1,176 @@
+/*******************************************************************************
+ * Any modification, copies of sections of this file must be attached with this
+ * license and shown clearly in the developer's project. The code can be used
+ * as long as you state clearly you do not own it. Any violation might result in
+ *  a take-down.
+ *
+ * MIT License
+ *
+ * Copyright (c) 2016, 2017 Anthony Law
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *******************************************************************************/
+package org.ev3dev.io;
+
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A single process-wide watcher of the Sysfs class directories (e.g. <code>/sys/class/tacho-motor</code>).
+ *  Threads waiting for a device to appear wait on the watcher instead of listing the class directory in a loop.<br>
+ * <br>
+ * The watcher thread uses a <code>WatchService</code> on the watched directories, and bumps a generation counter on every
+ *  change. Since not every file-system reports changes (Sysfs may not), waiters must always re-check with a bounded
+ *  exponential back-off, see <code>nextBackoff()</code>.
+ * @author Anthony
+ *
+ */
+public final class DeviceWatcher {
+	
+	/**
+	 * The first back-off delay of a waiter, in milliseconds
+	 */
+	public static final long MIN_BACKOFF_MILLIS = 10;
+	
+	/**
+	 * The maximum back-off delay of a waiter, in milliseconds
+	 */
+	public static final long MAX_BACKOFF_MILLIS = 500;
+	
+	private static final Object lock = new Object();
+	
+	private static final Set<String> watched = new HashSet<String>();
+	
+	private static long generation = 0;
+	
+	private static WatchService watchService = null;
+	
+	private static boolean watchServiceFailed = false;
+	
+	private DeviceWatcher(){}
+	
+	/**
+	 * Starts watching the Sysfs class directory specified. Does nothing if it is already watched.
+	 * @param class_name The class name (e.g. tacho-motor)
+	 */
+	public static void watch(String class_name){
+		String dir = Sysfs.getSysfsPath() + class_name;
+		synchronized (lock){
+			if (watchServiceFailed || !watched.add(dir)){
+				return;
+			}
+			try {
+				if (watchService == null){
+					watchService = FileSystems.getDefault().newWatchService();
+					Thread thread = new Thread(new Runnable(){
+						@Override
+						public void run() {
+							watchLoop();
+						}
+					}, "ev3dev-device-watcher");
+					thread.setDaemon(true);
+					thread.start();
+				}
+				Path path = Paths.get(dir);
+				path.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_DELETE);
+			} catch (IOException e){
+				watched.remove(dir);
+			} catch (UnsupportedOperationException e){
+				watchServiceFailed = true;
+			}
+		}
+	}
+	
+	/**
+	 * Returns the current change generation. Read it <b>before</b> checking for a device, and pass it to
+	 *  <code>awaitChange()</code>, so that a change happening in between is not missed.
+	 * @return The change generation
+	 */
+	public static long getGeneration(){
+		synchronized (lock){
+			return generation;
+		}
+	}
+	
+	/**
+	 * Notifies all waiters that something changed (e.g. a device was found by other means).
+	 */
+	public static void notifyChange(){
+		synchronized (lock){
+			generation++;
+			lock.notifyAll();
+		}
+	}
+	
+	/**
+	 * Waits until the generation differs from the one specified, or the timeout elapses.
+	 * @param generation The generation read by <code>getGeneration()</code>
+	 * @param timeout The maximum time to wait
+	 * @param unit The time unit of the timeout
+	 * @return Whether a change happened
+	 * @throws InterruptedException If the current thread is interrupted
+	 */
+	public static boolean awaitChange(long generation, long timeout, TimeUnit unit) throws InterruptedException{
+		long deadline = System.nanoTime() + unit.toNanos(timeout);
+		synchronized (lock){
+			while (DeviceWatcher.generation == generation){
+				long remaining = deadline - System.nanoTime();
+				if (remaining <= 0){
+					return false;
+				}
+				TimeUnit.NANOSECONDS.timedWait(lock, remaining);
+			}
+			return true;
+		}
+	}
+	
+	/**
+	 * Returns the next back-off delay of a waiter: doubled, and bounded by <code>MAX_BACKOFF_MILLIS</code>.
+	 * @param backoff The current back-off delay in milliseconds, or 0 for the first one
+	 * @return The next back-off delay in milliseconds
+	 */
+	public static long nextBackoff(long backoff){
+		if (backoff < MIN_BACKOFF_MILLIS){
+			return MIN_BACKOFF_MILLIS;
+		}
+		return Math.min(backoff * 2, MAX_BACKOFF_MILLIS);
+	}
+	
+	private static void watchLoop(){
+		while (true){
+			WatchKey key;
+			try {
+				key = watchService.take();
+			} catch (InterruptedException e){
+				return;
+			}
+			key.pollEvents();
+			key.reset();
+			notifyChange();
+		}
+	}
+}
@@ -36,7 +36,10 @@ import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.PrintWriter;
 import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 /***
  * A class for reading/writing to the EV3 driver system classes
@@ -54,6 +57,33 @@ public class Sysfs {
 	
 	private static boolean incompat_check = true;
 	
+	/**
+	 * The default maximum number of attribute handles to be held open
+	 */
+	public static final int DEFAULT_MAX_CACHED_HANDLES = 64;
+	
+	private static final double[] POWERS_OF_TEN = {1, 10, 100, 1000, 10000, 100000, 1000000, 10000000, 100000000, 1000000000};
+	
+	private static final Object handleLock = new Object();
+	
+	private static boolean cachedHandles = true;
+	
+	private static int maxCachedHandles = DEFAULT_MAX_CACHED_HANDLES;
+	
+	private static final LinkedHashMap<String, SysfsHandle> handles = new LinkedHashMap<String, SysfsHandle>(16, 0.75f, true){
+		
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, SysfsHandle> eldest){
+			if (size() > maxCachedHandles){
+				eldest.getValue().evict();
+				return true;
+			}
+			return false;
+		}
+	};
+	
 	/**
 	 * Sets the library incompatibility check to be enabled or not
 	 * @param enabled Enabled
@@ -70,6 +100,138 @@ public class Sysfs {
 		return incompat_check;
 	}
 	
+	/**
+	 * Sets whether attribute handles should be held open and re-read from position 0, instead of
+	 *  opening and closing the attribute file on every read. Disabling this closes all cached handles.<br>
+	 * (Default: enabled)
+	 * @param enabled Enabled
+	 */
+	public static void setCachedHandlesEnabled(boolean enabled){
+		synchronized (handleLock){
+			cachedHandles = enabled;
+			if (!enabled){
+				closeAllHandles();
+			}
+		}
+	}
+	
+	/**
+	 * Returns whether attribute handles are held open
+	 * @return Boolean
+	 */
+	public static boolean isCachedHandlesEnabled(){
+		synchronized (handleLock){
+			return cachedHandles;
+		}
+	}
+	
+	/**
+	 * Sets the maximum number of attribute handles to be held open. The least recently used handles are closed when it is exceeded.
+	 * @param max The maximum number of open handles, must be at least 1
+	 */
+	public static void setMaxCachedHandles(int max){
+		if (max < 1){
+			throw new IllegalArgumentException("The maximum number of cached handles must be at least 1");
+		}
+		synchronized (handleLock){
+			maxCachedHandles = max;
+			Iterator<SysfsHandle> it = handles.values().iterator();
+			while (handles.size() > maxCachedHandles && it.hasNext()){
+				it.next().evict();
+				it.remove();
+			}
+		}
+	}
+	
+	/**
+	 * Returns the maximum number of attribute handles to be held open
+	 * @return The maximum number of open handles
+	 */
+	public static int getMaxCachedHandles(){
+		synchronized (handleLock){
+			return maxCachedHandles;
+		}
+	}
+	
+	/**
+	 * Returns the number of attribute handles currently held open
+	 * @return The number of open handles
+	 */
+	public static int getCachedHandlesCount(){
+		synchronized (handleLock){
+			return handles.size();
+		}
+	}
+	
+	/**
+	 * Closes all cached handles of the class and subclass specified (e.g. when the device <code>motor0</code> disconnected)
+	 * @param class_name The class name
+	 * @param subclass The Sub-class name
+	 */
+	public static void invalidateHandles(String class_name, String subclass){
+		invalidateDirectory(SYSTEM_CLASS_PATH + class_name + "/" + subclass);
+	}
+	
+	/**
+	 * Closes all cached handles
+	 */
+	public static void closeAllHandles(){
+		synchronized (handleLock){
+			for (SysfsHandle handle : handles.values()){
+				handle.evict();
+			}
+			handles.clear();
+		}
+	}
+	
+	private static void invalidateDirectory(String directory){
+		String prefix = directory.endsWith("/") ? directory : directory + "/";
+		synchronized (handleLock){
+			Iterator<Map.Entry<String, SysfsHandle>> it = handles.entrySet().iterator();
+			Map.Entry<String, SysfsHandle> entry;
+			while (it.hasNext()){
+				entry = it.next();
+				if (entry.getKey().startsWith(prefix)){
+					entry.getValue().close();
+					it.remove();
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Returns the cached handle of the path, creates one if it does not exist
+	 * @param path The full attribute path
+	 * @return The handle
+	 */
+	static SysfsHandle getHandle(String path){
+		synchronized (handleLock){
+			SysfsHandle handle = handles.get(path);
+			if (handle == null || handle.isClosed()){
+				handle = new SysfsHandle(path);
+				handles.put(path, handle);
+			}
+			return handle;
+		}
+	}
+	
+	/**
+	 * Removes a handle that failed to do I/O. If the device directory disappeared (device disconnected),
+	 *  all handles of the same device are closed as well.
+	 * @param handle The failed handle
+	 */
+	static void handleFailed(SysfsHandle handle){
+		handle.close();
+		synchronized (handleLock){
+			if (handles.get(handle.getPath()) == handle){
+				handles.remove(handle.getPath());
+			}
+		}
+		if (handle.getDirectory() != null && !handle.getDirectory().exists()){
+			invalidateDirectory(handle.getDirectory().getPath());
+		}
+	}
+	
 	/**
 	 * Get all sub-class files
 	 * @param class_name Main Class Name
@@ -95,6 +257,7 @@ public class Sysfs {
 	 */
 	public static void setSysfsPath(String path){
 		SYSTEM_CLASS_PATH = path;
+		closeAllHandles();
 	}
 	
 	/**
@@ -102,6 +265,29 @@ public class Sysfs {
 	 */
 	public static void resetSysfsPath(){
 		SYSTEM_CLASS_PATH = DEFAULT_SYSTEM_CLASS_PATH;
+		closeAllHandles();
+	}
+	
+	/**
+	 * Resolves a handle of the property of the class specified. The path is built once, and the handle
+	 *  keeps using the same held-open descriptor for further reads and writes.
+	 * @param class_name The class name
+	 * @param property The property name of the class
+	 * @return The attribute handle
+	 */
+	public static AttributeHandle getAttributeHandle(String class_name, String property){
+		return new AttributeHandle(SYSTEM_CLASS_PATH + class_name + "/" + property);
+	}
+	
+	/**
+	 * Resolves a handle of the property of the class and subclass specified.
+	 * @param class_name The class name
+	 * @param subclass The Sub-class name
+	 * @param property The property name of the class
+	 * @return The attribute handle
+	 */
+	public static AttributeHandle getAttributeHandle(String class_name, String subclass, String property){
+		return new AttributeHandle(SYSTEM_CLASS_PATH + class_name + "/" + subclass + "/" + property);
 	}
 	
 	/***
@@ -113,10 +299,20 @@ public class Sysfs {
 	 * @throws IOException If the API couldn't read the class's property
 	 */
 	public static String getAttribute(String class_name, String property) throws FileNotFoundException, IOException{
-		File file = new File(SYSTEM_CLASS_PATH + class_name + "/" + property);
-		class_name = class_name.toLowerCase();
-		property = property.toLowerCase();
-		FileInputStream in = new FileInputStream(file);
+		return readStringPath(SYSTEM_CLASS_PATH + class_name + "/" + property);
+	}
+	
+	static String readStringPath(String path) throws FileNotFoundException, IOException{
+		if (isCachedHandlesEnabled()){
+			SysfsHandle handle = getHandle(path);
+			try {
+				return handle.readString();
+			} catch (IOException e){
+				handleFailed(handle);
+				throw e;
+			}
+		}
+		FileInputStream in = new FileInputStream(path);
 		StringBuilder sb = new StringBuilder();
 		BufferedReader br = null;
 		String line;
@@ -153,6 +349,130 @@ public class Sysfs {
 		return getAttribute(class_name, subclass + "/" + property);
 	}
 	
+	/***
+	 * Reads the property of the class specified as a decimal integer. The digits are parsed directly from a
+	 *  reused buffer, so no <code>String</code> is created.
+	 * @param class_name The class name
+	 * @param property The property name of the class.
+	 * @return The value of the property
+	 * @throws FileNotFoundException If the specified class isn't exist.
+	 * @throws IOException If the API couldn't read the class's property
+	 * @throws NumberFormatException If the property isn't a decimal integer
+	 */
+	public static long readLong(String class_name, String property) throws FileNotFoundException, IOException{
+		return readLongPath(SYSTEM_CLASS_PATH + class_name + "/" + property);
+	}
+	
+	/***
+	 * Reads the property of the class and subclass specified as a decimal integer.
+	 * @param class_name The class name.
+	 * @param subclass The Sub-class name.
+	 * @param property The property name of the class
+	 * @return The value of the property
+	 * @throws FileNotFoundException If the specified class isn't exist.
+	 * @throws IOException If the API couldn't read the class's property
+	 * @throws NumberFormatException If the property isn't a decimal integer
+	 */
+	public static long readLong(String class_name, String subclass, String property) throws FileNotFoundException, IOException{
+		return readLongPath(SYSTEM_CLASS_PATH + class_name + "/" + subclass + "/" + property);
+	}
+	
+	/***
+	 * Reads the property of the class specified as a decimal integer.
+	 * @param class_name The class name
+	 * @param property The property name of the class.
+	 * @return The value of the property
+	 * @throws FileNotFoundException If the specified class isn't exist.
+	 * @throws IOException If the API couldn't read the class's property
+	 * @throws NumberFormatException If the property isn't a decimal integer, or out of the integer range
+	 */
+	public static int readInt(String class_name, String property) throws FileNotFoundException, IOException{
+		return toInt(readLong(class_name, property));
+	}
+	
+	/***
+	 * Reads the property of the class and subclass specified as a decimal integer.
+	 * @param class_name The class name.
+	 * @param subclass The Sub-class name.
+	 * @param property The property name of the class
+	 * @return The value of the property
+	 * @throws FileNotFoundException If the specified class isn't exist.
+	 * @throws IOException If the API couldn't read the class's property
+	 * @throws NumberFormatException If the property isn't a decimal integer, or out of the integer range
+	 */
+	public static int readInt(String class_name, String subclass, String property) throws FileNotFoundException, IOException{
+		return toInt(readLong(class_name, subclass, property));
+	}
+	
+	/***
+	 * Reads the fixed-point property of the class specified, e.g. a <code>value[N]</code> with <code>decimals</code> decimal places.
+	 * @param class_name The class name
+	 * @param property The property name of the class.
+	 * @param decimals The number of decimal places
+	 * @return The value of the property divided by 10 ^ decimals
+	 * @throws FileNotFoundException If the specified class isn't exist.
+	 * @throws IOException If the API couldn't read the class's property
+	 * @throws NumberFormatException If the property isn't a decimal integer
+	 */
+	public static float readFixedPoint(String class_name, String property, int decimals) throws FileNotFoundException, IOException{
+		return toFixedPoint(readLong(class_name, property), decimals);
+	}
+	
+	/***
+	 * Reads the fixed-point property of the class and subclass specified, e.g. a <code>value[N]</code> with <code>decimals</code> decimal places.
+	 * @param class_name The class name.
+	 * @param subclass The Sub-class name.
+	 * @param property The property name of the class
+	 * @param decimals The number of decimal places
+	 * @return The value of the property divided by 10 ^ decimals
+	 * @throws FileNotFoundException If the specified class isn't exist.
+	 * @throws IOException If the API couldn't read the class's property
+	 * @throws NumberFormatException If the property isn't a decimal integer
+	 */
+	public static float readFixedPoint(String class_name, String subclass, String property, int decimals) throws FileNotFoundException, IOException{
+		return toFixedPoint(readLong(class_name, subclass, property), decimals);
+	}
+	
+	/**
+	 * Converts a raw fixed-point value to a float, using the number of decimal places specified
+	 * @param raw The raw value
+	 * @param decimals The number of decimal places
+	 * @return The raw value divided by 10 ^ decimals
+	 */
+	public static float toFixedPoint(long raw, int decimals){
+		if (decimals <= 0){
+			return raw;
+		}
+		if (decimals < POWERS_OF_TEN.length){
+			return (float) ((double) raw / POWERS_OF_TEN[decimals]);
+		}
+		return (float) (raw / Math.pow(10, decimals));
+	}
+	
+	static int toInt(long value){
+		if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE){
+			throw new NumberFormatException("Attribute value out of the integer range: " + value);
+		}
+		return (int) value;
+	}
+	
+	static long readLongPath(String path) throws FileNotFoundException, IOException{
+		boolean cached = isCachedHandlesEnabled();
+		SysfsHandle handle = cached ? getHandle(path) : new SysfsHandle(path);
+		try {
+			return handle.readLong();
+		} catch (IOException e){
+			if (cached){
+				handleFailed(handle);
+			}
+			throw e;
+		} finally {
+			if (!cached){
+				handle.close();
+			}
+		}
+	}
+	
 	/***
 	 * Writes the property of the class and subclass specified.
 	 * @param class_name The class name.
@@ -175,12 +495,69 @@ public class Sysfs {
 	 * @throws IOException If the API couldn't read the class's property
 	 */
 	public static void setAttribute(String class_name, String property, String new_value) throws FileNotFoundException, IOException{
-		PrintWriter out = new PrintWriter(SYSTEM_CLASS_PATH + class_name + "/" + property);
+		writeStringPath(SYSTEM_CLASS_PATH + class_name + "/" + property, new_value);
+	}
+	
+	static void writeStringPath(String path, String new_value) throws FileNotFoundException, IOException{
+		if (isCachedHandlesEnabled()){
+			SysfsHandle handle = getHandle(path);
+			try {
+				handle.writeString(new_value);
+			} catch (IOException e){
+				handleFailed(handle);
+				throw e;
+			}
+			return;
+		}
+		PrintWriter out = new PrintWriter(path);
 		out.write(new_value);
 		out.flush();
 		out.close();
 	}
 	
+	/***
+	 * Writes a decimal integer to the property of the class specified. The digits are formatted into a
+	 *  reused buffer and written to a held-open descriptor, so no <code>String</code> is created.
+	 * @param class_name The class name.
+	 * @param property The property name of the class
+	 * @param new_value The new value of the property
+	 * @throws FileNotFoundException If the specified class isn't exist.
+	 * @throws IOException If the API couldn't write the class's property
+	 */
+	public static void writeInt(String class_name, String property, int new_value) throws FileNotFoundException, IOException{
+		writeLongPath(SYSTEM_CLASS_PATH + class_name + "/" + property, new_value);
+	}
+	
+	/***
+	 * Writes a decimal integer to the property of the class and subclass specified.
+	 * @param class_name The class name.
+	 * @param subclass The Sub-class name.
+	 * @param property The property name of the class
+	 * @param new_value The new value of the property
+	 * @throws FileNotFoundException If the specified class isn't exist.
+	 * @throws IOException If the API couldn't write the class's property
+	 */
+	public static void writeInt(String class_name, String subclass, String property, int new_value) throws FileNotFoundException, IOException{
+		writeLongPath(SYSTEM_CLASS_PATH + class_name + "/" + subclass + "/" + property, new_value);
+	}
+	
+	static void writeLongPath(String path, long new_value) throws FileNotFoundException, IOException{
+		boolean cached = isCachedHandlesEnabled();
+		SysfsHandle handle = cached ? getHandle(path) : new SysfsHandle(path);
+		try {
+			handle.writeLong(new_value);
+		} catch (IOException e){
+			if (cached){
+				handleFailed(handle);
+			}
+			throw e;
+		} finally {
+			if (!cached){
+				handle.close();
+			}
+		}
+	}
+	
 	/***
 	 * A function to separate space from a spaced-array.
 	 * @param space_array A string
@@ -212,51 +589,15 @@ public class Sysfs {
 		return strarr;
 	}
 	
-	private static String readFile(File file) throws IOException{
-		FileInputStream in = new FileInputStream(file);
-		StringBuilder sb = new StringBuilder();
-		BufferedReader br = null;
-		String line;
-		try {
-			br = new BufferedReader(new InputStreamReader(in));
-			while ((line = br.readLine()) != null) {
-				sb.append(line);
-			}
-
-		} catch (IOException e) {
-			throw e;
-		} finally {
-			if (br != null) {
-				try {
-					br.close();
-				} catch (IOException e) {
-					throw e;
-				}
-			}
-		}
-		return sb.toString();
-	}
-	
 	/**
-	 * Search the full class name, using a class name, FS folder prefix and an address
+	 * Search the full class name, using a class name, FS folder prefix and an address. The lookup is served by the
+	 *  shared <code>DeviceIndex</code>, so the class is not listed again on every call.
 	 * @param classname The class Name (e.g. lego-port, tacho-motor)
 	 * @param fsFolderPrefix The FS folder prefix, without the value [N] (e.g. motor, sensor)
 	 * @param address Port address (e.g. outA, in1)
 	 * @return The full FS class folder name, with the same port address, if none, returns null
 	 */
 	public static String searchClassFullName(String classname, String fsFolderPrefix, String address){
-		File[] sub = Sysfs.getAllSubClass(classname);
-		File file;
-		String data;
-		for (File asub : sub){
-			file = new File(asub.getAbsolutePath() + "/address");
-			try {
-				data = readFile(file);
-				if(data.equals(address)){
-					return asub.getName();
-				}
-			} catch (Exception ignore){}
-		}
-		return null;
+		return DeviceIndex.lookup(classname, address);
 	}
 }
@@ -0,0 +1,373 @@
+/*******************************************************************************
+ * Any modification, copies of sections of this file must be attached with this
+ * license and shown clearly in the developer's project. The code can be used
+ * as long as you state clearly you do not own it. Any violation might result in
+ *  a take-down.
+ *
+ * MIT License
+ *
+ * Copyright (c) 2016, 2017 Anthony Law
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *******************************************************************************/
+package org.ev3dev.io;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+
+/***
+ * A held-open descriptor of a single Sysfs attribute file. The attribute is
+ * re-read from position 0 into a reusable buffer instead of being re-opened on every read.
+ * @author Anthony
+ *
+ */
+final class SysfsHandle {
+	
+	private static final int INITIAL_BUFFER_SIZE = 128;
+	
+	//Sysfs never returns more than a page for an attribute
+	private static final int MAX_BUFFER_SIZE = 4096;
+	
+	private final String path;
+	
+	private final File directory;
+	
+	private final boolean truncateAfterWrite;
+	
+	private FileChannel readChannel = null;
+	
+	private FileChannel writeChannel = null;
+	
+	private ByteBuffer buffer = ByteBuffer.allocateDirect(INITIAL_BUFFER_SIZE);
+	
+	//Enough for the sign and 19 digits of a long
+	private final ByteBuffer writeBuffer = ByteBuffer.allocateDirect(20);
+	
+	private boolean closed = false;
+	
+	private boolean evicted = false;
+	
+	/**
+	 * Creates a new handle of the attribute path specified. The file is opened lazily.
+	 * @param path The full attribute path
+	 */
+	SysfsHandle(String path){
+		this.path = path;
+		this.directory = new File(path).getParentFile();
+		
+		//Sysfs attributes replace their whole value on every write. Regular files
+		//used in place of Sysfs (e.g. for debugging) have to be truncated instead.
+		this.truncateAfterWrite = !path.startsWith(Sysfs.DEFAULT_SYSTEM_CLASS_PATH);
+	}
+	
+	/**
+	 * Returns the full attribute path of this handle
+	 * @return The attribute path
+	 */
+	String getPath(){
+		return path;
+	}
+	
+	/**
+	 * Returns the directory containing this attribute (e.g. <code>/sys/class/tacho-motor/motor0</code>)
+	 * @return The directory
+	 */
+	File getDirectory(){
+		return directory;
+	}
+	
+	/**
+	 * Returns whether this handle has been closed or evicted, so that it should not be used any more
+	 * @return Boolean
+	 */
+	synchronized boolean isClosed(){
+		return closed;
+	}
+	
+	/**
+	 * Reads the whole attribute into the reusable buffer. The buffer is flipped and ready to be read when returns.
+	 *  If the descriptor was closed by an interrupt of another thread, it is re-opened once.
+	 * @return The reusable buffer holding the attribute value
+	 * @throws IOException If the attribute couldn't be read
+	 */
+	synchronized ByteBuffer read() throws IOException{
+		try {
+			return read0();
+		} catch (ClosedChannelException e){
+			readChannel = null;
+			if (e instanceof ClosedByInterruptException){
+				throw e;
+			}
+			return read0();
+		}
+	}
+	
+	private ByteBuffer read0() throws IOException{
+		if (closed && !evicted){
+			throw new IOException("The handle of " + path + " is closed");
+		}
+		if (readChannel == null){
+			readChannel = new FileInputStream(path).getChannel();
+		}
+		try {
+			buffer.clear();
+			long pos = 0;
+			int read;
+			while ((read = readChannel.read(buffer, pos)) > 0){
+				pos += read;
+				if (buffer.hasRemaining()){
+					break;
+				}
+				if (buffer.capacity() >= MAX_BUFFER_SIZE){
+					break;
+				}
+				ByteBuffer larger = ByteBuffer.allocateDirect(buffer.capacity() * 2);
+				buffer.flip();
+				larger.put(buffer);
+				buffer = larger;
+			}
+			buffer.flip();
+			return buffer;
+		} finally {
+			if (evicted){
+				closeChannels();
+			}
+		}
+	}
+	
+	/**
+	 * Reads the whole attribute and copies the raw bytes into the buffer specified, as many as it has remaining.
+	 * @param dest The destination buffer
+	 * @return The number of bytes copied
+	 * @throws IOException If the attribute couldn't be read
+	 */
+	synchronized int readInto(ByteBuffer dest) throws IOException{
+		ByteBuffer buf = read();
+		int n = Math.min(buf.remaining(), dest.remaining());
+		buf.limit(buf.position() + n);
+		dest.put(buf);
+		return n;
+	}
+	
+	/**
+	 * Reads the attribute as a String. Line breaks are removed, same as the non-cached reads.
+	 * @return The value of the attribute
+	 * @throws IOException If the attribute couldn't be read
+	 */
+	synchronized String readString() throws IOException{
+		ByteBuffer buf = read();
+		StringBuilder sb = new StringBuilder(buf.remaining());
+		char c;
+		while (buf.hasRemaining()){
+			c = (char) (buf.get() & 0xff);
+			if (c != '\n' && c != '\r'){
+				sb.append(c);
+			}
+		}
+		return sb.toString();
+	}
+	
+	/**
+	 * Reads the attribute as a decimal integer, parsing the ASCII digits directly from the reusable buffer.
+	 * @return The value of the attribute
+	 * @throws IOException If the attribute couldn't be read
+	 * @throws NumberFormatException If the attribute isn't a decimal integer
+	 */
+	synchronized long readLong() throws IOException{
+		return parseLong(read());
+	}
+	
+	/**
+	 * Parses a decimal integer from the remaining bytes of the buffer. Leading and trailing white spaces are ignored.
+	 * @param buf The buffer
+	 * @return The parsed value
+	 * @throws NumberFormatException If the content isn't a decimal integer
+	 */
+	static long parseLong(ByteBuffer buf){
+		int pos = buf.position();
+		int limit = buf.limit();
+		while (pos < limit && isSpace(buf.get(pos))){
+			pos++;
+		}
+		while (limit > pos && isSpace(buf.get(limit - 1))){
+			limit--;
+		}
+		if (pos >= limit){
+			throw new NumberFormatException("Empty attribute value");
+		}
+		boolean negative = false;
+		byte b = buf.get(pos);
+		if (b == '-' || b == '+'){
+			negative = b == '-';
+			pos++;
+			if (pos >= limit){
+				throw new NumberFormatException("Missing digits after sign");
+			}
+		}
+		long result = 0;
+		int digit;
+		for (; pos < limit; pos++){
+			digit = buf.get(pos) - '0';
+			if (digit < 0 || digit > 9){
+				throw new NumberFormatException("Invalid character in decimal attribute value: " + (char) buf.get(pos));
+			}
+			if (result < (Long.MIN_VALUE + digit) / 10){
+				throw new NumberFormatException("Attribute value out of range");
+			}
+			//Accumulates negatively to reach Long.MIN_VALUE
+			result = result * 10 - digit;
+		}
+		if (!negative){
+			if (result == Long.MIN_VALUE){
+				throw new NumberFormatException("Attribute value out of range");
+			}
+			result = -result;
+		}
+		return result;
+	}
+	
+	private static boolean isSpace(byte b){
+		return b == ' ' || b == '\n' || b == '\r' || b == '\t';
+	}
+	
+	/**
+	 * Writes a decimal integer to the attribute. The digits are formatted into a reused buffer and written
+	 *  with a single write on the held-open descriptor.
+	 * @param value The new value
+	 * @throws IOException If the attribute couldn't be written
+	 */
+	synchronized void writeLong(long value) throws IOException{
+		int pos = writeBuffer.capacity();
+		//Formats negatively to support Long.MIN_VALUE
+		long v = value > 0 ? -value : value;
+		do {
+			writeBuffer.put(--pos, (byte) ('0' - (v % 10)));
+			v /= 10;
+		} while (v != 0);
+		if (value < 0){
+			writeBuffer.put(--pos, (byte) '-');
+		}
+		writeBuffer.limit(writeBuffer.capacity());
+		writeBuffer.position(pos);
+		write(writeBuffer);
+	}
+	
+	/**
+	 * Writes a String to the attribute, with a single write on the held-open descriptor.
+	 * @param value The new value
+	 * @throws IOException If the attribute couldn't be written
+	 */
+	synchronized void writeString(String value) throws IOException{
+		write(ByteBuffer.wrap(value.getBytes()));
+	}
+	
+	/**
+	 * Opens the write descriptor of the attribute in advance, if it is not opened yet.
+	 * @throws IOException If the attribute couldn't be opened
+	 */
+	synchronized void openForWrite() throws IOException{
+		if (closed && !evicted){
+			throw new IOException("The handle of " + path + " is closed");
+		}
+		if (writeChannel == null){
+			writeChannel = new FileOutputStream(path).getChannel();
+		}
+	}
+	
+	/**
+	 * Writes the remaining bytes of the buffer to the attribute at position 0. If the descriptor was closed by an
+	 *  interrupt of another thread, it is re-opened once.
+	 * @param data The data to be written
+	 * @throws IOException If the attribute couldn't be written
+	 */
+	synchronized void write(ByteBuffer data) throws IOException{
+		int start = data.position();
+		try {
+			write0(data);
+		} catch (ClosedChannelException e){
+			writeChannel = null;
+			if (e instanceof ClosedByInterruptException){
+				throw e;
+			}
+			data.position(start);
+			write0(data);
+		}
+	}
+	
+	private void write0(ByteBuffer data) throws IOException{
+		openForWrite();
+		try {
+			int len = data.remaining();
+			long pos = 0;
+			while (data.hasRemaining()){
+				pos += writeChannel.write(data, pos);
+			}
+			if (truncateAfterWrite){
+				writeChannel.truncate(len);
+			}
+		} finally {
+			if (evicted){
+				closeChannels();
+			}
+		}
+	}
+	
+	/**
+	 * Closes the descriptors held by this handle, as it is evicted from the cache. A caller that fetched the
+	 *  handle before the eviction can still do its I/O, on descriptors opened and closed for each operation,
+	 *  instead of failing.
+	 */
+	synchronized void evict(){
+		if (!closed){
+			closed = true;
+			evicted = true;
+		}
+		closeChannels();
+	}
+	
+	/**
+	 * Closes the descriptors held by this handle. Any further I/O will fail.
+	 */
+	synchronized void close(){
+		closed = true;
+		evicted = false;
+		closeChannels();
+	}
+	
+	private void closeChannels(){
+		if (readChannel != null){
+			try {
+				readChannel.close();
+			} catch (IOException ignore){}
+			readChannel = null;
+		}
+		if (writeChannel != null){
+			try {
+				writeChannel.close();
+			} catch (IOException ignore){}
+			writeChannel = null;
+		}
+	}
+}